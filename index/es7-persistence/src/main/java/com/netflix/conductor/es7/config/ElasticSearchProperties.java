@@ -53,6 +53,13 @@ public class ElasticSearchProperties {
     @DurationUnit(ChronoUnit.SECONDS)
     private Duration asyncBufferFlushTimeout = Duration.ofSeconds(10);
 
+    /**
+     * The time in seconds for which the point in time of a search paged by cursor is kept between
+     * two pages
+     */
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration searchCursorKeepAlive = Duration.ofMinutes(5);
+
     /** The number of shards that the index will be created with */
     private int indexShardCount = 5;
 
@@ -141,6 +148,14 @@ public class ElasticSearchProperties {
         this.asyncBufferFlushTimeout = asyncBufferFlushTimeout;
     }
 
+    public Duration getSearchCursorKeepAlive() {
+        return searchCursorKeepAlive;
+    }
+
+    public void setSearchCursorKeepAlive(Duration searchCursorKeepAlive) {
+        this.searchCursorKeepAlive = searchCursorKeepAlive;
+    }
+
     public int getIndexShardCount() {
         return indexShardCount;
     }
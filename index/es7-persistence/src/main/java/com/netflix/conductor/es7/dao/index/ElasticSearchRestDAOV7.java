@@ -31,6 +31,8 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.nio.entity.NByteArrayEntity;
 import org.apache.http.nio.entity.NStringEntity;
 import org.apache.http.util.EntityUtils;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ElasticsearchStatusException;
 import org.elasticsearch.action.DocWriteResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.delete.DeleteRequest;
@@ -38,17 +40,21 @@ import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.ClosePointInTimeRequest;
+import org.elasticsearch.action.search.OpenPointInTimeRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.client.*;
 import org.elasticsearch.client.core.CountRequest;
 import org.elasticsearch.client.core.CountResponse;
+import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.sort.FieldSortBuilder;
 import org.elasticsearch.search.sort.SortOrder;
@@ -67,6 +73,8 @@ import com.netflix.conductor.common.run.WorkflowSummary;
 import com.netflix.conductor.core.events.queue.Message;
 import com.netflix.conductor.core.exception.NonTransientException;
 import com.netflix.conductor.core.exception.TransientException;
+import com.netflix.conductor.dao.CursorSearchDAO;
+import com.netflix.conductor.dao.CursorSearchResult;
 import com.netflix.conductor.dao.IndexDAO;
 import com.netflix.conductor.es7.config.ElasticSearchProperties;
 import com.netflix.conductor.es7.dao.query.parser.internal.ParserException;
@@ -80,7 +88,8 @@ import com.fasterxml.jackson.databind.type.MapType;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 
 @Trace
-public class ElasticSearchRestDAOV7 extends ElasticSearchBaseDAO implements IndexDAO {
+public class ElasticSearchRestDAOV7 extends ElasticSearchBaseDAO
+        implements IndexDAO, CursorSearchDAO {
 
     private static final Logger logger = LoggerFactory.getLogger(ElasticSearchRestDAOV7.class);
 
@@ -125,6 +134,8 @@ public class ElasticSearchRestDAOV7 extends ElasticSearchBaseDAO implements Inde
     private final ConcurrentHashMap<String, BulkRequests> bulkRequests;
     private final int indexBatchSize;
     private final int asyncBufferFlushTimeout;
+    private final long searchCursorKeepAlive;
+    private volatile boolean pointInTimeSupported = true;
     private final ElasticSearchProperties properties;
     private final RetryTemplate retryTemplate;
 
@@ -145,6 +156,7 @@ public class ElasticSearchRestDAOV7 extends ElasticSearchBaseDAO implements Inde
         this.bulkRequests = new ConcurrentHashMap<>();
         this.indexBatchSize = properties.getIndexBatchSize();
         this.asyncBufferFlushTimeout = (int) properties.getAsyncBufferFlushTimeout().getSeconds();
+        this.searchCursorKeepAlive = properties.getSearchCursorKeepAlive().toMillis();
         this.properties = properties;
 
         this.indexPrefix = properties.getIndexPrefix();
@@ -796,6 +808,17 @@ public class ElasticSearchRestDAOV7 extends ElasticSearchBaseDAO implements Inde
                 getIndexName(docType), queryBuilder, start, size, sortOptions, idOnly, clazz);
     }
 
+    @Override
+    public CursorSearchResult<WorkflowSummary> searchWorkflowSummaryAfter(
+            String query, String freeText, int count, List<String> sort, String cursor) {
+        try {
+            return searchObjectsAfter(
+                    query, freeText, count, sort, cursor, WORKFLOW_DOC_TYPE, WorkflowSummary.class);
+        } catch (ParserException | IOException e) {
+            throw new TransientException(e.getMessage(), e);
+        }
+    }
+
     @Override
     public SearchResult<String> searchTasks(
             String query, String freeText, int start, int count, List<String> sort) {
@@ -817,6 +840,17 @@ public class ElasticSearchRestDAOV7 extends ElasticSearchBaseDAO implements Inde
         }
     }
 
+    @Override
+    public CursorSearchResult<TaskSummary> searchTaskSummaryAfter(
+            String query, String freeText, int count, List<String> sort, String cursor) {
+        try {
+            return searchObjectsAfter(
+                    query, freeText, count, sort, cursor, TASK_DOC_TYPE, TaskSummary.class);
+        } catch (ParserException | IOException e) {
+            throw new TransientException(e.getMessage(), e);
+        }
+    }
+
     @Override
     public void removeWorkflow(String workflowId) {
         long startTime = Instant.now().toEpochMilli();
@@ -1055,19 +1089,7 @@ public class ElasticSearchRestDAOV7 extends ElasticSearchBaseDAO implements Inde
         searchSourceBuilder.from(start);
         searchSourceBuilder.size(size);
 
-        if (sortOptions != null && !sortOptions.isEmpty()) {
-
-            for (String sortOption : sortOptions) {
-                SortOrder order = SortOrder.ASC;
-                String field = sortOption;
-                int index = sortOption.indexOf(":");
-                if (index > 0) {
-                    field = sortOption.substring(0, index);
-                    order = SortOrder.valueOf(sortOption.substring(index + 1));
-                }
-                searchSourceBuilder.sort(new FieldSortBuilder(field).order(order));
-            }
-        }
+        addSortOptions(searchSourceBuilder, sortOptions);
 
         // Generate the actual request to send to ES.
         SearchRequest searchRequest = new SearchRequest(indexName);
@@ -1098,6 +1120,144 @@ public class ElasticSearchRestDAOV7 extends ElasticSearchBaseDAO implements Inde
             searchSourceBuilder.fetchSource(false);
         }
 
+        addSortOptions(searchSourceBuilder, sortOptions);
+
+        // Generate the actual request to send to ES.
+        SearchRequest searchRequest = new SearchRequest(indexName);
+        searchRequest.source(searchSourceBuilder);
+
+        SearchResponse response = elasticSearchClient.search(searchRequest, RequestOptions.DEFAULT);
+        return mapSearchResult(response, idOnly, clazz);
+    }
+
+    /**
+     * Reads the page after the last hit of the previous page. Every page costs the same, however
+     * deep it is. Where the cluster supports it, the pages are read from a point in time opened for
+     * the first page, so they all see the index as it was then; the point in time is closed after
+     * the last page. Otherwise they are read from the live index.
+     */
+    private <T> CursorSearchResult<T> searchObjectsAfter(
+            String structuredQuery,
+            String freeTextQuery,
+            int size,
+            List<String> sortOptions,
+            String cursor,
+            String docType,
+            Class<T> clazz)
+            throws ParserException, IOException {
+        TimeValue keepAlive = TimeValue.timeValueMillis(searchCursorKeepAlive);
+        String indexName = getIndexName(docType);
+        SearchCursor state;
+        if (cursor == null) {
+            state = new SearchCursor();
+            state.pitId = openPointInTime(indexName, keepAlive);
+        } else {
+            state = CursorSearchResult.decodeCursor(objectMapper, cursor, SearchCursor.class);
+        }
+
+        SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
+        searchSourceBuilder.query(boolQueryBuilder(structuredQuery, freeTextQuery));
+        searchSourceBuilder.size(size);
+        addSortOptions(searchSourceBuilder, sortOptions);
+        // the id breaks ties, so that the sort values of the last hit are unique
+        String idField = docType.equals(TASK_DOC_TYPE) ? "taskId" : "workflowId";
+        if (sortOptions == null
+                || sortOptions.stream().noneMatch(o -> o.split(":")[0].equals(idField))) {
+            searchSourceBuilder.sort(new FieldSortBuilder(idField).order(SortOrder.ASC));
+        }
+        if (state.searchAfter != null) {
+            searchSourceBuilder.searchAfter(state.searchAfter.toArray());
+        }
+
+        SearchRequest searchRequest;
+        if (state.pitId != null) {
+            // a search on a point in time must not name the index
+            searchSourceBuilder.pointInTimeBuilder(
+                    new PointInTimeBuilder(state.pitId).setKeepAlive(keepAlive));
+            searchRequest = new SearchRequest();
+        } else {
+            searchRequest = new SearchRequest(indexName);
+        }
+        searchRequest.source(searchSourceBuilder);
+
+        SearchResponse response = elasticSearchClient.search(searchRequest, RequestOptions.DEFAULT);
+        SearchResult<T> page = mapSearchResult(response, false, clazz);
+
+        SearchHit[] hits = response.getHits().getHits();
+        String nextCursor = null;
+        if (size > 0 && hits.length == size) {
+            if (state.pitId != null) {
+                state.pitId = response.pointInTimeId();
+            }
+            state.searchAfter = Arrays.asList(hits[hits.length - 1].getSortValues());
+            nextCursor = CursorSearchResult.encodeCursor(objectMapper, state);
+        } else if (state.pitId != null) {
+            closePointInTime(state.pitId);
+        }
+        return new CursorSearchResult<>(page.getTotalHits(), page.getResults(), nextCursor);
+    }
+
+    /**
+     * @return The id of a new point in time of the index, or null if the cluster does not support
+     *     them.
+     */
+    private String openPointInTime(String indexName, TimeValue keepAlive) {
+        if (!pointInTimeSupported) {
+            return null;
+        }
+        try {
+            OpenPointInTimeRequest request =
+                    new OpenPointInTimeRequest(indexName).keepAlive(keepAlive);
+            return elasticSearchClient
+                    .openPointInTime(request, RequestOptions.DEFAULT)
+                    .getPointInTimeId();
+        } catch (ElasticsearchStatusException e) {
+            if (isPointInTimeUnsupported(e)) {
+                logger.warn(
+                        "The cluster does not support points in time, searches paged by cursor read the live index",
+                        e);
+                pointInTimeSupported = false;
+            } else {
+                logger.warn("Could not open a point in time, this search reads the live index", e);
+            }
+            return null;
+        } catch (IOException | ElasticsearchException e) {
+            logger.warn("Could not open a point in time, this search reads the live index", e);
+            return null;
+        }
+    }
+
+    /**
+     * Clusters before 7.10 have no _pit endpoint, and reject the request as a bad request or an
+     * unknown method, or as not found without the index missing.
+     */
+    private static boolean isPointInTimeUnsupported(ElasticsearchStatusException e) {
+        switch (e.status()) {
+            case BAD_REQUEST:
+            case METHOD_NOT_ALLOWED:
+                return true;
+            case NOT_FOUND:
+                return !String.valueOf(e.getMessage()).contains("index_not_found_exception");
+            default:
+                return false;
+        }
+    }
+
+    private void closePointInTime(String pitId) {
+        try {
+            elasticSearchClient.closePointInTime(
+                    new ClosePointInTimeRequest(pitId), RequestOptions.DEFAULT);
+        } catch (Exception e) {
+            // it expires after the keep alive anyway
+            logger.warn("Failed to close the point in time {}", pitId, e);
+        }
+    }
+
+    /**
+     * @param sortOptions A list of string options to sort in the form VALUE:ORDER; where ORDER is
+     *     optional and can be either ASC OR DESC.
+     */
+    private void addSortOptions(SearchSourceBuilder searchSourceBuilder, List<String> sortOptions) {
         if (sortOptions != null && !sortOptions.isEmpty()) {
 
             for (String sortOption : sortOptions) {
@@ -1111,13 +1271,16 @@ public class ElasticSearchRestDAOV7 extends ElasticSearchBaseDAO implements Inde
                 searchSourceBuilder.sort(new FieldSortBuilder(field).order(order));
             }
         }
+    }
 
-        // Generate the actual request to send to ES.
-        SearchRequest searchRequest = new SearchRequest(indexName);
-        searchRequest.source(searchSourceBuilder);
+    /** The state of a search paged by cursor. */
+    static class SearchCursor {
 
-        SearchResponse response = elasticSearchClient.search(searchRequest, RequestOptions.DEFAULT);
-        return mapSearchResult(response, idOnly, clazz);
+        /** The point in time the pages are read from, if any */
+        public String pitId;
+
+        /** The sort values of the last hit of the previous page */
+        public List<Object> searchAfter;
     }
 
     private <T> SearchResult<T> mapSearchResult(
@@ -26,6 +26,7 @@ import com.netflix.conductor.common.run.TaskSummary;
 import com.netflix.conductor.common.run.Workflow.WorkflowStatus;
 import com.netflix.conductor.common.run.WorkflowSummary;
 import com.netflix.conductor.core.events.queue.Message;
+import com.netflix.conductor.dao.CursorSearchResult;
 import com.netflix.conductor.es7.utils.TestUtils;
 
 import com.google.common.collect.ImmutableMap;
@@ -412,6 +413,44 @@ public class TestElasticSearchRestDAOV7 extends ElasticSearchRestDaoBaseTest {
         assertEquals(counts, result);
     }
 
+    @Test
+    public void shouldSearchWorkflowSummaryAfter() {
+        String correlationId = uuid();
+        List<String> workflowIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            WorkflowSummary workflowSummary =
+                    TestUtils.loadWorkflowSnapshot(objectMapper, "workflow_summary");
+            workflowSummary.setCorrelationId(correlationId);
+            indexDAO.indexWorkflow(workflowSummary);
+            workflowIds.add(workflowSummary.getWorkflowId());
+        }
+        Collections.sort(workflowIds);
+
+        String query = "correlationId=\"" + correlationId + "\"";
+        // wait for the workflows to be indexed
+        tryFindResults(
+                () ->
+                        indexDAO.searchWorkflowSummary(query, "*", 0, 10, Collections.emptyList())
+                                .getResults(),
+                5);
+
+        List<String> found = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorSearchResult<WorkflowSummary> page =
+                    indexDAO.searchWorkflowSummaryAfter(
+                            query, "*", 2, List.of("workflowId:ASC"), cursor);
+            assertEquals(5, page.getTotalHits());
+            page.getResults().forEach(summary -> found.add(summary.getWorkflowId()));
+            cursor = page.getCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(workflowIds, found);
+    }
+
     private long tryGetCount(Supplier<Long> countFunction, int resultsCount) {
         long result = 0;
         for (int i = 0; i < 20; i++) {
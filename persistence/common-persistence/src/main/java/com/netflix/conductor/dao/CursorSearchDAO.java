@@ -0,0 +1,47 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.dao;
+
+import java.util.List;
+
+import com.netflix.conductor.common.run.TaskSummary;
+import com.netflix.conductor.common.run.WorkflowSummary;
+
+/**
+ * Searches the index page by page with a cursor rather than an offset, so that a page costs the
+ * same to fetch, however deep into the results it is. Implementations may count the total hits with
+ * the first page only and report that count for the later pages.
+ */
+public interface CursorSearchDAO {
+
+    /**
+     * @param query SQL like query for workflow search parameters.
+     * @param freeText Additional query in free text. Lucene syntax
+     * @param count number of workflows to return
+     * @param sort sort options
+     * @param cursor The cursor of the previous page, or null for the first page
+     * @return A page of workflow summaries and the cursor of the next page
+     */
+    CursorSearchResult<WorkflowSummary> searchWorkflowSummaryAfter(
+            String query, String freeText, int count, List<String> sort, String cursor);
+
+    /**
+     * @param query SQL like query for task search parameters.
+     * @param freeText Additional query in free text. Lucene syntax
+     * @param count number of tasks to return
+     * @param sort sort options
+     * @param cursor The cursor of the previous page, or null for the first page
+     * @return A page of task summaries and the cursor of the next page
+     */
+    CursorSearchResult<TaskSummary> searchTaskSummaryAfter(
+            String query, String freeText, int count, List<String> sort, String cursor);
+}
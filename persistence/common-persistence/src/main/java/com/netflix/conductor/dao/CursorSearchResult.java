@@ -0,0 +1,82 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.dao;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+
+import com.netflix.conductor.common.run.SearchResult;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A page of search results and the opaque cursor to pass to {@link CursorSearchDAO} for the next
+ * page.
+ *
+ * @param <T> The type of the results.
+ */
+public class CursorSearchResult<T> extends SearchResult<T> {
+
+    private String cursor;
+
+    public CursorSearchResult() {}
+
+    public CursorSearchResult(long totalHits, List<T> results, String cursor) {
+        super(totalHits, results);
+        this.cursor = cursor;
+    }
+
+    /**
+     * @return The cursor of the next page, or null if this is the last page
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Encodes the state needed to resume a search into an opaque cursor.
+     *
+     * @param objectMapper The mapper to write {@literal state} with.
+     * @param state The state, such as the sort values of the last result.
+     * @return The cursor.
+     */
+    public static String encodeCursor(ObjectMapper objectMapper, Object state) {
+        try {
+            return Base64.getUrlEncoder()
+                    .withoutPadding()
+                    .encodeToString(objectMapper.writeValueAsBytes(state));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode the search cursor", e);
+        }
+    }
+
+    /**
+     * @param objectMapper The mapper to read the state with.
+     * @param cursor A cursor returned by {@link #encodeCursor(ObjectMapper, Object)}.
+     * @param stateType The type of the state.
+     * @param <S> The type parameter.
+     * @return The state.
+     * @throws IllegalArgumentException If {@literal cursor} is not a valid cursor.
+     */
+    public static <S> S decodeCursor(ObjectMapper objectMapper, String cursor, Class<S> stateType) {
+        try {
+            return objectMapper.readValue(Base64.getUrlDecoder().decode(cursor), stateType);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid search cursor: " + cursor, e);
+        }
+    }
+}
@@ -60,8 +60,9 @@ public class MySQLConfiguration {
     public MySQLExecutionDAO mySqlExecutionDAO(
             @Qualifier("mysqlRetryTemplate") RetryTemplate retryTemplate,
             ObjectMapper objectMapper,
-            DataSource dataSource) {
-        return new MySQLExecutionDAO(retryTemplate, objectMapper, dataSource);
+            DataSource dataSource,
+            MySQLProperties properties) {
+        return new MySQLExecutionDAO(retryTemplate, objectMapper, dataSource, properties);
     }
 
     @Bean
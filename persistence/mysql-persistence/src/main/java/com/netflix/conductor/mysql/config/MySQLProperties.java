@@ -12,8 +12,12 @@
 package com.netflix.conductor.mysql.config;
 
 import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.convert.DurationUnit;
+
+import com.netflix.conductor.mysql.util.JsonDataCodec;
 
 @ConfigurationProperties("conductor.mysql")
 public class MySQLProperties {
@@ -23,6 +27,22 @@ public class MySQLProperties {
 
     private Integer deadlockRetryMax = 3;
 
+    /**
+     * The encoding of newly written workflow and task documents: text JSON, or binary Smile or CBOR
+     * in the json_data_bin column. Rows written with any encoding can be read with any setting
+     */
+    private JsonDataCodec.Encoding dataEncoding = JsonDataCodec.Encoding.JSON;
+
+    /** Deflate binary encoded workflow and task documents */
+    private boolean dataCompressionEnabled = false;
+
+    /**
+     * The interval at which the latest poll of every task queue is written to poll_data. Polls in
+     * between only update an in-memory buffer. Set to 0 to write every poll right away
+     */
+    @DurationUnit(ChronoUnit.MILLIS)
+    private Duration pollDataFlushInterval = Duration.ofMillis(1000);
+
     public Duration getTaskDefCacheRefreshInterval() {
         return taskDefCacheRefreshInterval;
     }
@@ -38,4 +58,28 @@ public class MySQLProperties {
     public void setDeadlockRetryMax(Integer deadlockRetryMax) {
         this.deadlockRetryMax = deadlockRetryMax;
     }
+
+    public JsonDataCodec.Encoding getDataEncoding() {
+        return dataEncoding;
+    }
+
+    public void setDataEncoding(JsonDataCodec.Encoding dataEncoding) {
+        this.dataEncoding = dataEncoding;
+    }
+
+    public boolean isDataCompressionEnabled() {
+        return dataCompressionEnabled;
+    }
+
+    public void setDataCompressionEnabled(boolean dataCompressionEnabled) {
+        this.dataCompressionEnabled = dataCompressionEnabled;
+    }
+
+    public Duration getPollDataFlushInterval() {
+        return pollDataFlushInterval;
+    }
+
+    public void setPollDataFlushInterval(Duration pollDataFlushInterval) {
+        this.pollDataFlushInterval = pollDataFlushInterval;
+    }
 }
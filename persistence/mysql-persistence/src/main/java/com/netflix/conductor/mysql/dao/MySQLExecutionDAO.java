@@ -15,10 +15,16 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.retry.support.RetryTemplate;
 
 import com.netflix.conductor.common.metadata.events.EventExecution;
@@ -32,7 +38,11 @@ import com.netflix.conductor.dao.RateLimitingDAO;
 import com.netflix.conductor.metrics.Monitors;
 import com.netflix.conductor.model.TaskModel;
 import com.netflix.conductor.model.WorkflowModel;
+import com.netflix.conductor.mysql.config.MySQLProperties;
+import com.netflix.conductor.mysql.util.ExecutorsUtil;
+import com.netflix.conductor.mysql.util.JsonDataCodec;
 import com.netflix.conductor.mysql.util.Query;
+import com.netflix.conductor.mysql.util.RateLimitLeases;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
@@ -42,9 +52,71 @@ import com.google.common.collect.Lists;
 public class MySQLExecutionDAO extends MySQLBaseDAO
         implements ExecutionDAO, RateLimitingDAO, PollDataDAO, ConcurrentExecutionLimitDAO {
 
+    private final JsonDataCodec dataCodec;
+
+    /**
+     * The latest poll of every queue and domain that is not written to {@code poll_data} yet, by
+     * queue name and effective domain. Empty if poll data is written through.
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, PollData>> pollDataBuffer =
+            new ConcurrentHashMap<>();
+
+    private final long pollDataFlushIntervalMs;
+
+    /**
+     * Share of a task definition's rate limit that is taken from the database at once, and then
+     * handed out locally until it is used up.
+     */
+    private static final double RATE_LIMIT_LEASE_FRACTION = 0.1;
+
+    private final RateLimitLeases rateLimitLeases = new RateLimitLeases();
+
+    private final ScheduledExecutorService pollDataFlushExecutor;
+
     public MySQLExecutionDAO(
-            RetryTemplate retryTemplate, ObjectMapper objectMapper, DataSource dataSource) {
+            RetryTemplate retryTemplate,
+            ObjectMapper objectMapper,
+            DataSource dataSource,
+            MySQLProperties properties) {
         super(retryTemplate, objectMapper, dataSource);
+        this.dataCodec =
+                new JsonDataCodec(
+                        objectMapper,
+                        properties.getDataEncoding(),
+                        properties.isDataCompressionEnabled());
+        this.pollDataFlushIntervalMs = properties.getPollDataFlushInterval().toMillis();
+        if (pollDataFlushIntervalMs > 0) {
+            this.pollDataFlushExecutor =
+                    Executors.newSingleThreadScheduledExecutor(
+                            ExecutorsUtil.newNamedThreadFactory("mysql-poll-data-"));
+            pollDataFlushExecutor.scheduleWithFixedDelay(
+                    this::flushPollData,
+                    pollDataFlushIntervalMs,
+                    pollDataFlushIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            this.pollDataFlushExecutor = null;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (pollDataFlushExecutor != null) {
+            // let a running flush finish, so that it does not write alongside the last one
+            try {
+                pollDataFlushExecutor.shutdown();
+                if (!pollDataFlushExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                    logger.warn("Forcing shutdown after waiting for 30 seconds");
+                    pollDataFlushExecutor.shutdownNow();
+                }
+            } catch (InterruptedException ie) {
+                logger.warn(
+                        "Shutdown interrupted, invoking shutdownNow on pollDataFlushExecutor", ie);
+                pollDataFlushExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        flushPollData();
     }
 
     private static String dateStr(Long timeInMs) {
@@ -61,7 +133,7 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
     public List<TaskModel> getPendingTasksByWorkflow(String taskDefName, String workflowId) {
         // @formatter:off
         String GET_IN_PROGRESS_TASKS_FOR_WORKFLOW =
-                "SELECT json_data FROM task_in_progress tip "
+                "SELECT json_data, json_data_bin FROM task_in_progress tip "
                         + "INNER JOIN task t ON t.task_id = tip.task_id "
                         + "WHERE task_def_name = ? AND workflow_id = ?";
         // @formatter:on
@@ -71,7 +143,7 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
                 q ->
                         q.addParameter(taskDefName)
                                 .addParameter(workflowId)
-                                .executeAndFetch(TaskModel.class));
+                                .executeAndFetchData(TaskModel.class));
     }
 
     @Override
@@ -148,13 +220,49 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
     }
 
     /**
-     * This is a dummy implementation and this feature is not for Mysql backed Conductor
-     *
-     * @param task: which needs to be evaluated whether it is rateLimited or not
+     * Limits the number of tasks of a definition started per fixed window of {@code
+     * rateLimitFrequencyInSeconds} across all servers, see {@link RateLimitLeases}.
      */
     @Override
     public boolean exceedsRateLimitPerFrequency(TaskModel task, TaskDef taskDef) {
-        return false;
+        int rateLimit =
+                Optional.ofNullable(taskDef)
+                        .map(TaskDef::getRateLimitPerFrequency)
+                        .orElse(task.getRateLimitPerFrequency());
+        int frequencySeconds =
+                Optional.ofNullable(taskDef)
+                        .map(TaskDef::getRateLimitFrequencyInSeconds)
+                        .orElse(task.getRateLimitFrequencyInSeconds());
+        if (rateLimit <= 0 || frequencySeconds <= 0) {
+            return false;
+        }
+
+        // fixed windows aligned to the epoch, so that all nodes agree on the current one
+        long windowMs = frequencySeconds * 1000L;
+        long now = System.currentTimeMillis();
+        long windowStart = now - now % windowMs;
+
+        String taskDefName = task.getTaskDefName();
+        int requested = (int) Math.ceil(rateLimit * RATE_LIMIT_LEASE_FRACTION);
+        if (rateLimitLeases.tryAcquire(
+                taskDefName,
+                windowStart,
+                window ->
+                        getWithRetriedTransactions(
+                                tx ->
+                                        leaseRateLimitPermits(
+                                                tx, taskDefName, window, rateLimit, requested)))) {
+            return false;
+        }
+
+        logger.debug(
+                "Task: {} with task definition {} is rate limited, {} per {} seconds",
+                task.getTaskId(),
+                task.getTaskDefName(),
+                rateLimit,
+                frequencySeconds);
+        Monitors.recordTaskRateLimited(task.getTaskDefName(), rateLimit);
+        return true;
     }
 
     @Override
@@ -227,9 +335,9 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
 
     @Override
     public TaskModel getTask(String taskId) {
-        String GET_TASK = "SELECT json_data FROM task WHERE task_id = ?";
+        String GET_TASK = "SELECT json_data, json_data_bin FROM task WHERE task_id = ?";
         return queryWithTransaction(
-                GET_TASK, q -> q.addParameter(taskId).executeAndFetchFirst(TaskModel.class));
+                GET_TASK, q -> q.addParameter(taskId).executeAndFetchFirstData(TaskModel.class));
     }
 
     @Override
@@ -245,14 +353,14 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
         Preconditions.checkNotNull(taskName, "task name cannot be null");
         // @formatter:off
         String GET_IN_PROGRESS_TASKS_FOR_TYPE =
-                "SELECT json_data FROM task_in_progress tip "
+                "SELECT json_data, json_data_bin FROM task_in_progress tip "
                         + "INNER JOIN task t ON t.task_id = tip.task_id "
                         + "WHERE task_def_name = ?";
         // @formatter:on
 
         return queryWithTransaction(
                 GET_IN_PROGRESS_TASKS_FOR_TYPE,
-                q -> q.addParameter(taskName).executeAndFetch(TaskModel.class));
+                q -> q.addParameter(taskName).executeAndFetchData(TaskModel.class));
     }
 
     @Override
@@ -325,16 +433,10 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
 
     @Override
     public WorkflowModel getWorkflow(String workflowId, boolean includeTasks) {
-        WorkflowModel workflow = getWithRetriedTransactions(tx -> readWorkflow(tx, workflowId));
-
-        if (workflow != null) {
-            if (includeTasks) {
-                List<TaskModel> tasks = getTasksForWorkflow(workflowId);
-                tasks.sort(Comparator.comparingInt(TaskModel::getSeq));
-                workflow.setTasks(tasks);
-            }
+        if (includeTasks) {
+            return getWithRetriedTransactions(tx -> readWorkflowWithTasks(tx, workflowId));
         }
-        return workflow;
+        return getWithRetriedTransactions(tx -> readWorkflow(tx, workflowId));
     }
 
     /**
@@ -439,14 +541,14 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
             String workflowName, String correlationId, boolean includeTasks) {
         Preconditions.checkNotNull(correlationId, "correlationId cannot be null");
         String GET_WORKFLOWS_BY_CORRELATION_ID =
-                "SELECT w.json_data FROM workflow w left join workflow_def_to_workflow wd on w.workflow_id = wd.workflow_id  WHERE w.correlation_id = ? and wd.workflow_def = ?";
+                "SELECT w.json_data, w.json_data_bin FROM workflow w left join workflow_def_to_workflow wd on w.workflow_id = wd.workflow_id  WHERE w.correlation_id = ? and wd.workflow_def = ?";
 
         return queryWithTransaction(
                 GET_WORKFLOWS_BY_CORRELATION_ID,
                 q ->
                         q.addParameter(correlationId)
                                 .addParameter(workflowName)
-                                .executeAndFetch(WorkflowModel.class));
+                                .executeAndFetchData(WorkflowModel.class));
     }
 
     @Override
@@ -524,6 +626,13 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
         Preconditions.checkNotNull(taskDefName, "taskDefName name cannot be null");
         PollData pollData = new PollData(taskDefName, domain, workerId, System.currentTimeMillis());
         String effectiveDomain = (domain == null) ? "DEFAULT" : domain;
+        if (pollDataFlushIntervalMs > 0) {
+            // only the latest poll matters, so earlier ones are overwritten before they are written
+            pollDataBuffer
+                    .computeIfAbsent(taskDefName, queueName -> new ConcurrentHashMap<>())
+                    .put(effectiveDomain, pollData);
+            return;
+        }
         withTransaction(tx -> insertOrUpdatePollData(tx, pollData, effectiveDomain));
     }
 
@@ -531,13 +640,24 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
     public PollData getPollData(String taskDefName, String domain) {
         Preconditions.checkNotNull(taskDefName, "taskDefName name cannot be null");
         String effectiveDomain = (domain == null) ? "DEFAULT" : domain;
-        return getWithRetriedTransactions(tx -> readPollData(tx, taskDefName, effectiveDomain));
+        Map<String, PollData> byDomain = pollDataBuffer.get(taskDefName);
+        PollData buffered = byDomain == null ? null : byDomain.get(effectiveDomain);
+        PollData stored =
+                getWithRetriedTransactions(tx -> readPollData(tx, taskDefName, effectiveDomain));
+        if (buffered == null
+                || (stored != null && stored.getLastPollTime() > buffered.getLastPollTime())) {
+            return stored;
+        }
+        return buffered;
     }
 
     @Override
     public List<PollData> getPollData(String taskDefName) {
         Preconditions.checkNotNull(taskDefName, "taskDefName name cannot be null");
-        return readAllPollData(taskDefName);
+        Map<String, PollData> buffered = pollDataBuffer.get(taskDefName);
+        return mergePollData(
+                readAllPollData(taskDefName),
+                buffered == null ? Collections.emptyList() : buffered.values());
     }
 
     @Override
@@ -547,7 +667,13 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
             tx.setAutoCommit(true);
             try {
                 String GET_ALL_POLL_DATA = "SELECT json_data FROM poll_data ORDER BY queue_name";
-                return query(tx, GET_ALL_POLL_DATA, q -> q.executeAndFetch(PollData.class));
+                List<PollData> stored =
+                        query(tx, GET_ALL_POLL_DATA, q -> q.executeAndFetch(PollData.class));
+                List<PollData> buffered = new ArrayList<>();
+                pollDataBuffer.values().forEach(byDomain -> buffered.addAll(byDomain.values()));
+                List<PollData> pollData = mergePollData(stored, buffered);
+                pollData.sort(Comparator.comparing(PollData::getQueueName));
+                return pollData;
             } catch (Throwable th) {
                 throw new NonTransientException(th.getMessage(), th);
             } finally {
@@ -558,6 +684,66 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
         }
     }
 
+    /**
+     * Writes the buffered poll data in a single transaction. Entries are only removed from the
+     * buffer once written, and only if no newer poll replaced them in the meantime, so a failed
+     * flush is retried with the next one.
+     */
+    @VisibleForTesting
+    void flushPollData() {
+        List<PollData> pollData = new ArrayList<>();
+        List<String> domains = new ArrayList<>();
+        pollDataBuffer
+                .values()
+                .forEach(
+                        byDomain ->
+                                byDomain.forEach(
+                                        (domain, data) -> {
+                                            pollData.add(data);
+                                            domains.add(domain);
+                                        }));
+        if (pollData.isEmpty()) {
+            return;
+        }
+        try {
+            withTransaction(
+                    tx -> {
+                        for (int i = 0; i < pollData.size(); i++) {
+                            insertOrUpdatePollData(tx, pollData.get(i), domains.get(i));
+                        }
+                    });
+        } catch (Exception e) {
+            logger.warn("Failed to flush the poll data of {} queues", pollData.size(), e);
+            return;
+        }
+        for (int i = 0; i < pollData.size(); i++) {
+            pollDataBuffer
+                    .get(pollData.get(i).getQueueName())
+                    .remove(domains.get(i), pollData.get(i));
+        }
+    }
+
+    /** Merges buffered poll data into the stored poll data, keeping the latest poll of each. */
+    private List<PollData> mergePollData(List<PollData> stored, Collection<PollData> buffered) {
+        if (buffered.isEmpty()) {
+            return stored;
+        }
+        Map<List<String>, PollData> merged = new LinkedHashMap<>();
+        for (PollData pollData : stored) {
+            merged.put(Arrays.asList(pollData.getQueueName(), pollData.getDomain()), pollData);
+        }
+        for (PollData pollData : buffered) {
+            merged.merge(
+                    Arrays.asList(pollData.getQueueName(), pollData.getDomain()),
+                    pollData,
+                    (current, latest) ->
+                            current.getLastPollTime() > latest.getLastPollTime()
+                                    ? current
+                                    : latest);
+        }
+        return new ArrayList<>(merged.values());
+    }
+
     private List<TaskModel> getTasks(Connection connection, List<String> taskIds) {
         if (taskIds.isEmpty()) {
             return Lists.newArrayList();
@@ -567,13 +753,14 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
         // on taskIds.size()
         final String GET_TASKS_FOR_IDS =
                 String.format(
-                        "SELECT json_data FROM task WHERE task_id IN (%s) AND json_data IS NOT NULL",
+                        "SELECT json_data, json_data_bin FROM task WHERE task_id IN (%s) "
+                                + "AND (json_data IS NOT NULL OR json_data_bin IS NOT NULL)",
                         Query.generateInBindings(taskIds.size()));
 
         return query(
                 connection,
                 GET_TASKS_FOR_IDS,
-                q -> q.addParameters(taskIds).executeAndFetch(TaskModel.class));
+                q -> q.addParameters(taskIds).executeAndFetchData(TaskModel.class));
     }
 
     private String insertOrUpdateWorkflow(WorkflowModel workflow, boolean update) {
@@ -626,17 +813,59 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
     }
 
     private WorkflowModel readWorkflow(Connection connection, String workflowId) {
-        String GET_WORKFLOW = "SELECT json_data FROM workflow WHERE workflow_id = ?";
+        String GET_WORKFLOW = "SELECT json_data, json_data_bin FROM workflow WHERE workflow_id = ?";
 
         return query(
                 connection,
                 GET_WORKFLOW,
-                q -> q.addParameter(workflowId).executeAndFetchFirst(WorkflowModel.class));
+                q -> q.addParameter(workflowId).executeAndFetchFirstData(WorkflowModel.class));
+    }
+
+    /**
+     * Reads a workflow and its tasks with a single statement, which returns the workflow row
+     * followed by one row per task, instead of one query for the workflow, one for its task ids and
+     * one for the tasks.
+     */
+    private WorkflowModel readWorkflowWithTasks(Connection connection, String workflowId) {
+        // @formatter:off
+        String GET_WORKFLOW_WITH_TASKS =
+                "SELECT 'w' AS kind, json_data, json_data_bin FROM workflow WHERE workflow_id = ? "
+                        + "UNION ALL "
+                        + "SELECT 't' AS kind, t.json_data, t.json_data_bin FROM workflow_to_task wt "
+                        + "INNER JOIN task t ON t.task_id = wt.task_id "
+                        + "WHERE wt.workflow_id = ? "
+                        + "AND (t.json_data IS NOT NULL OR t.json_data_bin IS NOT NULL)";
+        // @formatter:on
+
+        return query(
+                connection,
+                GET_WORKFLOW_WITH_TASKS,
+                q ->
+                        q.addParameter(workflowId)
+                                .addParameter(workflowId)
+                                .executeAndFetch(
+                                        rs -> {
+                                            WorkflowModel workflow = null;
+                                            List<TaskModel> tasks = new ArrayList<>();
+                                            while (rs.next()) {
+                                                if ("w".equals(rs.getString("kind"))) {
+                                                    workflow = q.readData(rs, WorkflowModel.class);
+                                                } else {
+                                                    tasks.add(q.readData(rs, TaskModel.class));
+                                                }
+                                            }
+                                            if (workflow != null) {
+                                                tasks.sort(
+                                                        Comparator.comparingInt(TaskModel::getSeq));
+                                                workflow.setTasks(tasks);
+                                            }
+                                            return workflow;
+                                        }));
     }
 
     private void addWorkflow(Connection connection, WorkflowModel workflow) {
         String INSERT_WORKFLOW =
-                "INSERT INTO workflow (workflow_id, correlation_id, json_data) VALUES (?, ?, ?)";
+                "INSERT INTO workflow (workflow_id, correlation_id, json_data, json_data_bin) VALUES (?, ?, ?, ?)";
 
         execute(
                 connection,
@@ -644,19 +873,19 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
                 q ->
                         q.addParameter(workflow.getWorkflowId())
                                 .addParameter(workflow.getCorrelationId())
-                                .addJsonParameter(workflow)
+                                .addDataParameters(dataCodec, workflow)
                                 .executeUpdate());
     }
 
     private void updateWorkflow(Connection connection, WorkflowModel workflow) {
         String UPDATE_WORKFLOW =
-                "UPDATE workflow SET json_data = ?, modified_on = CURRENT_TIMESTAMP WHERE workflow_id = ?";
+                "UPDATE workflow SET json_data = ?, json_data_bin = ?, modified_on = CURRENT_TIMESTAMP WHERE workflow_id = ?";
 
         execute(
                 connection,
                 UPDATE_WORKFLOW,
                 q ->
-                        q.addJsonParameter(workflow)
+                        q.addDataParameters(dataCodec, workflow)
                                 .addParameter(workflow.getWorkflowId())
                                 .executeUpdate());
     }
@@ -704,24 +933,32 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
          * Most times the row will be updated so let's try the update first. This used to be an 'INSERT/ON DUPLICATE KEY update' sql statement. The problem with that
          * is that if we try the INSERT first, the sequence will be increased even if the ON DUPLICATE KEY happens.
          */
+        byte[] data = dataCodec.isBinary() ? dataCodec.encode(task) : null;
+        String json = data == null ? toJson(task) : null;
         String UPDATE_TASK =
-                "UPDATE task SET json_data=?, modified_on=CURRENT_TIMESTAMP WHERE task_id=?";
+                "UPDATE task SET json_data=?, json_data_bin=?, modified_on=CURRENT_TIMESTAMP WHERE task_id=?";
         int rowsUpdated =
                 query(
                         connection,
                         UPDATE_TASK,
                         q ->
-                                q.addJsonParameter(task)
+                                q.addParameter(json)
+                                        .addParameter(data)
                                         .addParameter(task.getTaskId())
                                         .executeUpdate());
 
         if (rowsUpdated == 0) {
             String INSERT_TASK =
-                    "INSERT INTO task (task_id, json_data, modified_on) VALUES (?, ?, CURRENT_TIMESTAMP) ON DUPLICATE KEY UPDATE json_data=VALUES(json_data), modified_on=VALUES(modified_on)";
+                    "INSERT INTO task (task_id, json_data, json_data_bin, modified_on) VALUES (?, ?, ?, CURRENT_TIMESTAMP) "
+                            + "ON DUPLICATE KEY UPDATE json_data=VALUES(json_data), json_data_bin=VALUES(json_data_bin), modified_on=VALUES(modified_on)";
             execute(
                     connection,
                     INSERT_TASK,
-                    q -> q.addParameter(task.getTaskId()).addJsonParameter(task).executeUpdate());
+                    q ->
+                            q.addParameter(task.getTaskId())
+                                    .addParameter(json)
+                                    .addParameter(data)
+                                    .executeUpdate());
         }
     }
 
@@ -1051,6 +1288,62 @@ public class MySQLExecutionDAO extends MySQLBaseDAO
                                 .executeScalarList(String.class));
     }
 
+    /**
+     * Takes up to {@literal requested} permits of the rate limit window starting at {@literal
+     * windowStart} from the {@code task_rate_limit} row of {@literal taskDefName}, which is locked
+     * for the duration of the transaction.
+     *
+     * @return the number of permits granted, which is 0 once the window is used up
+     */
+    private int leaseRateLimitPermits(
+            Connection connection,
+            String taskDefName,
+            long windowStart,
+            int rateLimit,
+            int requested) {
+        String INSERT_RATE_LIMIT =
+                "INSERT IGNORE INTO task_rate_limit (task_def_name, window_start, permits_used) VALUES (?, ?, 0)";
+        execute(
+                connection,
+                INSERT_RATE_LIMIT,
+                q -> q.addParameter(taskDefName).addParameter(windowStart).executeUpdate());
+
+        String GET_RATE_LIMIT =
+                "SELECT window_start, permits_used FROM task_rate_limit WHERE task_def_name = ? FOR UPDATE";
+        Pair<Long, Integer> current =
+                query(
+                        connection,
+                        GET_RATE_LIMIT,
+                        q ->
+                                q.addParameter(taskDefName)
+                                        .executeAndFetch(
+                                                rs -> {
+                                                    rs.next();
+                                                    return Pair.of(
+                                                            rs.getLong("window_start"),
+                                                            rs.getInt("permits_used"));
+                                                }));
+        if (current.getLeft() > windowStart) {
+            // another node's clock moved on to the next window already
+            return 0;
+        }
+        int used = current.getLeft() == windowStart ? current.getRight() : 0;
+        int granted = Math.max(0, Math.min(requested, rateLimit - used));
+        if (granted > 0) {
+            String UPDATE_RATE_LIMIT =
+                    "UPDATE task_rate_limit SET window_start = ?, permits_used = ? WHERE task_def_name = ?";
+            execute(
+                    connection,
+                    UPDATE_RATE_LIMIT,
+                    q ->
+                            q.addParameter(windowStart)
+                                    .addParameter(used + granted)
+                                    .addParameter(taskDefName)
+                                    .executeUpdate());
+        }
+        return granted;
+    }
+
     private void validate(TaskModel task) {
         Preconditions.checkNotNull(task, "task object cannot be null");
         Preconditions.checkNotNull(task.getTaskId(), "Task id cannot be null");
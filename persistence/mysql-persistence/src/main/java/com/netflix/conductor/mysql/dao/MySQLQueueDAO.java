@@ -16,6 +16,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -26,17 +28,30 @@ import org.springframework.retry.support.RetryTemplate;
 
 import com.netflix.conductor.core.events.queue.Message;
 import com.netflix.conductor.dao.QueueDAO;
+import com.netflix.conductor.metrics.Monitors;
 import com.netflix.conductor.mysql.util.Query;
+import com.netflix.conductor.mysql.util.QueueNotifier;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
-import com.google.common.util.concurrent.Uninterruptibles;
 
 public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
 
     private static final Long UNACK_SCHEDULE_MS = 60_000L;
 
+    /**
+     * Upper bound a long poll waits between checks of the queue, since pushes from other nodes do
+     * not reach the {@link QueueNotifier}
+     */
+    private static final long POLL_INTERVAL_MS = 200L;
+
+    private final QueueNotifier queueNotifier = new QueueNotifier();
+
+    /** Queues known to exist in the {@code queue} table, so pushes can skip the existence check */
+    private final Set<String> knownQueues = ConcurrentHashMap.newKeySet();
+
     public MySQLQueueDAO(
             RetryTemplate retryTemplate, ObjectMapper objectMapper, DataSource dataSource) {
         super(retryTemplate, objectMapper, dataSource);
@@ -59,6 +74,7 @@ public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
     public void push(String queueName, String messageId, int priority, long offsetTimeInSecond) {
         withTransaction(
                 tx -> pushMessage(tx, queueName, messageId, null, priority, offsetTimeInSecond));
+        queueNotifier.signal(queueName);
     }
 
     @Override
@@ -74,6 +90,7 @@ public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
                                                 message.getPayload(),
                                                 message.getPriority(),
                                                 0)));
+        queueNotifier.signal(queueName);
     }
 
     @Override
@@ -84,36 +101,67 @@ public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
     @Override
     public boolean pushIfNotExists(
             String queueName, String messageId, int priority, long offsetTimeInSecond) {
-        return getWithRetriedTransactions(
-                tx -> {
-                    if (!existsMessage(tx, queueName, messageId)) {
-                        pushMessage(tx, queueName, messageId, null, priority, offsetTimeInSecond);
-                        return true;
-                    }
-                    return false;
-                });
+        boolean pushed =
+                getWithRetriedTransactions(
+                        tx -> {
+                            if (!existsMessage(tx, queueName, messageId)) {
+                                pushMessage(
+                                        tx,
+                                        queueName,
+                                        messageId,
+                                        null,
+                                        priority,
+                                        offsetTimeInSecond);
+                                return true;
+                            }
+                            return false;
+                        });
+        if (pushed) {
+            queueNotifier.signal(queueName);
+        }
+        return pushed;
     }
 
     @Override
     public List<String> pop(String queueName, int count, int timeout) {
-        List<Message> messages =
-                getWithTransactionWithOutErrorPropagation(
-                        tx -> popMessages(tx, queueName, count, timeout));
-        if (messages == null) {
-            return new ArrayList<>();
-        }
-        return messages.stream().map(Message::getId).collect(Collectors.toList());
+        return pollMessages(queueName, count, timeout).stream()
+                .map(Message::getId)
+                .collect(Collectors.toList());
     }
 
+    /**
+     * Each attempt to claim messages runs in its own short transaction. Waiting for more messages
+     * happens outside of any transaction, so a long poll neither holds a pooled connection nor row
+     * locks while it waits.
+     */
     @Override
     public List<Message> pollMessages(String queueName, int count, int timeout) {
-        List<Message> messages =
-                getWithTransactionWithOutErrorPropagation(
-                        tx -> popMessages(tx, queueName, count, timeout));
-        if (messages == null) {
-            return new ArrayList<>();
+        long start = System.currentTimeMillis();
+        final List<Message> messages = new ArrayList<>();
+
+        while (true) {
+            long signalVersion = queueNotifier.version(queueName);
+            List<Message> messagesSlice =
+                    getWithTransactionWithOutErrorPropagation(
+                            tx -> popMessages(tx, queueName, count - messages.size()));
+            if (messagesSlice == null) {
+                logger.warn(
+                        "Unable to poll {} messages from {} due to tx conflict, only {} popped",
+                        count,
+                        queueName,
+                        messages.size());
+                // conflict could have happened, returned messages popped so far
+                return messages;
+            }
+
+            messages.addAll(messagesSlice);
+            long elapsed = System.currentTimeMillis() - start;
+            if (messages.size() >= count || elapsed >= timeout) {
+                return messages;
+            }
+            queueNotifier.await(
+                    queueName, signalVersion, Math.min(timeout - elapsed, POLL_INTERVAL_MS));
         }
-        return messages;
     }
 
     @Override
@@ -155,6 +203,7 @@ public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
     public void flush(String queueName) {
         final String FLUSH_QUEUE = "DELETE FROM queue_message WHERE queue_name = ?";
         executeWithTransaction(FLUSH_QUEUE, q -> q.addParameter(queueName).executeDelete());
+        knownQueues.remove(queueName);
     }
 
     @Override
@@ -243,15 +292,20 @@ public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
                 "UPDATE queue_message SET offset_time_seconds = ?, deliver_on = TIMESTAMPADD(SECOND,?,CURRENT_TIMESTAMP) \n"
                         + "WHERE queue_name = ? AND message_id = ?";
 
-        return queryWithTransaction(
-                SET_OFFSET_TIME,
-                q ->
-                        q.addParameter(offsetTimeInSecond)
-                                        .addParameter(offsetTimeInSecond)
-                                        .addParameter(queueName)
-                                        .addParameter(messageId)
-                                        .executeUpdate()
-                                == 1);
+        boolean reset =
+                queryWithTransaction(
+                        SET_OFFSET_TIME,
+                        q ->
+                                q.addParameter(offsetTimeInSecond)
+                                                .addParameter(offsetTimeInSecond)
+                                                .addParameter(queueName)
+                                                .addParameter(messageId)
+                                                .executeUpdate()
+                                        == 1);
+        if (reset) {
+            queueNotifier.signal(queueName);
+        }
+        return reset;
     }
 
     private boolean existsMessage(Connection connection, String queueName, String messageId) {
@@ -312,73 +366,83 @@ public class MySQLQueueDAO extends MySQLBaseDAO implements QueueDAO {
                 q -> q.addParameter(queueName).addParameter(messageId).executeDelete());
     }
 
-    private List<Message> peekMessages(Connection connection, String queueName, int count) {
+    /**
+     * Locks up to {@literal count} deliverable messages with {@code SKIP LOCKED}, so that
+     * concurrent pollers claim disjoint batches instead of queueing up on the same rows, and marks
+     * them as popped with a single update.
+     */
+    private List<Message> popMessages(Connection connection, String queueName, int count) {
         if (count < 1) {
             return Collections.emptyList();
         }
 
         final String PEEK_MESSAGES =
-                "SELECT message_id, priority, payload FROM queue_message use index(combo_queue_message) WHERE queue_name = ? AND popped = false AND deliver_on <= TIMESTAMPADD(MICROSECOND, 1000, CURRENT_TIMESTAMP) ORDER BY priority DESC, deliver_on, created_on LIMIT ?";
-
-        return query(
-                connection,
-                PEEK_MESSAGES,
-                p ->
-                        p.addParameter(queueName)
-                                .addParameter(count)
-                                .executeAndFetch(
-                                        rs -> {
-                                            List<Message> results = new ArrayList<>();
-                                            while (rs.next()) {
-                                                Message m = new Message();
-                                                m.setId(rs.getString("message_id"));
-                                                m.setPriority(rs.getInt("priority"));
-                                                m.setPayload(rs.getString("payload"));
-                                                results.add(m);
-                                            }
-                                            return results;
-                                        }));
-    }
+                "SELECT message_id, priority, payload FROM queue_message use index(combo_queue_message) WHERE queue_name = ? AND popped = false AND deliver_on <= TIMESTAMPADD(MICROSECOND, 1000, CURRENT_TIMESTAMP) ORDER BY priority DESC, deliver_on, created_on LIMIT ? FOR UPDATE SKIP LOCKED";
 
-    private List<Message> popMessages(
-            Connection connection, String queueName, int count, int timeout) {
-        long start = System.currentTimeMillis();
-        List<Message> messages = peekMessages(connection, queueName, count);
-
-        while (messages.size() < count && ((System.currentTimeMillis() - start) < timeout)) {
-            Uninterruptibles.sleepUninterruptibly(200, TimeUnit.MILLISECONDS);
-            messages = peekMessages(connection, queueName, count);
-        }
+        List<Message> messages =
+                query(
+                        connection,
+                        PEEK_MESSAGES,
+                        p ->
+                                p.addParameter(queueName)
+                                        .addParameter(count)
+                                        .executeAndFetch(
+                                                rs -> {
+                                                    List<Message> results = new ArrayList<>();
+                                                    while (rs.next()) {
+                                                        Message m = new Message();
+                                                        m.setId(rs.getString("message_id"));
+                                                        m.setPriority(rs.getInt("priority"));
+                                                        m.setPayload(rs.getString("payload"));
+                                                        results.add(m);
+                                                    }
+                                                    return results;
+                                                }));
 
         if (messages.isEmpty()) {
             return messages;
         }
 
-        List<Message> poppedMessages = new ArrayList<>();
-        for (Message message : messages) {
-            final String POP_MESSAGE =
-                    "UPDATE queue_message SET popped = true WHERE queue_name = ? AND message_id = ? AND popped = false";
-            int result =
-                    query(
-                            connection,
-                            POP_MESSAGE,
-                            q ->
-                                    q.addParameter(queueName)
-                                            .addParameter(message.getId())
-                                            .executeUpdate());
-
-            if (result == 1) {
-                poppedMessages.add(message);
-            }
-        }
-        return poppedMessages;
+        final String POP_MESSAGES =
+                String.format(
+                        "UPDATE queue_message SET popped = true WHERE queue_name = ? AND message_id IN (%s) AND popped = false",
+                        Query.generateInBindings(messages.size()));
+        execute(
+                connection,
+                POP_MESSAGES,
+                q ->
+                        q.addParameter(queueName)
+                                .addParameters(
+                                        messages.stream()
+                                                .map(Message::getId)
+                                                .collect(Collectors.toList()))
+                                .executeUpdate());
+        return messages;
     }
 
+    /** Forgets all known queues, e.g. after the tables were dropped underneath this DAO. */
+    @VisibleForTesting
+    void clearKnownQueues() {
+        knownQueues.clear();
+    }
+
+    /**
+     * Only queues that were found in the table are remembered: a queue inserted here is not cached
+     * until a later check sees it committed, so a rolled back insert is never cached.
+     */
     private void createQueueIfNotExists(Connection connection, String queueName) {
+        if (knownQueues.contains(queueName)) {
+            Monitors.recordCounter("known_queue_cache", 1, "result", "hit");
+            return;
+        }
+        Monitors.recordCounter("known_queue_cache", 1, "result", "miss");
+
         logger.trace("Creating new queue '{}'", queueName);
         final String EXISTS_QUEUE = "SELECT EXISTS(SELECT 1 FROM queue WHERE queue_name = ?)";
         boolean exists = query(connection, EXISTS_QUEUE, q -> q.addParameter(queueName).exists());
-        if (!exists) {
+        if (exists) {
+            knownQueues.add(queueName);
+        } else {
             final String CREATE_QUEUE = "INSERT IGNORE INTO queue (queue_name) VALUES (?)";
             execute(connection, CREATE_QUEUE, q -> q.addParameter(queueName).executeUpdate());
         }
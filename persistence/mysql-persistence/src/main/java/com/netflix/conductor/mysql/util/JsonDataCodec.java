@@ -0,0 +1,127 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.mysql.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.netflix.conductor.core.exception.NonTransientException;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Encodes workflow and task documents for the binary {@code json_data_bin} column.
+ *
+ * <p>Every encoded value starts with a format byte: the low bits name the Jackson data format and
+ * {@link #COMPRESSED} marks a deflated body. Decoding only looks at that byte, so rows written with
+ * any encoding, as well as rows that still only have text JSON, can be read side by side.
+ */
+public class JsonDataCodec {
+
+    public enum Encoding {
+        /** Text JSON in {@code json_data}, as before */
+        JSON(0, null),
+        SMILE(1, new SmileFactory()),
+        CBOR(2, new CBORFactory());
+
+        private final int format;
+        private final JsonFactory factory;
+
+        Encoding(int format, JsonFactory factory) {
+            this.format = format;
+            this.factory = factory;
+        }
+    }
+
+    static final int COMPRESSED = 0x80;
+
+    private final ObjectMapper objectMapper;
+    private final Encoding encoding;
+    private final boolean compressed;
+
+    public JsonDataCodec(ObjectMapper objectMapper, Encoding encoding, boolean compressed) {
+        this.objectMapper = objectMapper;
+        this.encoding = encoding;
+        this.compressed = compressed;
+    }
+
+    /**
+     * @return whether values are written to {@code json_data_bin} rather than {@code json_data}
+     */
+    public boolean isBinary() {
+        return encoding != Encoding.JSON;
+    }
+
+    /**
+     * @param value The value to encode.
+     * @return The format byte followed by the encoded, and possibly compressed, {@literal value}.
+     */
+    public byte[] encode(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        bytes.write(encoding.format | (compressed ? COMPRESSED : 0));
+        // a Deflater passed to the stream is not ended when the stream is closed
+        Deflater deflater = compressed ? new Deflater(Deflater.BEST_SPEED) : null;
+        try (OutputStream out = compressed ? new DeflaterOutputStream(bytes, deflater) : bytes;
+                JsonGenerator generator = encoding.factory.createGenerator(out)) {
+            objectMapper.writeValue(generator, value);
+        } catch (IOException ex) {
+            throw new NonTransientException(ex.getMessage(), ex);
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a value written by {@link #encode(Object)} with any encoding.
+     *
+     * @param reader The reader for the target type.
+     * @param data The column bytes, starting with the format byte.
+     * @param <V> The type parameter.
+     * @return The decoded value.
+     */
+    public static <V> V decode(ObjectReader reader, InputStream data) {
+        try (data) {
+            int header = data.read();
+            JsonFactory factory = factory(header & ~COMPRESSED);
+            InputStream in = (header & COMPRESSED) != 0 ? new InflaterInputStream(data) : data;
+            try (JsonParser parser = factory.createParser(in)) {
+                return reader.readValue(parser);
+            }
+        } catch (IOException ex) {
+            throw new NonTransientException(
+                    "Could not decode binary data to " + reader.getValueType(), ex);
+        }
+    }
+
+    private static JsonFactory factory(int format) {
+        for (Encoding encoding : Encoding.values()) {
+            if (encoding.format == format && encoding.factory != null) {
+                return encoding.factory;
+            }
+        }
+        throw new NonTransientException("Unknown binary data format " + format);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.mysql.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process, per-queue wakeup signal for long-polling consumers.
+ *
+ * <p>Pushes committed on this node call {@link #signal(String)}, which releases the pollers waiting
+ * on that queue right away. Pushes from other nodes are not seen, so waiters always pass a bounded
+ * wait time and re-check the database when it expires.
+ */
+public class QueueNotifier {
+
+    private final ConcurrentHashMap<String, QueueSignal> signals = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the current signal version of {@literal queueName}. The version should be read
+     * <em>before</em> checking the queue, and then be passed to {@link #await(String, long, long)},
+     * so that a push that commits in between is not missed.
+     *
+     * @param queueName The queue name.
+     * @return The current signal version of the queue.
+     */
+    public long version(String queueName) {
+        return queueSignal(queueName).version();
+    }
+
+    /**
+     * Blocks until {@literal queueName} is signalled after {@literal version}, or {@literal
+     * maxWaitMs} elapses.
+     *
+     * @param queueName The queue name.
+     * @param version The version returned by {@link #version(String)}.
+     * @param maxWaitMs The maximum time to wait in milliseconds.
+     */
+    public void await(String queueName, long version, long maxWaitMs) {
+        queueSignal(queueName).await(version, maxWaitMs);
+    }
+
+    /**
+     * Wakes up all pollers waiting on {@literal queueName}.
+     *
+     * @param queueName The queue name.
+     */
+    public void signal(String queueName) {
+        QueueSignal signal = signals.get(queueName);
+        if (signal != null) {
+            signal.signal();
+        }
+    }
+
+    private QueueSignal queueSignal(String queueName) {
+        return signals.computeIfAbsent(queueName, name -> new QueueSignal());
+    }
+
+    private static class QueueSignal {
+
+        private long version;
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized void signal() {
+            version++;
+            notifyAll();
+        }
+
+        synchronized void await(long seen, long maxWaitMs) {
+            long deadline = System.currentTimeMillis() + maxWaitMs;
+            long remaining = maxWaitMs;
+            while (version == seen && remaining > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+}
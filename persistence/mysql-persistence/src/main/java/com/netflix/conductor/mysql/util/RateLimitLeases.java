@@ -0,0 +1,97 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.mysql.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Hands out the rate limit permits this server leased from the database for the current fixed
+ * window of each task definition, so that the database is only queried once per lease instead of
+ * once per task. Only one thread per task definition leases more at a time, without holding the
+ * local lease while it does; the others wait for its result.
+ *
+ * <p>Windows are aligned to the epoch and are not sliding, so up to twice the limit may be admitted
+ * around a window boundary. Permits leased but not handed out, e.g. by a server that restarts, are
+ * lost for the rest of their window, so the limit is never exceeded within one window but may not
+ * be reached.
+ */
+public class RateLimitLeases {
+
+    private final ConcurrentHashMap<String, Lease> leases = new ConcurrentHashMap<>();
+
+    /**
+     * Takes a permit of the window starting at {@literal windowStart}, leasing more with {@literal
+     * leaseFunction} once the permits held locally are used up.
+     *
+     * @param name the task definition the permits belong to
+     * @param windowStart the start of the current window in epoch milliseconds
+     * @param leaseFunction leases permits of the given window from the database and returns how
+     *     many were granted, 0 once the window is used up
+     * @return true if a permit was taken, false if the window is used up
+     */
+    public boolean tryAcquire(String name, long windowStart, LongToIntFunction leaseFunction) {
+        Lease lease = leases.computeIfAbsent(name, key -> new Lease());
+        long leaseWindow = -1;
+        synchronized (lease) {
+            if (windowStart > lease.windowStart) {
+                lease.windowStart = windowStart;
+                lease.remaining = 0;
+                lease.exhausted = false;
+            }
+            // wait for a lease under way rather than query the database as well
+            while (lease.remaining == 0 && !lease.exhausted && lease.refilling) {
+                try {
+                    lease.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (lease.remaining > 0) {
+                lease.remaining--;
+                return true;
+            }
+            if (lease.exhausted || lease.refilling) {
+                return false;
+            }
+            lease.refilling = true;
+            leaseWindow = lease.windowStart;
+        }
+
+        int granted = -1;
+        try {
+            granted = leaseFunction.applyAsInt(leaseWindow);
+        } finally {
+            synchronized (lease) {
+                lease.refilling = false;
+                // permits leased for a window that has passed meanwhile are lost
+                if (granted >= 0 && lease.windowStart == leaseWindow) {
+                    // permits are never returned, so a window that ran out stays out
+                    lease.exhausted = granted == 0;
+                    lease.remaining += Math.max(granted - 1, 0);
+                }
+                lease.notifyAll();
+            }
+        }
+        return granted > 0;
+    }
+
+    /** The permits this server holds for the current window of a task definition. */
+    private static class Lease {
+
+        private long windowStart;
+        private int remaining;
+        private boolean exhausted;
+        private boolean refilling;
+    }
+}
@@ -0,0 +1,7 @@
+-- Permits handed out in the current rate limit window of a task definition, shared by all nodes
+CREATE TABLE task_rate_limit (
+  task_def_name varchar(255) NOT NULL,
+  window_start BIGINT NOT NULL,
+  permits_used INT NOT NULL,
+  PRIMARY KEY (task_def_name)
+);
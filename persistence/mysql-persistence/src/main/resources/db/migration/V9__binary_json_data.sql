@@ -0,0 +1,4 @@
+-- optional binary encoding of workflow and task documents, see JsonDataCodec;
+-- a row holds its document in exactly one of json_data and json_data_bin
+ALTER TABLE workflow MODIFY json_data mediumtext NULL, ADD COLUMN json_data_bin MEDIUMBLOB NULL;
+ALTER TABLE task MODIFY json_data mediumtext NULL, ADD COLUMN json_data_bin MEDIUMBLOB NULL;
@@ -11,27 +11,46 @@
  */
 package com.netflix.conductor.mysql.dao;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
 
 import org.flywaydb.core.Flyway;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.netflix.conductor.common.config.TestObjectMapperConfiguration;
+import com.netflix.conductor.common.metadata.tasks.TaskDef;
 import com.netflix.conductor.common.metadata.workflow.WorkflowDef;
 import com.netflix.conductor.dao.ExecutionDAO;
 import com.netflix.conductor.dao.ExecutionDAOTest;
+import com.netflix.conductor.model.TaskModel;
 import com.netflix.conductor.model.WorkflowModel;
 import com.netflix.conductor.mysql.config.MySQLConfiguration;
+import com.netflix.conductor.mysql.config.MySQLProperties;
+import com.netflix.conductor.mysql.util.JsonDataCodec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 @ContextConfiguration(
         classes = {
@@ -45,6 +64,16 @@ public class MySQLExecutionDAOTest extends ExecutionDAOTest {
 
     @Autowired private MySQLExecutionDAO executionDAO;
 
+    @Autowired private ObjectMapper objectMapper;
+
+    @Qualifier("dataSource")
+    @Autowired
+    private DataSource dataSource;
+
+    @Qualifier("mysqlRetryTemplate")
+    @Autowired
+    private RetryTemplate retryTemplate;
+
     @Autowired Flyway flyway;
 
     // clean the database between tests.
@@ -73,6 +102,130 @@ public class MySQLExecutionDAOTest extends ExecutionDAOTest {
         assertEquals(10, bycorrelationId.size());
     }
 
+    @Test
+    public void testPollDataBuffer() {
+        executionDAO.updateLastPollData("poll_buffer_task", null, "worker1");
+        executionDAO.updateLastPollData("poll_buffer_task", "domain1", "worker1");
+        // served from the buffer before it is flushed
+        assertEquals("worker1", executionDAO.getPollData("poll_buffer_task", null).getWorkerId());
+        assertEquals(2, executionDAO.getPollData("poll_buffer_task").size());
+
+        executionDAO.flushPollData();
+        executionDAO.updateLastPollData("poll_buffer_task", null, "worker2");
+        assertEquals("worker2", executionDAO.getPollData("poll_buffer_task", null).getWorkerId());
+        assertEquals(2, executionDAO.getAllPollData().size());
+
+        executionDAO.flushPollData();
+        assertEquals("worker2", executionDAO.getPollData("poll_buffer_task", null).getWorkerId());
+        assertEquals(
+                "worker1", executionDAO.getPollData("poll_buffer_task", "domain1").getWorkerId());
+        assertEquals(2, executionDAO.getPollData("poll_buffer_task").size());
+    }
+
+    @Test
+    public void testMixedDataEncodings() {
+        MySQLProperties properties = new MySQLProperties();
+        properties.setDataEncoding(JsonDataCodec.Encoding.CBOR);
+        properties.setDataCompressionEnabled(true);
+        MySQLExecutionDAO binaryDAO =
+                new MySQLExecutionDAO(retryTemplate, objectMapper, dataSource, properties);
+        try {
+            WorkflowDef def = new WorkflowDef();
+            def.setName("mixed_encodings");
+            WorkflowModel workflow = createTestWorkflow();
+            workflow.setWorkflowDefinition(def);
+            workflow.setTasks(new ArrayList<>());
+            getExecutionDAO().createWorkflow(workflow);
+
+            List<TaskModel> tasks = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                TaskModel task = new TaskModel();
+                task.setTaskId(workflow.getWorkflowId() + "_" + i);
+                task.setReferenceTaskName("task_" + i);
+                task.setWorkflowInstanceId(workflow.getWorkflowId());
+                task.setTaskDefName("mixed_encodings_task");
+                task.setSeq(i);
+                task.setStatus(TaskModel.Status.SCHEDULED);
+                task.getOutputData().put("index", i);
+                tasks.add(task);
+            }
+            // text and binary rows side by side, through both write paths
+            getExecutionDAO().createTasks(tasks.subList(0, 2));
+            binaryDAO.createTasks(tasks.subList(2, 4));
+            tasks.get(0).setStatus(TaskModel.Status.COMPLETED);
+            binaryDAO.updateTask(tasks.get(0));
+            binaryDAO.updateWorkflow(workflow);
+
+            for (ExecutionDAO dao : List.of(getExecutionDAO(), binaryDAO)) {
+                WorkflowModel found = dao.getWorkflow(workflow.getWorkflowId(), true);
+                assertEquals(workflow.getWorkflowId(), found.getWorkflowId());
+                assertEquals(4, found.getTasks().size());
+                for (int i = 0; i < 4; i++) {
+                    assertEquals(i, found.getTasks().get(i).getOutputData().get("index"));
+                }
+                assertEquals(
+                        TaskModel.Status.COMPLETED,
+                        dao.getTask(tasks.get(0).getTaskId()).getStatus());
+                assertEquals(
+                        3,
+                        dao.getPendingTasksByWorkflow(
+                                        "mixed_encodings_task", workflow.getWorkflowId())
+                                .size());
+            }
+        } finally {
+            binaryDAO.destroy();
+        }
+    }
+
+    @Test
+    public void testRateLimitAcrossNodes() throws Exception {
+        int rateLimit = 100;
+        TaskModel task = new TaskModel();
+        task.setTaskId(UUID.randomUUID().toString());
+        task.setTaskDefName("rate_limited_task");
+        task.setRateLimitPerFrequency(rateLimit);
+        // a window long enough not to roll over while the test runs
+        task.setRateLimitFrequencyInSeconds(1_000_000);
+
+        // every node leases its own permits from the shared table
+        List<MySQLExecutionDAO> nodes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            nodes.add(
+                    new MySQLExecutionDAO(
+                            retryTemplate, objectMapper, dataSource, new MySQLProperties()));
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(16);
+        try {
+            AtomicInteger admitted = new AtomicInteger();
+            List<Callable<Void>> calls = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                MySQLExecutionDAO node = nodes.get(i % nodes.size());
+                calls.add(
+                        () -> {
+                            for (int j = 0; j < 50; j++) {
+                                if (!node.exceedsRateLimitPerFrequency(task, null)) {
+                                    admitted.incrementAndGet();
+                                }
+                            }
+                            return null;
+                        });
+            }
+            for (Future<Void> future : executorService.invokeAll(calls)) {
+                future.get();
+            }
+            // 800 attempts, of which exactly the limit gets through across all nodes
+            assertEquals(rateLimit, admitted.get());
+            assertTrue(executionDAO.exceedsRateLimitPerFrequency(task, null));
+
+            TaskDef taskDef = new TaskDef("rate_limited_task");
+            taskDef.setRateLimitPerFrequency(0);
+            assertFalse(executionDAO.exceedsRateLimitPerFrequency(task, taskDef));
+        } finally {
+            executorService.shutdownNow();
+            nodes.forEach(MySQLExecutionDAO::destroy);
+        }
+    }
+
     @Override
     public ExecutionDAO getExecutionDAO() {
         return executionDAO;
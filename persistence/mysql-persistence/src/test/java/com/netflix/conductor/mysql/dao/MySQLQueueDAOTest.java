@@ -14,8 +14,12 @@ package com.netflix.conductor.mysql.dao;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.sql.DataSource;
@@ -74,6 +78,7 @@ public class MySQLQueueDAOTest {
     public void before() {
         flyway.clean();
         flyway.migrate();
+        queueDAO.clearKnownQueues();
     }
 
     @Test
@@ -228,6 +233,49 @@ public class MySQLQueueDAOTest {
         }
     }
 
+    @Test
+    public void pollMessagesWakesUpOnPushTest() throws Exception {
+        final String queueName = "wakeup_test";
+        CompletableFuture<List<Message>> poll =
+                CompletableFuture.supplyAsync(() -> queueDAO.pollMessages(queueName, 1, 20_000));
+        Thread.sleep(1_000);
+        long pushed = System.currentTimeMillis();
+        queueDAO.push(queueName, "wakeup", 0);
+
+        List<Message> polled = poll.get(10, TimeUnit.SECONDS);
+        assertEquals(1, polled.size());
+        assertEquals("wakeup", polled.get(0).getId());
+        assertTrue(
+                "Poller should be woken up by the push",
+                System.currentTimeMillis() - pushed < 5_000);
+    }
+
+    @Test
+    public void concurrentPollMessagesTest() throws Exception {
+        final String queueName = "concurrent_poll_test";
+        final int totalSize = 100;
+        for (int i = 0; i < totalSize; i++) {
+            queueDAO.push(queueName, "msg-" + i, 0);
+        }
+
+        List<CompletableFuture<List<Message>>> polls = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            polls.add(
+                    CompletableFuture.supplyAsync(
+                            () -> queueDAO.pollMessages(queueName, totalSize / 4, 5_000)));
+        }
+
+        Set<String> polledIds = new HashSet<>();
+        int polledCount = 0;
+        for (CompletableFuture<List<Message>> poll : polls) {
+            List<Message> polled = poll.get(30, TimeUnit.SECONDS);
+            polledCount += polled.size();
+            polled.forEach(m -> polledIds.add(m.getId()));
+        }
+        assertEquals("Messages must not be handed out twice", polledCount, polledIds.size());
+        assertEquals(totalSize, polledIds.size());
+    }
+
     /**
      * Test fix for https://github.com/Netflix/conductor/issues/448
      *
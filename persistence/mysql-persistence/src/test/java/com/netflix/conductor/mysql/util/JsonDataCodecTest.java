@@ -0,0 +1,67 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.mysql.util;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Test;
+
+import com.netflix.conductor.common.config.ObjectMapperProvider;
+import com.netflix.conductor.core.exception.NonTransientException;
+import com.netflix.conductor.model.TaskModel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JsonDataCodecTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapperProvider().getObjectMapper();
+
+    @Test
+    public void encodingsRoundTrip() {
+        TaskModel task = new TaskModel();
+        task.setTaskId("task_id");
+        task.setStatus(TaskModel.Status.IN_PROGRESS);
+        task.getOutputData().put("result", "x".repeat(1_000));
+
+        for (JsonDataCodec.Encoding encoding : JsonDataCodec.Encoding.values()) {
+            if (encoding == JsonDataCodec.Encoding.JSON) {
+                assertFalse(new JsonDataCodec(objectMapper, encoding, false).isBinary());
+                continue;
+            }
+            for (boolean compressed : new boolean[] {false, true}) {
+                JsonDataCodec codec = new JsonDataCodec(objectMapper, encoding, compressed);
+                assertTrue(codec.isBinary());
+                byte[] data = codec.encode(task);
+                assertEquals(compressed, (data[0] & JsonDataCodec.COMPRESSED) != 0);
+
+                TaskModel decoded =
+                        JsonDataCodec.decode(
+                                objectMapper.readerFor(TaskModel.class),
+                                new ByteArrayInputStream(data));
+                assertEquals(task.getTaskId(), decoded.getTaskId());
+                assertEquals(task.getStatus(), decoded.getStatus());
+                assertEquals(task.getOutputData(), decoded.getOutputData());
+            }
+        }
+    }
+
+    @Test(expected = NonTransientException.class)
+    public void unknownFormat() {
+        JsonDataCodec.decode(
+                objectMapper.readerFor(TaskModel.class),
+                new ByteArrayInputStream(new byte[] {0x7f, 0, 0}));
+    }
+}
@@ -12,6 +12,10 @@
 package com.netflix.conductor.postgres.config;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import javax.annotation.PostConstruct;
@@ -55,8 +59,21 @@ public class PostgresConfiguration {
     @Bean(initMethod = "migrate")
     @PostConstruct
     public Flyway flywayForPrimaryDb() {
+        List<String> locations = new ArrayList<>();
+        locations.add("classpath:db/migration_postgres");
+        // always resolvable, so that an applied script still validates with the setting turned
+        // off; the placeholders decide whether they partition the tables
+        locations.add("classpath:db/migration_postgres_queue_partitions");
+        locations.add("classpath:db/migration_postgres_time_partitions");
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put(
+                "queuePartitioningEnabled",
+                String.valueOf(properties.isQueuePartitioningEnabled()));
+        placeholders.put(
+                "timePartitioningEnabled", String.valueOf(properties.isTimePartitioningEnabled()));
         return Flyway.configure()
-                .locations("classpath:db/migration_postgres")
+                .locations(locations.toArray(new String[0]))
+                .placeholders(placeholders)
                 .schemas(properties.getSchema())
                 .dataSource(dataSource)
                 .baselineOnMigrate(true)
@@ -76,16 +93,18 @@ public class PostgresConfiguration {
     @DependsOn({"flywayForPrimaryDb"})
     public PostgresExecutionDAO postgresExecutionDAO(
             @Qualifier("postgresRetryTemplate") RetryTemplate retryTemplate,
-            ObjectMapper objectMapper) {
-        return new PostgresExecutionDAO(retryTemplate, objectMapper, dataSource);
+            ObjectMapper objectMapper,
+            PostgresProperties properties) {
+        return new PostgresExecutionDAO(retryTemplate, objectMapper, dataSource, properties);
     }
 
     @Bean
     @DependsOn({"flywayForPrimaryDb"})
     public PostgresQueueDAO postgresQueueDAO(
             @Qualifier("postgresRetryTemplate") RetryTemplate retryTemplate,
-            ObjectMapper objectMapper) {
-        return new PostgresQueueDAO(retryTemplate, objectMapper, dataSource);
+            ObjectMapper objectMapper,
+            PostgresProperties properties) {
+        return new PostgresQueueDAO(retryTemplate, objectMapper, dataSource, properties);
     }
 
     @Bean
@@ -93,8 +112,9 @@ public class PostgresConfiguration {
     @ConditionalOnProperty(name = "conductor.indexing.type", havingValue = "postgres")
     public PostgresIndexDAO postgresIndexDAO(
             @Qualifier("postgresRetryTemplate") RetryTemplate retryTemplate,
-            ObjectMapper objectMapper) {
-        return new PostgresIndexDAO(retryTemplate, objectMapper, dataSource);
+            ObjectMapper objectMapper,
+            PostgresProperties properties) {
+        return new PostgresIndexDAO(retryTemplate, objectMapper, dataSource, properties);
     }
 
     @Bean
@@ -17,6 +17,8 @@ import java.time.temporal.ChronoUnit;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.convert.DurationUnit;
 
+import com.netflix.conductor.postgres.util.JsonDataCodec;
+
 @ConfigurationProperties("conductor.postgres")
 public class PostgresProperties {
 
@@ -28,6 +30,122 @@ public class PostgresProperties {
 
     public String schema = "public";
 
+    /**
+     * Wake up long-polling queue consumers with Postgres LISTEN/NOTIFY instead of re-querying the
+     * queue every 100ms
+     */
+    private boolean queueNotifyEnabled = false;
+
+    /**
+     * The maximum time a long-polling consumer waits for a notification before re-checking the
+     * queue, which bounds the delivery delay of deferred messages when notifications are enabled
+     */
+    @DurationUnit(ChronoUnit.MILLIS)
+    private Duration queueNotifyMaxWait = Duration.ofMillis(1000);
+
+    /**
+     * List partition queue_message by queue name, giving every queue its own partition, so that a
+     * large queue does not slow down polls of the others. This cannot be undone: turned off again,
+     * queue_message stays partitioned but new queues stay in its default partition
+     */
+    private boolean queuePartitioningEnabled = false;
+
+    /**
+     * The time in seconds after which queues created meanwhile are moved from the default partition
+     * of queue_message to their own
+     */
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration queuePartitionInterval = Duration.ofSeconds(10);
+
+    /**
+     * Answer getSize and queuesDetail with count queries over queue_message instead of the
+     * in-process counters, which are only reconciled with the database periodically
+     */
+    private boolean queueSizeExact = false;
+
+    /** The time in seconds after which the in-process queue size counters are recounted */
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration queueSizeReconcileInterval = Duration.ofSeconds(30);
+
+    /**
+     * The encoding of newly written workflow and task documents: text JSON, or binary Smile or CBOR
+     * in the json_data_bin column. Rows written with any encoding can be read with any setting
+     */
+    private JsonDataCodec.Encoding dataEncoding = JsonDataCodec.Encoding.JSON;
+
+    /** Deflate binary encoded workflow and task documents */
+    private boolean dataCompressionEnabled = false;
+
+    /**
+     * The interval at which the latest poll of every task queue is written to poll_data. Polls in
+     * between only update an in-memory buffer. Set to 0 to write every poll right away
+     */
+    @DurationUnit(ChronoUnit.MILLIS)
+    private Duration pollDataFlushInterval = Duration.ofMillis(1000);
+
+    /**
+     * The interval at which workflows whose TTL ran out are removed, see removeWorkflowWithExpiry.
+     * Set to 0 to not remove expired workflows on this server
+     */
+    @DurationUnit(ChronoUnit.MILLIS)
+    private Duration workflowExpiryReaperInterval = Duration.ofMillis(1000);
+
+    /** The maximum number of expired workflows removed in one transaction */
+    private int workflowExpiryBatchSize = 100;
+
+    /**
+     * Range partition the workflow, task, workflow_to_task and workflow_def_to_workflow tables by
+     * creation time, so that old executions can be removed by dropping partitions. This cannot be
+     * undone: turned off again, the tables stay partitioned but no partitions are maintained
+     */
+    private boolean timePartitioningEnabled = false;
+
+    /** The time in days covered by one partition of the time partitioned tables */
+    @DurationUnit(ChronoUnit.DAYS)
+    private Duration timePartitionSpan = Duration.ofDays(7);
+
+    /**
+     * The time in days after which partitions of the time partitioned tables are dropped, along
+     * with all workflows and tasks in them, running or not. Set to 0 to keep them
+     */
+    @DurationUnit(ChronoUnit.DAYS)
+    private Duration timePartitionRetention = Duration.ZERO;
+
+    /** The number of workflows getWorkflowsByType loads with one statement */
+    private int workflowReadBatchSize = 100;
+
+    /** The number of batches of workflows getWorkflowsByType loads at the same time */
+    private int workflowReadParallelism = 4;
+
+    /**
+     * The number of index documents and log lines that may wait for the indexing workers. Beyond
+     * that, callers write a batch themselves
+     */
+    private int asyncIndexingQueueSize = 10000;
+
+    /** The maximum number of rows of each index table written with one statement */
+    private int asyncIndexingBatchSize = 100;
+
+    /** The interval at which the indexing workers write queued index documents */
+    @DurationUnit(ChronoUnit.MILLIS)
+    private Duration asyncIndexingFlushInterval = Duration.ofMillis(100);
+
+    /** The number of indexing workers, each writing the documents of a share of the ids */
+    private int asyncIndexingThreads = 2;
+
+    /**
+     * Search hit counts up to this number are exact. Beyond it, the planner's estimate is returned.
+     * Set to 0 to always estimate
+     */
+    private int indexExactCountLimit = 1000;
+
+    /** The number of search hit counts kept for repeated queries. Set to 0 to not keep any */
+    private int indexCountCacheSize = 1000;
+
+    /** The time for which a search hit count is reused */
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration indexCountCacheTtl = Duration.ofSeconds(10);
+
     public Duration getTaskDefCacheRefreshInterval() {
         return taskDefCacheRefreshInterval;
     }
@@ -51,4 +169,188 @@ public class PostgresProperties {
     public void setSchema(String schema) {
         this.schema = schema;
     }
+
+    public boolean isQueueNotifyEnabled() {
+        return queueNotifyEnabled;
+    }
+
+    public void setQueueNotifyEnabled(boolean queueNotifyEnabled) {
+        this.queueNotifyEnabled = queueNotifyEnabled;
+    }
+
+    public Duration getQueueNotifyMaxWait() {
+        return queueNotifyMaxWait;
+    }
+
+    public void setQueueNotifyMaxWait(Duration queueNotifyMaxWait) {
+        this.queueNotifyMaxWait = queueNotifyMaxWait;
+    }
+
+    public boolean isQueuePartitioningEnabled() {
+        return queuePartitioningEnabled;
+    }
+
+    public void setQueuePartitioningEnabled(boolean queuePartitioningEnabled) {
+        this.queuePartitioningEnabled = queuePartitioningEnabled;
+    }
+
+    public Duration getQueuePartitionInterval() {
+        return queuePartitionInterval;
+    }
+
+    public void setQueuePartitionInterval(Duration queuePartitionInterval) {
+        this.queuePartitionInterval = queuePartitionInterval;
+    }
+
+    public boolean isQueueSizeExact() {
+        return queueSizeExact;
+    }
+
+    public void setQueueSizeExact(boolean queueSizeExact) {
+        this.queueSizeExact = queueSizeExact;
+    }
+
+    public Duration getQueueSizeReconcileInterval() {
+        return queueSizeReconcileInterval;
+    }
+
+    public void setQueueSizeReconcileInterval(Duration queueSizeReconcileInterval) {
+        this.queueSizeReconcileInterval = queueSizeReconcileInterval;
+    }
+
+    public JsonDataCodec.Encoding getDataEncoding() {
+        return dataEncoding;
+    }
+
+    public void setDataEncoding(JsonDataCodec.Encoding dataEncoding) {
+        this.dataEncoding = dataEncoding;
+    }
+
+    public boolean isDataCompressionEnabled() {
+        return dataCompressionEnabled;
+    }
+
+    public void setDataCompressionEnabled(boolean dataCompressionEnabled) {
+        this.dataCompressionEnabled = dataCompressionEnabled;
+    }
+
+    public Duration getPollDataFlushInterval() {
+        return pollDataFlushInterval;
+    }
+
+    public void setPollDataFlushInterval(Duration pollDataFlushInterval) {
+        this.pollDataFlushInterval = pollDataFlushInterval;
+    }
+
+    public Duration getWorkflowExpiryReaperInterval() {
+        return workflowExpiryReaperInterval;
+    }
+
+    public void setWorkflowExpiryReaperInterval(Duration workflowExpiryReaperInterval) {
+        this.workflowExpiryReaperInterval = workflowExpiryReaperInterval;
+    }
+
+    public int getWorkflowExpiryBatchSize() {
+        return workflowExpiryBatchSize;
+    }
+
+    public void setWorkflowExpiryBatchSize(int workflowExpiryBatchSize) {
+        this.workflowExpiryBatchSize = workflowExpiryBatchSize;
+    }
+
+    public boolean isTimePartitioningEnabled() {
+        return timePartitioningEnabled;
+    }
+
+    public void setTimePartitioningEnabled(boolean timePartitioningEnabled) {
+        this.timePartitioningEnabled = timePartitioningEnabled;
+    }
+
+    public Duration getTimePartitionSpan() {
+        return timePartitionSpan;
+    }
+
+    public void setTimePartitionSpan(Duration timePartitionSpan) {
+        this.timePartitionSpan = timePartitionSpan;
+    }
+
+    public Duration getTimePartitionRetention() {
+        return timePartitionRetention;
+    }
+
+    public void setTimePartitionRetention(Duration timePartitionRetention) {
+        this.timePartitionRetention = timePartitionRetention;
+    }
+
+    public int getWorkflowReadBatchSize() {
+        return workflowReadBatchSize;
+    }
+
+    public void setWorkflowReadBatchSize(int workflowReadBatchSize) {
+        this.workflowReadBatchSize = workflowReadBatchSize;
+    }
+
+    public int getWorkflowReadParallelism() {
+        return workflowReadParallelism;
+    }
+
+    public void setWorkflowReadParallelism(int workflowReadParallelism) {
+        this.workflowReadParallelism = workflowReadParallelism;
+    }
+
+    public int getAsyncIndexingQueueSize() {
+        return asyncIndexingQueueSize;
+    }
+
+    public void setAsyncIndexingQueueSize(int asyncIndexingQueueSize) {
+        this.asyncIndexingQueueSize = asyncIndexingQueueSize;
+    }
+
+    public int getAsyncIndexingBatchSize() {
+        return asyncIndexingBatchSize;
+    }
+
+    public void setAsyncIndexingBatchSize(int asyncIndexingBatchSize) {
+        this.asyncIndexingBatchSize = asyncIndexingBatchSize;
+    }
+
+    public Duration getAsyncIndexingFlushInterval() {
+        return asyncIndexingFlushInterval;
+    }
+
+    public void setAsyncIndexingFlushInterval(Duration asyncIndexingFlushInterval) {
+        this.asyncIndexingFlushInterval = asyncIndexingFlushInterval;
+    }
+
+    public int getAsyncIndexingThreads() {
+        return asyncIndexingThreads;
+    }
+
+    public void setAsyncIndexingThreads(int asyncIndexingThreads) {
+        this.asyncIndexingThreads = asyncIndexingThreads;
+    }
+
+    public int getIndexExactCountLimit() {
+        return indexExactCountLimit;
+    }
+
+    public void setIndexExactCountLimit(int indexExactCountLimit) {
+        this.indexExactCountLimit = indexExactCountLimit;
+    }
+
+    public int getIndexCountCacheSize() {
+        return indexCountCacheSize;
+    }
+
+    public void setIndexCountCacheSize(int indexCountCacheSize) {
+        this.indexCountCacheSize = indexCountCacheSize;
+    }
+
+    public Duration getIndexCountCacheTtl() {
+        return indexCountCacheTtl;
+    }
+
+    public void setIndexCountCacheTtl(Duration indexCountCacheTtl) {
+        this.indexCountCacheTtl = indexCountCacheTtl;
+    }
 }
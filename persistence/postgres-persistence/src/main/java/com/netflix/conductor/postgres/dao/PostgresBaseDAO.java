@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.retry.support.RetryTemplate;
 
 import com.netflix.conductor.core.exception.NonTransientException;
+import com.netflix.conductor.metrics.Monitors;
 import com.netflix.conductor.postgres.util.*;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -43,6 +44,9 @@ public abstract class PostgresBaseDAO {
     protected final ObjectMapper objectMapper;
     protected final DataSource dataSource;
 
+    /** Statements issued by the operation running on the current thread, if it is counted */
+    private static final ThreadLocal<int[]> STATEMENT_COUNT = new ThreadLocal<>();
+
     private final RetryTemplate retryTemplate;
 
     protected PostgresBaseDAO(
@@ -148,6 +152,39 @@ public abstract class PostgresBaseDAO {
         }
     }
 
+    /**
+     * Wraps {@link #getWithRetriedTransactions(TransactionalFunction)} and records the number of
+     * statements it issued, including those of retried attempts, under the {@code
+     * postgres_dao_statements} counter. Dividing by the {@code postgres_dao_operations} counter
+     * gives the average number of statements per {@literal operation}.
+     *
+     * @param operation The logical DAO operation the statements are counted for.
+     * @param function The function to apply with a new transactional {@link Connection}
+     * @param <R> The return type.
+     * @return The result of {@code TransactionalFunction#apply(Connection)}
+     */
+    protected <R> R getWithRetriedTransactions(
+            String operation, TransactionalFunction<R> function) {
+        int[] outer = STATEMENT_COUNT.get();
+        int[] count = new int[1];
+        STATEMENT_COUNT.set(count);
+        try {
+            return getWithRetriedTransactions(function);
+        } finally {
+            if (outer != null) {
+                outer[0] += count[0];
+                STATEMENT_COUNT.set(outer);
+            } else {
+                STATEMENT_COUNT.remove();
+            }
+            String dao = getClass().getSimpleName();
+            Monitors.recordCounter(
+                    "postgres_dao_operations", 1, "dao", dao, "operation", operation);
+            Monitors.recordCounter(
+                    "postgres_dao_statements", count[0], "dao", dao, "operation", operation);
+        }
+    }
+
     protected <R> R getWithTransactionWithOutErrorPropagation(TransactionalFunction<R> function) {
         Instant start = Instant.now();
         LazyToString callingMethod = getCallingMethod();
@@ -196,6 +233,22 @@ public abstract class PostgresBaseDAO {
                 });
     }
 
+    /**
+     * Wraps {@link #getWithRetriedTransactions(String, TransactionalFunction)} with no return
+     * value.
+     *
+     * @param operation The logical DAO operation the statements are counted for.
+     * @param consumer The {@link Consumer} callback to pass a transactional {@link Connection} to.
+     */
+    protected void withTransaction(String operation, Consumer<Connection> consumer) {
+        getWithRetriedTransactions(
+                operation,
+                connection -> {
+                    consumer.accept(connection);
+                    return null;
+                });
+    }
+
     /**
      * Initiate a new transaction and execute a {@link Query} within that context, then return the
      * results of {@literal function}.
@@ -220,6 +273,7 @@ public abstract class PostgresBaseDAO {
      * @return The results of applying {@literal function}.
      */
     protected <R> R query(Connection tx, String query, QueryFunction<R> function) {
+        countStatement();
         try (Query q = new Query(objectMapper, tx, query)) {
             return function.apply(q);
         } catch (SQLException ex) {
@@ -235,6 +289,7 @@ public abstract class PostgresBaseDAO {
      * @param function The functional callback to pass a {@link Query} to.
      */
     protected void execute(Connection tx, String query, ExecuteFunction function) {
+        countStatement();
         try (Query q = new Query(objectMapper, tx, query)) {
             function.apply(q);
         } catch (SQLException ex) {
@@ -252,4 +307,11 @@ public abstract class PostgresBaseDAO {
     protected void executeWithTransaction(String query, ExecuteFunction function) {
         withTransaction(tx -> execute(tx, query, function));
     }
+
+    private static void countStatement() {
+        int[] count = STATEMENT_COUNT.get();
+        if (count != null) {
+            count[0]++;
+        }
+    }
 }
@@ -16,14 +16,19 @@ import java.sql.Date;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.retry.support.RetryTemplate;
 
 import com.netflix.conductor.common.metadata.events.EventExecution;
@@ -37,8 +42,11 @@ import com.netflix.conductor.dao.RateLimitingDAO;
 import com.netflix.conductor.metrics.Monitors;
 import com.netflix.conductor.model.TaskModel;
 import com.netflix.conductor.model.WorkflowModel;
+import com.netflix.conductor.postgres.config.PostgresProperties;
 import com.netflix.conductor.postgres.util.ExecutorsUtil;
+import com.netflix.conductor.postgres.util.JsonDataCodec;
 import com.netflix.conductor.postgres.util.Query;
+import com.netflix.conductor.postgres.util.RateLimitLeases;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
@@ -49,13 +57,91 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         implements ExecutionDAO, RateLimitingDAO, PollDataDAO, ConcurrentExecutionLimitDAO {
 
     private final ScheduledExecutorService scheduledExecutorService;
+    private final JsonDataCodec dataCodec;
+
+    /**
+     * The latest poll of every queue and domain that is not written to {@code poll_data} yet, by
+     * queue name and effective domain. Empty if poll data is written through.
+     */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, PollData>> pollDataBuffer =
+            new ConcurrentHashMap<>();
+
+    private final long pollDataFlushIntervalMs;
+
+    private final int workflowExpiryBatchSize;
+
+    /**
+     * Whether the execution tables are time partitioned, as found in the schema rather than the
+     * setting, which does not undo partitioning. Their unique keys then include the partition key,
+     * and rows are found and created through the id lookup tables, see
+     * R__execution_time_partitioning.sql
+     */
+    private final boolean timePartitioned;
+
+    private final int timePartitionSpanDays;
+
+    private final int timePartitionRetentionDays;
+
+    private final int workflowReadBatchSize;
+
+    /** Loads the batches of workflows of getWorkflowsByType, bounding how many run at once */
+    private final ExecutorService workflowReadExecutorService;
+
+    /**
+     * Share of a task definition's rate limit that is taken from the database at once, and then
+     * handed out locally until it is used up.
+     */
+    private static final double RATE_LIMIT_LEASE_FRACTION = 0.1;
+
+    private final RateLimitLeases rateLimitLeases = new RateLimitLeases();
 
     public PostgresExecutionDAO(
-            RetryTemplate retryTemplate, ObjectMapper objectMapper, DataSource dataSource) {
+            RetryTemplate retryTemplate,
+            ObjectMapper objectMapper,
+            DataSource dataSource,
+            PostgresProperties properties) {
         super(retryTemplate, objectMapper, dataSource);
+        this.dataCodec =
+                new JsonDataCodec(
+                        objectMapper,
+                        properties.getDataEncoding(),
+                        properties.isDataCompressionEnabled());
+        // one thread each for the poll data flush and the expired workflow reaper
         this.scheduledExecutorService =
-                Executors.newSingleThreadScheduledExecutor(
-                        ExecutorsUtil.newNamedThreadFactory("postgres-execution-"));
+                Executors.newScheduledThreadPool(
+                        2, ExecutorsUtil.newNamedThreadFactory("postgres-execution-"));
+        this.pollDataFlushIntervalMs = properties.getPollDataFlushInterval().toMillis();
+        if (pollDataFlushIntervalMs > 0) {
+            scheduledExecutorService.scheduleWithFixedDelay(
+                    this::flushPollData,
+                    pollDataFlushIntervalMs,
+                    pollDataFlushIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+        this.workflowExpiryBatchSize = properties.getWorkflowExpiryBatchSize();
+        this.timePartitioned =
+                queryWithTransaction(
+                        "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('task'))",
+                        Query::exists);
+        this.timePartitionSpanDays = (int) properties.getTimePartitionSpan().toDays();
+        this.timePartitionRetentionDays = (int) properties.getTimePartitionRetention().toDays();
+        this.workflowReadBatchSize = properties.getWorkflowReadBatchSize();
+        this.workflowReadExecutorService =
+                Executors.newFixedThreadPool(
+                        properties.getWorkflowReadParallelism(),
+                        ExecutorsUtil.newNamedThreadFactory("postgres-workflow-read-"));
+        long reaperIntervalMs = properties.getWorkflowExpiryReaperInterval().toMillis();
+        if (reaperIntervalMs > 0) {
+            scheduledExecutorService.scheduleWithFixedDelay(
+                    this::reapExpiredWorkflows,
+                    reaperIntervalMs,
+                    reaperIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (properties.isTimePartitioningEnabled()) {
+            scheduledExecutorService.scheduleWithFixedDelay(
+                    this::maintainPartitions, 0, 1, TimeUnit.HOURS);
+        }
     }
 
     private static String dateStr(Long timeInMs) {
@@ -70,6 +156,7 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
 
     @PreDestroy
     public void destroy() {
+        workflowReadExecutorService.shutdownNow();
         try {
             this.scheduledExecutorService.shutdown();
             if (scheduledExecutorService.awaitTermination(30, TimeUnit.SECONDS)) {
@@ -80,19 +167,22 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
             }
         } catch (InterruptedException ie) {
             logger.warn(
-                    "Shutdown interrupted, invoking shutdownNow on scheduledExecutorService for removeWorkflowWithExpiry",
-                    ie);
+                    "Shutdown interrupted, invoking shutdownNow on scheduledExecutorService", ie);
             scheduledExecutorService.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        // after a running flush has finished, so that it does not write alongside this one
+        flushPollData();
     }
 
     @Override
     public List<TaskModel> getPendingTasksByWorkflow(String taskDefName, String workflowId) {
         // @formatter:off
         String GET_IN_PROGRESS_TASKS_FOR_WORKFLOW =
-                "SELECT json_data FROM task_in_progress tip "
-                        + "INNER JOIN task t ON t.task_id = tip.task_id "
+                "SELECT json_data, json_data_bin FROM task_in_progress tip "
+                        + "INNER JOIN "
+                        + taskTable("t")
+                        + " ON t.task_id = tip.task_id "
                         + "WHERE task_def_name = ? AND workflow_id = ? FOR SHARE";
         // @formatter:on
 
@@ -101,7 +191,7 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                 q ->
                         q.addParameter(taskDefName)
                                 .addParameter(workflowId)
-                                .executeAndFetch(TaskModel.class));
+                                .executeAndFetchData(TaskModel.class));
     }
 
     @Override
@@ -134,57 +224,83 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         return task.getReferenceTaskName() + "_" + task.getRetryCount();
     }
 
+    /**
+     * Creates all {@literal tasks} in a single transaction, issuing one multi-row statement per
+     * table rather than a round of statements per task. A task whose {@link #taskKey(TaskModel)} is
+     * already scheduled for its workflow is skipped, as is any later task in the list with the same
+     * key.
+     */
     @Override
     public List<TaskModel> createTasks(List<TaskModel> tasks) {
-        List<TaskModel> created = Lists.newArrayListWithCapacity(tasks.size());
-
-        for (TaskModel task : tasks) {
-            withTransaction(
-                    connection -> {
-                        validate(task);
-
-                        task.setScheduledTime(System.currentTimeMillis());
-
-                        final String taskKey = taskKey(task);
-
-                        boolean scheduledTaskAdded = addScheduledTask(connection, task, taskKey);
-
-                        if (!scheduledTaskAdded) {
-                            logger.trace(
-                                    "Task already scheduled, skipping the run "
-                                            + task.getTaskId()
-                                            + ", ref="
-                                            + task.getReferenceTaskName()
-                                            + ", key="
-                                            + taskKey);
-                            return;
-                        }
-
-                        insertOrUpdateTaskData(connection, task);
-                        addWorkflowToTaskMapping(connection, task);
-                        addTaskInProgress(connection, task);
-                        updateTask(connection, task);
-
-                        created.add(task);
-                    });
+        if (tasks.isEmpty()) {
+            return Lists.newArrayList();
         }
+        return getWithRetriedTransactions(
+                "createTasks",
+                connection -> {
+                    long scheduledTime = System.currentTimeMillis();
+                    for (TaskModel task : tasks) {
+                        validate(task);
+                        task.setScheduledTime(scheduledTime);
+                    }
 
-        return created;
+                    List<TaskModel> created = addScheduledTasks(connection, tasks);
+                    if (!created.isEmpty()) {
+                        insertTasks(connection, created);
+                    }
+                    return created;
+                });
     }
 
     @Override
     public void updateTask(TaskModel task) {
-        withTransaction(connection -> updateTask(connection, task));
+        withTransaction("updateTask", connection -> updateTask(connection, task));
     }
 
     /**
-     * This is a dummy implementation and this feature is not for Postgres backed Conductor
-     *
-     * @param task: which needs to be evaluated whether it is rateLimited or not
+     * Limits the number of tasks of a definition started per fixed window of {@code
+     * rateLimitFrequencyInSeconds} across all servers, see {@link RateLimitLeases}.
      */
     @Override
     public boolean exceedsRateLimitPerFrequency(TaskModel task, TaskDef taskDef) {
-        return false;
+        int rateLimit =
+                Optional.ofNullable(taskDef)
+                        .map(TaskDef::getRateLimitPerFrequency)
+                        .orElse(task.getRateLimitPerFrequency());
+        int frequencySeconds =
+                Optional.ofNullable(taskDef)
+                        .map(TaskDef::getRateLimitFrequencyInSeconds)
+                        .orElse(task.getRateLimitFrequencyInSeconds());
+        if (rateLimit <= 0 || frequencySeconds <= 0) {
+            return false;
+        }
+
+        // fixed windows aligned to the epoch, so that all nodes agree on the current one
+        long windowMs = frequencySeconds * 1000L;
+        long now = System.currentTimeMillis();
+        long windowStart = now - now % windowMs;
+
+        String taskDefName = task.getTaskDefName();
+        int requested = (int) Math.ceil(rateLimit * RATE_LIMIT_LEASE_FRACTION);
+        if (rateLimitLeases.tryAcquire(
+                taskDefName,
+                windowStart,
+                window ->
+                        getWithRetriedTransactions(
+                                tx ->
+                                        leaseRateLimitPermits(
+                                                tx, taskDefName, window, rateLimit, requested)))) {
+            return false;
+        }
+
+        logger.debug(
+                "Task: {} with task definition {} is rate limited, {} per {} seconds",
+                task.getTaskId(),
+                task.getTaskDefName(),
+                rateLimit,
+                frequencySeconds);
+        Monitors.recordTaskRateLimited(task.getTaskDefName(), rateLimit);
+        return true;
     }
 
     @Override
@@ -202,7 +318,32 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
             return false;
         }
 
-        long current = getInProgressTaskCount(task.getTaskDefName());
+        /*
+         * The in progress count is read from the row maintained by the task_in_progress triggers, and
+         * the task is admitted if it is among the first {@code limit} tasks of its definition in order
+         * of arrival, which is a bounded scan of task_in_progress_arrival_idx.
+         */
+        String GET_CONCURRENCY_STATE =
+                "SELECT COALESCE((SELECT in_progress_count FROM task_in_progress_count WHERE task_def_name = ?), 0) AS in_progress, "
+                        + "EXISTS (SELECT 1 FROM (SELECT task_id FROM task_in_progress WHERE task_def_name = ? "
+                        + "ORDER BY created_on, task_id LIMIT ?) first_arrived WHERE task_id = ?) AS admitted";
+        Pair<Long, Boolean> state =
+                queryWithTransaction(
+                        GET_CONCURRENCY_STATE,
+                        q ->
+                                q.addParameter(task.getTaskDefName())
+                                        .addParameter(task.getTaskDefName())
+                                        .addParameter(limit)
+                                        .addParameter(task.getTaskId())
+                                        .executeAndFetch(
+                                                rs -> {
+                                                    rs.next();
+                                                    return Pair.of(
+                                                            rs.getLong("in_progress"),
+                                                            rs.getBoolean("admitted"));
+                                                }));
+        long current = state.getLeft();
+        boolean admitted = state.getRight();
 
         if (current >= limit) {
             Monitors.recordTaskConcurrentExecutionLimited(task.getTaskDefName(), limit);
@@ -213,25 +354,18 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                 "Task execution count for {}: limit={}, current={}",
                 task.getTaskDefName(),
                 limit,
-                getInProgressTaskCount(task.getTaskDefName()));
-
-        String taskId = task.getTaskId();
+                current);
 
-        List<String> tasksInProgressInOrderOfArrival =
-                findAllTasksInProgressInOrderOfArrival(task, limit);
-
-        boolean rateLimited = !tasksInProgressInOrderOfArrival.contains(taskId);
-
-        if (rateLimited) {
+        if (!admitted) {
             logger.info(
                     "Task execution count limited. {}, limit {}, current {}",
                     task.getTaskDefName(),
                     limit,
-                    getInProgressTaskCount(task.getTaskDefName()));
+                    current);
             Monitors.recordTaskConcurrentExecutionLimited(task.getTaskDefName(), limit);
         }
 
-        return rateLimited;
+        return !admitted;
     }
 
     @Override
@@ -246,6 +380,7 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         final String taskKey = taskKey(task);
 
         withTransaction(
+                "removeTask",
                 connection -> {
                     removeScheduledTask(connection, task, taskKey);
                     removeWorkflowToTaskMapping(connection, task);
@@ -257,9 +392,10 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
 
     @Override
     public TaskModel getTask(String taskId) {
-        String GET_TASK = "SELECT json_data FROM task WHERE task_id = ?";
+        String GET_TASK =
+                "SELECT json_data, json_data_bin FROM " + taskTable("t") + " WHERE task_id = ?";
         return queryWithTransaction(
-                GET_TASK, q -> q.addParameter(taskId).executeAndFetchFirst(TaskModel.class));
+                GET_TASK, q -> q.addParameter(taskId).executeAndFetchFirstData(TaskModel.class));
     }
 
     @Override
@@ -275,14 +411,16 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         Preconditions.checkNotNull(taskName, "task name cannot be null");
         // @formatter:off
         String GET_IN_PROGRESS_TASKS_FOR_TYPE =
-                "SELECT json_data FROM task_in_progress tip "
-                        + "INNER JOIN task t ON t.task_id = tip.task_id "
+                "SELECT json_data, json_data_bin FROM task_in_progress tip "
+                        + "INNER JOIN "
+                        + taskTable("t")
+                        + " ON t.task_id = tip.task_id "
                         + "WHERE task_def_name = ? FOR UPDATE SKIP LOCKED";
         // @formatter:on
 
         return queryWithTransaction(
                 GET_IN_PROGRESS_TASKS_FOR_TYPE,
-                q -> q.addParameter(taskName).executeAndFetch(TaskModel.class));
+                q -> q.addParameter(taskName).executeAndFetchData(TaskModel.class));
     }
 
     @Override
@@ -314,41 +452,123 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
 
     @Override
     public boolean removeWorkflow(String workflowId) {
-        boolean removed = false;
-        WorkflowModel workflow = getWorkflow(workflowId, true);
-        if (workflow != null) {
-            withTransaction(
-                    connection -> {
-                        removeWorkflowDefToWorkflowMapping(connection, workflow);
-                        removeWorkflow(connection, workflowId);
-                        removePendingWorkflow(connection, workflow.getWorkflowName(), workflowId);
-                    });
-            removed = true;
+        return removeWorkflows(Collections.singletonList(workflowId)) == 1;
+    }
 
-            for (TaskModel task : workflow.getTasks()) {
-                if (!removeTask(task.getTaskId())) {
-                    removed = false;
-                }
-            }
+    /**
+     * Removes workflows together with their tasks and all index rows pointing at them, in one
+     * transaction and with a fixed number of statements, however many tasks the workflows have.
+     * Meant for archival jobs, which should pass the ids in batches of a reasonable size.
+     *
+     * @param workflowIds ids of the workflows to remove, unknown ids are skipped
+     * @return the number of workflows removed
+     */
+    public int removeWorkflows(List<String> workflowIds) {
+        if (workflowIds.isEmpty()) {
+            return 0;
         }
-        return removed;
+        return getWithRetriedTransactions(
+                "removeWorkflows", connection -> removeWorkflows(connection, workflowIds));
     }
 
-    /** Scheduled executor based implementation. */
+    /**
+     * Sets the expiry time of the workflow, after which it is removed by whichever server's reaper
+     * gets to it first, see {@link #reapExpiredWorkflows()}. Unlike an in-memory timer, the expiry
+     * survives restarts.
+     */
     @Override
     public boolean removeWorkflowWithExpiry(String workflowId, int ttlSeconds) {
-        scheduledExecutorService.schedule(
-                () -> {
-                    try {
-                        removeWorkflow(workflowId);
-                    } catch (Throwable e) {
-                        logger.warn("Unable to remove workflow: {} with expiry", workflowId, e);
-                    }
-                },
-                ttlSeconds,
-                TimeUnit.SECONDS);
+        String SET_WORKFLOW_EXPIRY =
+                "UPDATE workflow SET expires_at = CURRENT_TIMESTAMP + ? * INTERVAL '1 second' WHERE workflow_id = ?";
+        return queryWithTransaction(
+                        SET_WORKFLOW_EXPIRY,
+                        q -> q.addParameter(ttlSeconds).addParameter(workflowId).executeUpdate())
+                > 0;
+    }
 
-        return true;
+    /**
+     * Removes expired workflows in batches of {@code workflowExpiryBatchSize}, each in its own
+     * transaction, until none are left. Workflows locked by another server's reaper are skipped.
+     *
+     * @return the number of workflows removed
+     */
+    @VisibleForTesting
+    int reapExpiredWorkflows() {
+        int reaped = 0;
+        try {
+            int removed;
+            do {
+                removed =
+                        getWithRetriedTransactions(
+                                "reapExpiredWorkflows",
+                                tx -> {
+                                    String GET_EXPIRED_WORKFLOWS =
+                                            "SELECT workflow_id FROM workflow WHERE expires_at <= CURRENT_TIMESTAMP "
+                                                    + "ORDER BY expires_at LIMIT ? FOR UPDATE SKIP LOCKED";
+                                    List<String> workflowIds =
+                                            query(
+                                                    tx,
+                                                    GET_EXPIRED_WORKFLOWS,
+                                                    q ->
+                                                            q.addParameter(workflowExpiryBatchSize)
+                                                                    .executeScalarList(
+                                                                            String.class));
+                                    return workflowIds.isEmpty()
+                                            ? 0
+                                            : removeWorkflows(tx, workflowIds);
+                                });
+                reaped += removed;
+            } while (removed == workflowExpiryBatchSize);
+
+            String COUNT_EXPIRED_WORKFLOWS =
+                    "SELECT count(*) FROM workflow WHERE expires_at <= CURRENT_TIMESTAMP";
+            long backlog = queryWithTransaction(COUNT_EXPIRED_WORKFLOWS, Query::executeCount);
+            Monitors.recordGauge("workflow_expiry_backlog", backlog);
+        } catch (Exception e) {
+            logger.warn("Failed to remove expired workflows", e);
+        }
+        if (reaped > 0) {
+            Monitors.recordCounter("workflow_expiry_reaped", reaped);
+        }
+        return reaped;
+    }
+
+    /**
+     * Creates the partitions of the time partitioned execution tables for the next two spans and,
+     * with a retention set, drops the partitions past it. Servers take turns through an advisory
+     * lock taken by the SQL functions, see R__execution_time_partitioning.sql.
+     */
+    @VisibleForTesting
+    void maintainPartitions() {
+        try {
+            String ADD_PARTITIONS = "SELECT execution_add_partitions(CURRENT_DATE + ?, ?)";
+            int created =
+                    queryWithTransaction(
+                            ADD_PARTITIONS,
+                            q ->
+                                    q.addParameter(2 * timePartitionSpanDays)
+                                            .addParameter(timePartitionSpanDays)
+                                            .executeScalar(Integer.class));
+            if (created > 0) {
+                logger.info("Created {} partitions of the execution tables", created);
+            }
+
+            if (timePartitionRetentionDays > 0) {
+                String DROP_PARTITIONS = "SELECT execution_drop_partitions(CURRENT_DATE - ?)";
+                int dropped =
+                        queryWithTransaction(
+                                DROP_PARTITIONS,
+                                q ->
+                                        q.addParameter(timePartitionRetentionDays)
+                                                .executeScalar(Integer.class));
+                if (dropped > 0) {
+                    logger.info("Dropped {} partitions of the execution tables", dropped);
+                    Monitors.recordCounter("execution_partitions_dropped", dropped);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to maintain the partitions of the execution tables", e);
+        }
     }
 
     @Override
@@ -363,16 +583,14 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
 
     @Override
     public WorkflowModel getWorkflow(String workflowId, boolean includeTasks) {
-        WorkflowModel workflow = getWithRetriedTransactions(tx -> readWorkflow(tx, workflowId));
-
-        if (workflow != null) {
-            if (includeTasks) {
-                List<TaskModel> tasks = getTasksForWorkflow(workflowId);
-                tasks.sort(Comparator.comparingInt(TaskModel::getSeq));
-                workflow.setTasks(tasks);
-            }
+        if (includeTasks) {
+            return getWithRetriedTransactions(
+                    tx ->
+                            readWorkflows(tx, Collections.singletonList(workflowId), true).stream()
+                                    .findFirst()
+                                    .orElse(null));
         }
-        return workflow;
+        return getWithRetriedTransactions(tx -> readWorkflow(tx, workflowId));
     }
 
     /**
@@ -419,7 +637,7 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
     @Override
     public long getInProgressTaskCount(String taskDefName) {
         String GET_IN_PROGRESS_TASK_COUNT =
-                "SELECT COUNT(*) FROM task_in_progress WHERE task_def_name = ? AND in_progress_status = true";
+                "SELECT COALESCE((SELECT in_progress_count FROM task_in_progress_count WHERE task_def_name = ?), 0)";
 
         return queryWithTransaction(
                 GET_IN_PROGRESS_TASK_COUNT, q -> q.addParameter(taskDefName).executeCount());
@@ -428,48 +646,99 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
     @Override
     public List<WorkflowModel> getWorkflowsByType(
             String workflowName, Long startTime, Long endTime) {
+        return getWorkflowsByType(workflowName, startTime, endTime, true);
+    }
+
+    /**
+     * Loads the workflows of a type created between {@literal startTime} and {@literal endTime} in
+     * batches of {@code workflowReadBatchSize}, each with a single statement, running up to {@code
+     * workflowReadParallelism} batches at the same time.
+     *
+     * @param includeTasks whether to load the tasks of the workflows as well
+     */
+    public List<WorkflowModel> getWorkflowsByType(
+            String workflowName, Long startTime, Long endTime, boolean includeTasks) {
+        List<CompletableFuture<List<WorkflowModel>>> batches =
+                Lists.partition(
+                                getWorkflowIdsByType(workflowName, startTime, endTime),
+                                workflowReadBatchSize)
+                        .stream()
+                        .map(
+                                workflowIds ->
+                                        CompletableFuture.supplyAsync(
+                                                () ->
+                                                        readWorkflows(
+                                                                workflowName,
+                                                                workflowIds,
+                                                                includeTasks),
+                                                workflowReadExecutorService))
+                        .collect(Collectors.toList());
+
+        return batches.stream()
+                .flatMap(batch -> batch.join().stream())
+                .filter(
+                        workflow ->
+                                workflow.getCreateTime() >= startTime
+                                        && workflow.getCreateTime() <= endTime)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Like {@link #getWorkflowsByType(String, Long, Long, boolean)}, but only loads the next batch
+     * of workflows once the stream reaches it, so that the workflows never all need to be in
+     * memory.
+     */
+    public Stream<WorkflowModel> streamWorkflowsByType(
+            String workflowName, Long startTime, Long endTime, boolean includeTasks) {
+        return Lists.partition(
+                        getWorkflowIdsByType(workflowName, startTime, endTime),
+                        workflowReadBatchSize)
+                .stream()
+                .flatMap(
+                        workflowIds ->
+                                readWorkflows(workflowName, workflowIds, includeTasks).stream())
+                .filter(
+                        workflow ->
+                                workflow.getCreateTime() >= startTime
+                                        && workflow.getCreateTime() <= endTime);
+    }
+
+    private List<String> getWorkflowIdsByType(String workflowName, Long startTime, Long endTime) {
         Preconditions.checkNotNull(workflowName, "workflowName cannot be null");
         Preconditions.checkNotNull(startTime, "startTime cannot be null");
         Preconditions.checkNotNull(endTime, "endTime cannot be null");
 
-        List<WorkflowModel> workflows = new LinkedList<>();
+        // @formatter:off
+        String GET_ALL_WORKFLOWS_FOR_WORKFLOW_DEF =
+                "SELECT workflow_id FROM workflow_def_to_workflow "
+                        + "WHERE workflow_def = ? AND date_str BETWEEN ? AND ? FOR SHARE SKIP LOCKED";
+        // @formatter:on
 
-        withTransaction(
-                tx -> {
-                    // @formatter:off
-                    String GET_ALL_WORKFLOWS_FOR_WORKFLOW_DEF =
-                            "SELECT workflow_id FROM workflow_def_to_workflow "
-                                    + "WHERE workflow_def = ? AND date_str BETWEEN ? AND ? FOR SHARE SKIP LOCKED";
-                    // @formatter:on
-
-                    List<String> workflowIds =
-                            query(
-                                    tx,
-                                    GET_ALL_WORKFLOWS_FOR_WORKFLOW_DEF,
-                                    q ->
-                                            q.addParameter(workflowName)
-                                                    .addParameter(dateStr(startTime))
-                                                    .addParameter(dateStr(endTime))
-                                                    .executeScalarList(String.class));
-                    workflowIds.forEach(
-                            workflowId -> {
-                                try {
-                                    WorkflowModel wf = getWorkflow(workflowId);
-                                    if (wf.getCreateTime() >= startTime
-                                            && wf.getCreateTime() <= endTime) {
-                                        workflows.add(wf);
-                                    }
-                                } catch (Exception e) {
-                                    logger.error(
-                                            "Unable to load workflow id {} with name {}",
-                                            workflowId,
-                                            workflowName,
-                                            e);
-                                }
-                            });
-                });
+        return queryWithTransaction(
+                GET_ALL_WORKFLOWS_FOR_WORKFLOW_DEF,
+                q ->
+                        q.addParameter(workflowName)
+                                .addParameter(dateStr(startTime))
+                                .addParameter(dateStr(endTime))
+                                .executeScalarList(String.class));
+    }
 
-        return workflows;
+    /**
+     * Loads a batch of workflows, logging and skipping the batch if that fails, as a failed
+     * workflow used to be skipped.
+     */
+    private List<WorkflowModel> readWorkflows(
+            String workflowName, List<String> workflowIds, boolean includeTasks) {
+        try {
+            return getWithRetriedTransactions(tx -> readWorkflows(tx, workflowIds, includeTasks));
+        } catch (Exception e) {
+            logger.error(
+                    "Unable to load {} workflows with name {}",
+                    workflowIds.size(),
+                    workflowName,
+                    e);
+            return Collections.emptyList();
+        }
     }
 
     @Override
@@ -477,14 +746,14 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
             String workflowName, String correlationId, boolean includeTasks) {
         Preconditions.checkNotNull(correlationId, "correlationId cannot be null");
         String GET_WORKFLOWS_BY_CORRELATION_ID =
-                "SELECT w.json_data FROM workflow w left join workflow_def_to_workflow wd on w.workflow_id = wd.workflow_id  WHERE w.correlation_id = ? and wd.workflow_def = ? FOR SHARE SKIP LOCKED";
+                "SELECT w.json_data, w.json_data_bin FROM workflow w left join workflow_def_to_workflow wd on w.workflow_id = wd.workflow_id  WHERE w.correlation_id = ? and wd.workflow_def = ? FOR SHARE SKIP LOCKED";
 
         return queryWithTransaction(
                 GET_WORKFLOWS_BY_CORRELATION_ID,
                 q ->
                         q.addParameter(correlationId)
                                 .addParameter(workflowName)
-                                .executeAndFetch(WorkflowModel.class));
+                                .executeAndFetchData(WorkflowModel.class));
     }
 
     @Override
@@ -562,6 +831,13 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         Preconditions.checkNotNull(taskDefName, "taskDefName name cannot be null");
         PollData pollData = new PollData(taskDefName, domain, workerId, System.currentTimeMillis());
         String effectiveDomain = (domain == null) ? "DEFAULT" : domain;
+        if (pollDataFlushIntervalMs > 0) {
+            // only the latest poll matters, so earlier ones are overwritten before they are written
+            pollDataBuffer
+                    .computeIfAbsent(taskDefName, queueName -> new ConcurrentHashMap<>())
+                    .put(effectiveDomain, pollData);
+            return;
+        }
         withTransaction(tx -> insertOrUpdatePollData(tx, pollData, effectiveDomain));
     }
 
@@ -569,13 +845,24 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
     public PollData getPollData(String taskDefName, String domain) {
         Preconditions.checkNotNull(taskDefName, "taskDefName name cannot be null");
         String effectiveDomain = (domain == null) ? "DEFAULT" : domain;
-        return getWithRetriedTransactions(tx -> readPollData(tx, taskDefName, effectiveDomain));
+        Map<String, PollData> byDomain = pollDataBuffer.get(taskDefName);
+        PollData buffered = byDomain == null ? null : byDomain.get(effectiveDomain);
+        PollData stored =
+                getWithRetriedTransactions(tx -> readPollData(tx, taskDefName, effectiveDomain));
+        if (buffered == null
+                || (stored != null && stored.getLastPollTime() > buffered.getLastPollTime())) {
+            return stored;
+        }
+        return buffered;
     }
 
     @Override
     public List<PollData> getPollData(String taskDefName) {
         Preconditions.checkNotNull(taskDefName, "taskDefName name cannot be null");
-        return readAllPollData(taskDefName);
+        Map<String, PollData> buffered = pollDataBuffer.get(taskDefName);
+        return mergePollData(
+                readAllPollData(taskDefName),
+                buffered == null ? Collections.emptyList() : buffered.values());
     }
 
     @Override
@@ -585,7 +872,13 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
             tx.setAutoCommit(true);
             try {
                 String GET_ALL_POLL_DATA = "SELECT json_data FROM poll_data ORDER BY queue_name";
-                return query(tx, GET_ALL_POLL_DATA, q -> q.executeAndFetch(PollData.class));
+                List<PollData> stored =
+                        query(tx, GET_ALL_POLL_DATA, q -> q.executeAndFetch(PollData.class));
+                List<PollData> buffered = new ArrayList<>();
+                pollDataBuffer.values().forEach(byDomain -> buffered.addAll(byDomain.values()));
+                List<PollData> pollData = mergePollData(stored, buffered);
+                pollData.sort(Comparator.comparing(PollData::getQueueName));
+                return pollData;
             } catch (Throwable th) {
                 throw new NonTransientException(th.getMessage(), th);
             } finally {
@@ -596,6 +889,61 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         }
     }
 
+    /**
+     * Writes the buffered poll data with one batched upsert. Entries are only removed from the
+     * buffer once written, and only if no newer poll replaced them in the meantime, so a failed
+     * flush is retried with the next one.
+     */
+    @VisibleForTesting
+    void flushPollData() {
+        List<PollData> pollData = new ArrayList<>();
+        List<String> domains = new ArrayList<>();
+        pollDataBuffer
+                .values()
+                .forEach(
+                        byDomain ->
+                                byDomain.forEach(
+                                        (domain, data) -> {
+                                            pollData.add(data);
+                                            domains.add(domain);
+                                        }));
+        if (pollData.isEmpty()) {
+            return;
+        }
+        try {
+            withTransaction(tx -> upsertPollData(tx, pollData, domains));
+        } catch (Exception e) {
+            logger.warn("Failed to flush the poll data of {} queues", pollData.size(), e);
+            return;
+        }
+        for (int i = 0; i < pollData.size(); i++) {
+            pollDataBuffer
+                    .get(pollData.get(i).getQueueName())
+                    .remove(domains.get(i), pollData.get(i));
+        }
+    }
+
+    /** Merges buffered poll data into the stored poll data, keeping the latest poll of each. */
+    private List<PollData> mergePollData(List<PollData> stored, Collection<PollData> buffered) {
+        if (buffered.isEmpty()) {
+            return stored;
+        }
+        Map<List<String>, PollData> merged = new LinkedHashMap<>();
+        for (PollData pollData : stored) {
+            merged.put(Arrays.asList(pollData.getQueueName(), pollData.getDomain()), pollData);
+        }
+        for (PollData pollData : buffered) {
+            merged.merge(
+                    Arrays.asList(pollData.getQueueName(), pollData.getDomain()),
+                    pollData,
+                    (current, latest) ->
+                            current.getLastPollTime() > latest.getLastPollTime()
+                                    ? current
+                                    : latest);
+        }
+        return new ArrayList<>(merged.values());
+    }
+
     private List<TaskModel> getTasks(Connection connection, List<String> taskIds) {
         if (taskIds.isEmpty()) {
             return Lists.newArrayList();
@@ -605,13 +953,16 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         // on taskIds.size()
         final String GET_TASKS_FOR_IDS =
                 String.format(
-                        "SELECT json_data FROM task WHERE task_id IN (%s) AND json_data IS NOT NULL",
+                        "SELECT json_data, json_data_bin FROM "
+                                + taskTable("t")
+                                + " WHERE task_id IN (%s) "
+                                + "AND (json_data IS NOT NULL OR json_data_bin IS NOT NULL)",
                         Query.generateInBindings(taskIds.size()));
 
         return query(
                 connection,
                 GET_TASKS_FOR_IDS,
-                q -> q.addParameters(taskIds).executeAndFetch(TaskModel.class));
+                q -> q.addParameters(taskIds).executeAndFetchData(TaskModel.class));
     }
 
     private String insertOrUpdateWorkflow(WorkflowModel workflow, boolean update) {
@@ -623,6 +974,7 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         workflow.setTasks(Lists.newLinkedList());
 
         withTransaction(
+                update ? "updateWorkflow" : "createWorkflow",
                 tx -> {
                     if (!update) {
                         addWorkflow(tx, workflow);
@@ -654,27 +1006,106 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
             updateInProgressStatus(connection, task, inProgress);
         }
 
-        insertOrUpdateTaskData(connection, task);
+        boolean inserted = insertOrUpdateTaskData(connection, task);
 
         if (task.getStatus() != null && task.getStatus().isTerminal()) {
             removeTaskInProgress(connection, task);
         }
 
-        addWorkflowToTaskMapping(connection, task);
+        // an existing task row is always written together with its workflow mapping
+        if (inserted) {
+            addWorkflowToTaskMapping(connection, task);
+        }
     }
 
     private WorkflowModel readWorkflow(Connection connection, String workflowId) {
-        String GET_WORKFLOW = "SELECT json_data FROM workflow WHERE workflow_id = ?";
+        String GET_WORKFLOW =
+                "SELECT json_data, json_data_bin FROM "
+                        + workflowTable("w")
+                        + " WHERE workflow_id = ?";
 
         return query(
                 connection,
                 GET_WORKFLOW,
-                q -> q.addParameter(workflowId).executeAndFetchFirst(WorkflowModel.class));
+                q -> q.addParameter(workflowId).executeAndFetchFirstData(WorkflowModel.class));
+    }
+
+    /**
+     * Reads workflows and, optionally, their tasks with a single statement instead of one query for
+     * each workflow, one for its task ids and one for the tasks. The statement returns the workflow
+     * rows and the task rows tagged with the workflow they belong to, in no particular order, told
+     * apart by their kind column.
+     *
+     * @return the workflows found, in no particular order
+     */
+    private List<WorkflowModel> readWorkflows(
+            Connection connection, List<String> workflowIds, boolean includeTasks) {
+        // @formatter:off
+        String GET_WORKFLOWS =
+                "SELECT 'w' AS kind, workflow_id, json_data, json_data_bin FROM "
+                        + workflowTable("w")
+                        + " WHERE workflow_id = ANY(?)";
+        String GET_WORKFLOWS_WITH_TASKS =
+                GET_WORKFLOWS
+                        + " UNION ALL "
+                        + "SELECT 't' AS kind, wt.workflow_id, t.json_data, t.json_data_bin FROM workflow_to_task wt "
+                        + "INNER JOIN "
+                        + taskTable("t")
+                        + " ON t.task_id = wt.task_id "
+                        + "WHERE wt.workflow_id = ANY(?) "
+                        + "AND (t.json_data IS NOT NULL OR t.json_data_bin IS NOT NULL)";
+        // @formatter:on
+
+        return query(
+                connection,
+                includeTasks ? GET_WORKFLOWS_WITH_TASKS : GET_WORKFLOWS,
+                q -> {
+                    q.addArrayParameter("varchar", workflowIds);
+                    if (includeTasks) {
+                        q.addArrayParameter("varchar", workflowIds);
+                    }
+                    return q.executeAndFetch(
+                            rs -> {
+                                Map<String, WorkflowModel> workflows = new LinkedHashMap<>();
+                                Map<String, List<TaskModel>> tasks = new HashMap<>();
+                                while (rs.next()) {
+                                    String workflowId = rs.getString("workflow_id");
+                                    if ("w".equals(rs.getString("kind"))) {
+                                        workflows.put(
+                                                workflowId, q.readData(rs, WorkflowModel.class));
+                                    } else {
+                                        tasks.computeIfAbsent(workflowId, id -> new ArrayList<>())
+                                                .add(q.readData(rs, TaskModel.class));
+                                    }
+                                }
+                                if (includeTasks) {
+                                    workflows.forEach(
+                                            (workflowId, workflow) -> {
+                                                List<TaskModel> workflowTasks =
+                                                        tasks.getOrDefault(
+                                                                workflowId, new ArrayList<>());
+                                                workflowTasks.sort(
+                                                        Comparator.comparingInt(TaskModel::getSeq));
+                                                workflow.setTasks(workflowTasks);
+                                            });
+                                }
+                                return new ArrayList<>(workflows.values());
+                            });
+                });
     }
 
     private void addWorkflow(Connection connection, WorkflowModel workflow) {
+        if (timePartitioned) {
+            // fails for an existing id, as the unique key of an unpartitioned workflow table would;
+            // both rows default to the same CURRENT_TIMESTAMP, the start of the transaction
+            String INSERT_WORKFLOW_ID = "INSERT INTO workflow_created_on (workflow_id) VALUES (?)";
+            execute(
+                    connection,
+                    INSERT_WORKFLOW_ID,
+                    q -> q.addParameter(workflow.getWorkflowId()).executeUpdate());
+        }
         String INSERT_WORKFLOW =
-                "INSERT INTO workflow (workflow_id, correlation_id, json_data) VALUES (?, ?, ?)";
+                "INSERT INTO workflow (workflow_id, correlation_id, json_data, json_data_bin) VALUES (?, ?, ?, ?)";
 
         execute(
                 connection,
@@ -682,26 +1113,94 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                 q ->
                         q.addParameter(workflow.getWorkflowId())
                                 .addParameter(workflow.getCorrelationId())
-                                .addJsonParameter(workflow)
+                                .addDataParameters(dataCodec, workflow)
                                 .executeUpdate());
     }
 
     private void updateWorkflow(Connection connection, WorkflowModel workflow) {
         String UPDATE_WORKFLOW =
-                "UPDATE workflow SET json_data = ?, modified_on = CURRENT_TIMESTAMP WHERE workflow_id = ?";
+                "UPDATE workflow SET json_data = ?, json_data_bin = ?, modified_on = CURRENT_TIMESTAMP WHERE workflow_id = ?";
 
         execute(
                 connection,
                 UPDATE_WORKFLOW,
                 q ->
-                        q.addJsonParameter(workflow)
+                        q.addDataParameters(dataCodec, workflow)
                                 .addParameter(workflow.getWorkflowId())
                                 .executeUpdate());
     }
 
-    private void removeWorkflow(Connection connection, String workflowId) {
-        String REMOVE_WORKFLOW = "DELETE FROM workflow WHERE workflow_id = ?";
-        execute(connection, REMOVE_WORKFLOW, q -> q.addParameter(workflowId).executeDelete());
+    private int removeWorkflows(Connection connection, List<String> workflowIds) {
+        String GET_WORKFLOWS =
+                "SELECT json_data, json_data_bin FROM workflow WHERE workflow_id = ANY(?) FOR UPDATE";
+        List<WorkflowModel> workflows =
+                query(
+                        connection,
+                        GET_WORKFLOWS,
+                        q ->
+                                q.addArrayParameter("varchar", workflowIds)
+                                        .executeAndFetchData(WorkflowModel.class));
+        if (workflows.isEmpty()) {
+            return 0;
+        }
+
+        List<String> ids = new ArrayList<>(workflows.size());
+        List<String> names = new ArrayList<>(workflows.size());
+        List<String> dates = new ArrayList<>(workflows.size());
+        for (WorkflowModel workflow : workflows) {
+            ids.add(workflow.getWorkflowId());
+            names.add(workflow.getWorkflowName());
+            dates.add(dateStr(workflow.getCreateTime()));
+        }
+
+        String REMOVE_WORKFLOW_DEF_TO_WORKFLOW =
+                "DELETE FROM workflow_def_to_workflow w USING unnest(?, ?, ?) AS u(workflow_def, date_str, workflow_id) "
+                        + "WHERE w.workflow_def = u.workflow_def AND w.date_str = u.date_str AND w.workflow_id = u.workflow_id";
+        execute(
+                connection,
+                REMOVE_WORKFLOW_DEF_TO_WORKFLOW,
+                q ->
+                        q.addArrayParameter("varchar", names)
+                                .addArrayParameter("varchar", dates)
+                                .addArrayParameter("varchar", ids)
+                                .executeDelete());
+
+        String REMOVE_PENDING_WORKFLOWS =
+                "DELETE FROM workflow_pending w USING unnest(?, ?) AS u(workflow_type, workflow_id) "
+                        + "WHERE w.workflow_type = u.workflow_type AND w.workflow_id = u.workflow_id";
+        execute(
+                connection,
+                REMOVE_PENDING_WORKFLOWS,
+                q ->
+                        q.addArrayParameter("varchar", names)
+                                .addArrayParameter("varchar", ids)
+                                .executeDelete());
+
+        String REMOVE_SCHEDULED_TASKS = "DELETE FROM task_scheduled WHERE workflow_id = ANY(?)";
+        execute(
+                connection,
+                REMOVE_SCHEDULED_TASKS,
+                q -> q.addArrayParameter("varchar", ids).executeDelete());
+
+        String REMOVE_IN_PROGRESS_TASKS = "DELETE FROM task_in_progress WHERE workflow_id = ANY(?)";
+        execute(
+                connection,
+                REMOVE_IN_PROGRESS_TASKS,
+                q -> q.addArrayParameter("varchar", ids).executeDelete());
+
+        // @formatter:off
+        String REMOVE_TASKS =
+                "WITH removed AS (DELETE FROM workflow_to_task WHERE workflow_id = ANY(?) RETURNING task_id) "
+                        + "DELETE FROM task WHERE task_id IN (SELECT task_id FROM removed)";
+        // @formatter:on
+        execute(connection, REMOVE_TASKS, q -> q.addArrayParameter("varchar", ids).executeDelete());
+
+        String REMOVE_WORKFLOWS = "DELETE FROM workflow WHERE workflow_id = ANY(?)";
+        execute(
+                connection,
+                REMOVE_WORKFLOWS,
+                q -> q.addArrayParameter("varchar", ids).executeDelete());
+        return workflows.size();
     }
 
     private void addPendingWorkflow(Connection connection, String workflowType, String workflowId) {
@@ -737,30 +1236,37 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                 q -> q.addParameter(workflowType).addParameter(workflowId).executeDelete());
     }
 
-    private void insertOrUpdateTaskData(Connection connection, TaskModel task) {
+    /**
+     * @return whether the task row was inserted rather than updated
+     */
+    private boolean insertOrUpdateTaskData(Connection connection, TaskModel task) {
         /*
          * Most times the row will be updated so let's try the update first. This used to be an 'INSERT/ON CONFLICT do update' sql statement. The problem with that
          * is that if we try the INSERT first, the sequence will be increased even if the ON CONFLICT happens.
          */
+        byte[] data = dataCodec.isBinary() ? dataCodec.encode(task) : null;
+        String json = data == null ? toJson(task) : null;
         String UPDATE_TASK =
-                "UPDATE task SET json_data=?, modified_on=CURRENT_TIMESTAMP WHERE task_id=?";
+                "UPDATE task SET json_data=?, json_data_bin=?, modified_on=CURRENT_TIMESTAMP WHERE task_id=?";
         int rowsUpdated =
                 query(
                         connection,
                         UPDATE_TASK,
                         q ->
-                                q.addJsonParameter(task)
+                                q.addParameter(json)
+                                        .addParameter(data)
                                         .addParameter(task.getTaskId())
                                         .executeUpdate());
 
         if (rowsUpdated == 0) {
-            String INSERT_TASK =
-                    "INSERT INTO task (task_id, json_data, modified_on) VALUES (?, ?, CURRENT_TIMESTAMP) ON CONFLICT (task_id) DO UPDATE SET json_data=excluded.json_data, modified_on=excluded.modified_on";
-            execute(
+            upsertTaskData(
                     connection,
-                    INSERT_TASK,
-                    q -> q.addParameter(task.getTaskId()).addJsonParameter(task).executeUpdate());
+                    Collections.singletonList(task.getTaskId()),
+                    Collections.singletonList(json),
+                    Collections.singletonList(
+                            data == null ? null : Base64.getEncoder().encodeToString(data)));
         }
+        return rowsUpdated == 0;
     }
 
     private void removeTaskData(Connection connection, TaskModel task) {
@@ -769,31 +1275,98 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
     }
 
     private void addWorkflowToTaskMapping(Connection connection, TaskModel task) {
+        addWorkflowToTaskMappings(
+                connection,
+                Collections.singletonList(task.getWorkflowInstanceId()),
+                Collections.singletonList(task.getTaskId()));
+    }
 
-        String EXISTS_WORKFLOW_TO_TASK =
-                "SELECT EXISTS(SELECT 1 FROM workflow_to_task WHERE workflow_id = ? AND task_id = ?)";
-
-        boolean exists =
-                query(
-                        connection,
-                        EXISTS_WORKFLOW_TO_TASK,
-                        q ->
-                                q.addParameter(task.getWorkflowInstanceId())
-                                        .addParameter(task.getTaskId())
-                                        .exists());
+    /**
+     * Upserts the data of the tasks with the given ids, with {@literal binaryData} bound as base64
+     * text. With time partitioning, the ids are registered in task_created_on first, and a task row
+     * takes the creation time from there so that it conflicts with an existing row.
+     */
+    private void upsertTaskData(
+            Connection connection,
+            List<String> taskIds,
+            List<String> jsonData,
+            List<String> binaryData) {
+        registerTaskIds(connection, taskIds);
+        final String UPSERT_TASKS =
+                "INSERT INTO task (task_id, json_data, json_data_bin, modified_on, created_on) "
+                        + "SELECT t.task_id, t.json_data, decode(t.json_data_bin, 'base64'), CURRENT_TIMESTAMP, "
+                        + taskCreatedOn("t.task_id")
+                        + " FROM unnest(?, ?, ?) AS t(task_id, json_data, json_data_bin) "
+                        + "ON CONFLICT ("
+                        + (timePartitioned ? "task_id, created_on" : "task_id")
+                        + ") DO UPDATE SET json_data=excluded.json_data, json_data_bin=excluded.json_data_bin, modified_on=excluded.modified_on";
+        execute(
+                connection,
+                UPSERT_TASKS,
+                q ->
+                        q.addArrayParameter("varchar", taskIds)
+                                .addArrayParameter("text", jsonData)
+                                .addArrayParameter("text", binaryData)
+                                .executeUpdate());
+    }
 
-        if (!exists) {
-            String INSERT_WORKFLOW_TO_TASK =
-                    "INSERT INTO workflow_to_task (workflow_id, task_id) VALUES (?, ?) ON CONFLICT (workflow_id,task_id) DO NOTHING";
+    private void addWorkflowToTaskMappings(
+            Connection connection, List<String> workflowIds, List<String> taskIds) {
+        registerTaskIds(connection, taskIds);
+        final String INSERT_WORKFLOW_TO_TASKS =
+                "INSERT INTO workflow_to_task (workflow_id, task_id, created_on) "
+                        + "SELECT m.workflow_id, m.task_id, "
+                        + taskCreatedOn("m.task_id")
+                        + " FROM unnest(?, ?) AS m(workflow_id, task_id) ON CONFLICT DO NOTHING";
+        execute(
+                connection,
+                INSERT_WORKFLOW_TO_TASKS,
+                q ->
+                        q.addArrayParameter("varchar", workflowIds)
+                                .addArrayParameter("varchar", taskIds)
+                                .executeUpdate());
+    }
 
-            execute(
-                    connection,
-                    INSERT_WORKFLOW_TO_TASK,
-                    q ->
-                            q.addParameter(task.getWorkflowInstanceId())
-                                    .addParameter(task.getTaskId())
-                                    .executeUpdate());
+    /** Records the creation time of the tasks that do not have one yet, with time partitioning */
+    private void registerTaskIds(Connection connection, List<String> taskIds) {
+        if (!timePartitioned) {
+            return;
         }
+        // in order of id, so that transactions registering the same ids wait for each other
+        // instead of deadlocking
+        final String INSERT_TASK_IDS =
+                "INSERT INTO task_created_on (task_id) SELECT DISTINCT * FROM unnest(?) ORDER BY 1 "
+                        + "ON CONFLICT (task_id) DO NOTHING";
+        execute(
+                connection,
+                INSERT_TASK_IDS,
+                q -> q.addArrayParameter("varchar", taskIds).executeUpdate());
+    }
+
+    /**
+     * The workflow table to look workflows up by id in. When partitioned, it is joined to the
+     * creation times of the workflows, so that the lookup only probes the partitions holding them.
+     */
+    private String workflowTable(String alias) {
+        return timePartitioned
+                ? "(workflow_created_on JOIN workflow USING (workflow_id, created_on)) " + alias
+                : "workflow " + alias;
+    }
+
+    /** The task table to look tasks up by id in, see {@link #workflowTable(String)} */
+    private String taskTable(String alias) {
+        return timePartitioned
+                ? "(task_created_on JOIN task USING (task_id, created_on)) " + alias
+                : "task " + alias;
+    }
+
+    /** The creation time of a new row of the task with the id {@literal taskIdColumn} */
+    private String taskCreatedOn(String taskIdColumn) {
+        return timePartitioned
+                ? "(SELECT c.created_on FROM task_created_on c WHERE c.task_id = "
+                        + taskIdColumn
+                        + ")"
+                : "CURRENT_TIMESTAMP";
     }
 
     private void removeWorkflowToTaskMapping(Connection connection, TaskModel task) {
@@ -823,51 +1396,119 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                                 .executeUpdate());
     }
 
-    private void removeWorkflowDefToWorkflowMapping(Connection connection, WorkflowModel workflow) {
-        String REMOVE_WORKFLOW_DEF_TO_WORKFLOW =
-                "DELETE FROM workflow_def_to_workflow WHERE workflow_def = ? AND date_str = ? AND workflow_id = ?";
-
-        execute(
-                connection,
-                REMOVE_WORKFLOW_DEF_TO_WORKFLOW,
-                q ->
-                        q.addParameter(workflow.getWorkflowName())
-                                .addParameter(dateStr(workflow.getCreateTime()))
-                                .addParameter(workflow.getWorkflowId())
-                                .executeUpdate());
-    }
-
-    @VisibleForTesting
-    boolean addScheduledTask(Connection connection, TaskModel task, String taskKey) {
-
-        final String EXISTS_SCHEDULED_TASK =
-                "SELECT EXISTS(SELECT 1 FROM task_scheduled where workflow_id = ? AND task_key = ?)";
+    /**
+     * Inserts the scheduled task keys of all {@literal tasks} with {@code ON CONFLICT DO NOTHING}.
+     *
+     * @return the tasks whose keys were inserted, in the order of {@literal tasks}
+     */
+    private List<TaskModel> addScheduledTasks(Connection connection, List<TaskModel> tasks) {
+        List<String> workflowIds = new ArrayList<>(tasks.size());
+        List<String> taskKeys = new ArrayList<>(tasks.size());
+        List<String> taskIds = new ArrayList<>(tasks.size());
+        for (TaskModel task : tasks) {
+            workflowIds.add(task.getWorkflowInstanceId());
+            taskKeys.add(taskKey(task));
+            taskIds.add(task.getTaskId());
+        }
 
-        boolean exists =
+        final String INSERT_IGNORE_SCHEDULED_TASKS =
+                "INSERT INTO task_scheduled (workflow_id, task_key, task_id) SELECT * FROM unnest(?, ?, ?) "
+                        + "ON CONFLICT (workflow_id,task_key) DO NOTHING RETURNING workflow_id, task_key, task_id";
+        Map<String, String> scheduled =
                 query(
                         connection,
-                        EXISTS_SCHEDULED_TASK,
+                        INSERT_IGNORE_SCHEDULED_TASKS,
                         q ->
-                                q.addParameter(task.getWorkflowInstanceId())
-                                        .addParameter(taskKey)
-                                        .exists());
+                                q.addArrayParameter("varchar", workflowIds)
+                                        .addArrayParameter("varchar", taskKeys)
+                                        .addArrayParameter("varchar", taskIds)
+                                        .executeAndFetch(
+                                                rs -> {
+                                                    Map<String, String> result = new HashMap<>();
+                                                    while (rs.next()) {
+                                                        result.put(
+                                                                rs.getString("workflow_id")
+                                                                        + "/"
+                                                                        + rs.getString("task_key"),
+                                                                rs.getString("task_id"));
+                                                    }
+                                                    return result;
+                                                }));
+
+        List<TaskModel> created = Lists.newArrayListWithCapacity(scheduled.size());
+        for (TaskModel task : tasks) {
+            // remove, so that a duplicate of an inserted task later in the list is not created
+            if (scheduled.remove(
+                    task.getWorkflowInstanceId() + "/" + taskKey(task), task.getTaskId())) {
+                created.add(task);
+            } else {
+                logger.trace(
+                        "Task already scheduled, skipping the run "
+                                + task.getTaskId()
+                                + ", ref="
+                                + task.getReferenceTaskName()
+                                + ", key="
+                                + taskKey(task));
+            }
+        }
+        return created;
+    }
 
-        if (!exists) {
-            final String INSERT_IGNORE_SCHEDULED_TASK =
-                    "INSERT INTO task_scheduled (workflow_id, task_key, task_id) VALUES (?, ?, ?) ON CONFLICT (workflow_id,task_key) DO NOTHING";
+    /**
+     * Writes the data, workflow mapping and in-progress rows of newly scheduled tasks, each with a
+     * single multi-row statement. Every task is serialized once; if a task id occurs more than
+     * once, the last task wins as it would with one {@link #updateTask(TaskModel)} per task.
+     */
+    private void insertTasks(Connection connection, List<TaskModel> tasks) {
+        Map<String, TaskModel> tasksById = new LinkedHashMap<>();
+        tasks.forEach(task -> tasksById.put(task.getTaskId(), task));
+
+        List<String> taskIds = new ArrayList<>(tasksById.keySet());
+        List<String> workflowIds = new ArrayList<>(tasksById.size());
+        List<String> jsonData = new ArrayList<>(tasksById.size());
+        // bytea arrays are bound as base64 text and decoded by the statement
+        List<String> binaryData = new ArrayList<>(tasksById.size());
+        List<String> inProgressTaskDefNames = new ArrayList<>();
+        List<String> inProgressTaskIds = new ArrayList<>();
+        List<String> inProgressWorkflowIds = new ArrayList<>();
+        List<Boolean> inProgressStatuses = new ArrayList<>();
+        for (TaskModel task : tasksById.values()) {
+            workflowIds.add(task.getWorkflowInstanceId());
+            if (dataCodec.isBinary()) {
+                jsonData.add(null);
+                binaryData.add(Base64.getEncoder().encodeToString(dataCodec.encode(task)));
+            } else {
+                jsonData.add(toJson(task));
+                binaryData.add(null);
+            }
+            if (task.getStatus() == null || !task.getStatus().isTerminal()) {
+                Optional<TaskDef> taskDefinition = task.getTaskDefinition();
+                inProgressTaskDefNames.add(task.getTaskDefName());
+                inProgressTaskIds.add(task.getTaskId());
+                inProgressWorkflowIds.add(task.getWorkflowInstanceId());
+                inProgressStatuses.add(
+                        taskDefinition.isPresent()
+                                && taskDefinition.get().concurrencyLimit() > 0
+                                && task.getStatus() == TaskModel.Status.IN_PROGRESS);
+            }
+        }
 
-            int count =
-                    query(
-                            connection,
-                            INSERT_IGNORE_SCHEDULED_TASK,
-                            q ->
-                                    q.addParameter(task.getWorkflowInstanceId())
-                                            .addParameter(taskKey)
-                                            .addParameter(task.getTaskId())
-                                            .executeUpdate());
-            return count > 0;
-        } else {
-            return false;
+        upsertTaskData(connection, taskIds, jsonData, binaryData);
+        addWorkflowToTaskMappings(connection, workflowIds, taskIds);
+
+        if (!inProgressTaskIds.isEmpty()) {
+            final String INSERT_IN_PROGRESS_TASKS =
+                    "INSERT INTO task_in_progress (task_def_name, task_id, workflow_id, in_progress_status) SELECT * FROM unnest(?, ?, ?, ?) "
+                            + "ON CONFLICT (task_def_name,task_id) DO NOTHING";
+            execute(
+                    connection,
+                    INSERT_IN_PROGRESS_TASKS,
+                    q ->
+                            q.addArrayParameter("varchar", inProgressTaskDefNames)
+                                    .addArrayParameter("varchar", inProgressTaskIds)
+                                    .addArrayParameter("varchar", inProgressWorkflowIds)
+                                    .addArrayParameter("bool", inProgressStatuses)
+                                    .executeUpdate());
         }
     }
 
@@ -883,34 +1524,6 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                                 .executeDelete());
     }
 
-    private void addTaskInProgress(Connection connection, TaskModel task) {
-        String EXISTS_IN_PROGRESS_TASK =
-                "SELECT EXISTS(SELECT 1 FROM task_in_progress WHERE task_def_name = ? AND task_id = ?)";
-
-        boolean exists =
-                query(
-                        connection,
-                        EXISTS_IN_PROGRESS_TASK,
-                        q ->
-                                q.addParameter(task.getTaskDefName())
-                                        .addParameter(task.getTaskId())
-                                        .exists());
-
-        if (!exists) {
-            String INSERT_IN_PROGRESS_TASK =
-                    "INSERT INTO task_in_progress (task_def_name, task_id, workflow_id) VALUES (?, ?, ?)";
-
-            execute(
-                    connection,
-                    INSERT_IN_PROGRESS_TASK,
-                    q ->
-                            q.addParameter(task.getTaskDefName())
-                                    .addParameter(task.getTaskId())
-                                    .addParameter(task.getWorkflowInstanceId())
-                                    .executeUpdate());
-        }
-    }
-
     private void removeTaskInProgress(Connection connection, TaskModel task) {
         String REMOVE_IN_PROGRESS_TASK =
                 "DELETE FROM task_in_progress WHERE task_def_name = ? AND task_id = ?";
@@ -1058,6 +1671,72 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
         }
     }
 
+    /**
+     * Updates the existing rows of {@literal pollData} with one statement and inserts the missing
+     * ones with another, so that, as in {@link #insertOrUpdatePollData(Connection, PollData,
+     * String)}, the id sequence is only advanced for new rows.
+     */
+    private void upsertPollData(
+            Connection connection, List<PollData> pollData, List<String> domains) {
+        List<String> queueNames = new ArrayList<>(pollData.size());
+        List<String> jsonData = new ArrayList<>(pollData.size());
+        for (PollData data : pollData) {
+            queueNames.add(data.getQueueName());
+            jsonData.add(toJson(data));
+        }
+
+        final String UPDATE_POLL_DATA =
+                "UPDATE poll_data p SET json_data = u.json_data, modified_on = CURRENT_TIMESTAMP "
+                        + "FROM unnest(?, ?, ?) AS u(queue_name, domain, json_data) "
+                        + "WHERE p.queue_name = u.queue_name AND p.domain = u.domain "
+                        + "RETURNING p.queue_name, p.domain";
+        Set<List<String>> updated =
+                query(
+                        connection,
+                        UPDATE_POLL_DATA,
+                        q ->
+                                q.addArrayParameter("varchar", queueNames)
+                                        .addArrayParameter("varchar", domains)
+                                        .addArrayParameter("text", jsonData)
+                                        .executeAndFetch(
+                                                rs -> {
+                                                    Set<List<String>> result = new HashSet<>();
+                                                    while (rs.next()) {
+                                                        result.add(
+                                                                Arrays.asList(
+                                                                        rs.getString("queue_name"),
+                                                                        rs.getString("domain")));
+                                                    }
+                                                    return result;
+                                                }));
+        if (updated.size() == pollData.size()) {
+            return;
+        }
+
+        List<String> insertQueueNames = new ArrayList<>();
+        List<String> insertDomains = new ArrayList<>();
+        List<String> insertJsonData = new ArrayList<>();
+        for (int i = 0; i < pollData.size(); i++) {
+            if (!updated.contains(Arrays.asList(queueNames.get(i), domains.get(i)))) {
+                insertQueueNames.add(queueNames.get(i));
+                insertDomains.add(domains.get(i));
+                insertJsonData.add(jsonData.get(i));
+            }
+        }
+        final String INSERT_POLL_DATA =
+                "INSERT INTO poll_data (queue_name, domain, json_data, modified_on) "
+                        + "SELECT queue_name, domain, json_data, CURRENT_TIMESTAMP FROM unnest(?, ?, ?) AS u(queue_name, domain, json_data) "
+                        + "ON CONFLICT (queue_name,domain) DO UPDATE SET json_data=excluded.json_data, modified_on=excluded.modified_on";
+        execute(
+                connection,
+                INSERT_POLL_DATA,
+                q ->
+                        q.addArrayParameter("varchar", insertQueueNames)
+                                .addArrayParameter("varchar", insertDomains)
+                                .addArrayParameter("text", insertJsonData)
+                                .executeUpdate());
+    }
+
     private PollData readPollData(Connection connection, String queueName, String domain) {
         String GET_POLL_DATA =
                 "SELECT json_data FROM poll_data WHERE queue_name = ? AND domain = ?";
@@ -1076,16 +1755,61 @@ public class PostgresExecutionDAO extends PostgresBaseDAO
                 GET_ALL_POLL_DATA, q -> q.addParameter(queueName).executeAndFetch(PollData.class));
     }
 
-    private List<String> findAllTasksInProgressInOrderOfArrival(TaskModel task, int limit) {
-        String GET_IN_PROGRESS_TASKS_WITH_LIMIT =
-                "SELECT task_id FROM task_in_progress WHERE task_def_name = ? ORDER BY created_on LIMIT ?";
+    /**
+     * Takes up to {@literal requested} permits of the rate limit window starting at {@literal
+     * windowStart} from the {@code task_rate_limit} row of {@literal taskDefName}, which is locked
+     * for the duration of the transaction.
+     *
+     * @return the number of permits granted, which is 0 once the window is used up
+     */
+    private int leaseRateLimitPermits(
+            Connection connection,
+            String taskDefName,
+            long windowStart,
+            int rateLimit,
+            int requested) {
+        String INSERT_RATE_LIMIT =
+                "INSERT INTO task_rate_limit (task_def_name, window_start, permits_used) VALUES (?, ?, 0) "
+                        + "ON CONFLICT (task_def_name) DO NOTHING";
+        execute(
+                connection,
+                INSERT_RATE_LIMIT,
+                q -> q.addParameter(taskDefName).addParameter(windowStart).executeUpdate());
 
-        return queryWithTransaction(
-                GET_IN_PROGRESS_TASKS_WITH_LIMIT,
-                q ->
-                        q.addParameter(task.getTaskDefName())
-                                .addParameter(limit)
-                                .executeScalarList(String.class));
+        String GET_RATE_LIMIT =
+                "SELECT window_start, permits_used FROM task_rate_limit WHERE task_def_name = ? FOR UPDATE";
+        Pair<Long, Integer> current =
+                query(
+                        connection,
+                        GET_RATE_LIMIT,
+                        q ->
+                                q.addParameter(taskDefName)
+                                        .executeAndFetch(
+                                                rs -> {
+                                                    rs.next();
+                                                    return Pair.of(
+                                                            rs.getLong("window_start"),
+                                                            rs.getInt("permits_used"));
+                                                }));
+        if (current.getLeft() > windowStart) {
+            // another node's clock moved on to the next window already
+            return 0;
+        }
+        int used = current.getLeft() == windowStart ? current.getRight() : 0;
+        int granted = Math.max(0, Math.min(requested, rateLimit - used));
+        if (granted > 0) {
+            String UPDATE_RATE_LIMIT =
+                    "UPDATE task_rate_limit SET window_start = ?, permits_used = ? WHERE task_def_name = ?";
+            execute(
+                    connection,
+                    UPDATE_RATE_LIMIT,
+                    q ->
+                            q.addParameter(windowStart)
+                                    .addParameter(used + granted)
+                                    .addParameter(taskDefName)
+                                    .executeUpdate());
+        }
+        return granted;
     }
 
     private void validate(TaskModel task) {
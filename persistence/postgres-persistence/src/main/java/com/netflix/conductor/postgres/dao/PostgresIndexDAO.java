@@ -11,13 +11,22 @@
  */
 package com.netflix.conductor.postgres.dao;
 
-import java.sql.Timestamp;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAccessor;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import javax.annotation.PreDestroy;
 import javax.sql.DataSource;
 
 import org.springframework.retry.support.RetryTemplate;
@@ -28,39 +37,93 @@ import com.netflix.conductor.common.run.SearchResult;
 import com.netflix.conductor.common.run.TaskSummary;
 import com.netflix.conductor.common.run.WorkflowSummary;
 import com.netflix.conductor.core.events.queue.Message;
+import com.netflix.conductor.core.exception.NonTransientException;
+import com.netflix.conductor.dao.CursorSearchDAO;
+import com.netflix.conductor.dao.CursorSearchResult;
 import com.netflix.conductor.dao.IndexDAO;
+import com.netflix.conductor.metrics.Monitors;
+import com.netflix.conductor.postgres.config.PostgresProperties;
+import com.netflix.conductor.postgres.util.ExecutorsUtil;
 import com.netflix.conductor.postgres.util.PostgresIndexQueryBuilder;
+import com.netflix.conductor.postgres.util.Query;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+
+public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO, CursorSearchDAO {
+
+    private static final String INDEX_QUEUE = "postgresIndexQueue";
 
-public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO {
+    private final String className = getClass().getSimpleName();
+    private final int queueSize;
+    private final int batchSize;
+    private final IndexShard[] shards;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ScheduledExecutorService indexExecutorService;
+    private final int exactCountLimit;
+    private final Cache<String, Long> hitCounts;
 
     public PostgresIndexDAO(
-            RetryTemplate retryTemplate, ObjectMapper objectMapper, DataSource dataSource) {
+            RetryTemplate retryTemplate,
+            ObjectMapper objectMapper,
+            DataSource dataSource,
+            PostgresProperties properties) {
         super(retryTemplate, objectMapper, dataSource);
+        this.queueSize = properties.getAsyncIndexingQueueSize();
+        this.batchSize = properties.getAsyncIndexingBatchSize();
+        int threads = properties.getAsyncIndexingThreads();
+        this.shards = new IndexShard[threads];
+        this.indexExecutorService =
+                Executors.newScheduledThreadPool(
+                        threads, ExecutorsUtil.newNamedThreadFactory("postgres-index-"));
+        this.exactCountLimit = properties.getIndexExactCountLimit();
+        this.hitCounts =
+                CacheBuilder.newBuilder()
+                        .maximumSize(properties.getIndexCountCacheSize())
+                        .expireAfterWrite(properties.getIndexCountCacheTtl())
+                        .build();
+        long flushIntervalMs = properties.getAsyncIndexingFlushInterval().toMillis();
+        for (int i = 0; i < threads; i++) {
+            IndexShard shard = new IndexShard();
+            shards[i] = shard;
+            indexExecutorService.scheduleWithFixedDelay(
+                    () -> flush(shard), flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Stops the indexing workers and writes whatever they left behind. */
+    @PreDestroy
+    public void destroy() {
+        try {
+            indexExecutorService.shutdown();
+            if (indexExecutorService.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.debug("indexing workers completed, shutting down");
+            } else {
+                logger.warn("Forcing shutdown after waiting for 30 seconds");
+                indexExecutorService.shutdownNow();
+            }
+        } catch (InterruptedException ie) {
+            logger.warn("Shutdown interrupted, invoking shutdownNow on indexExecutorService", ie);
+            indexExecutorService.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        for (IndexShard shard : shards) {
+            flush(shard);
+        }
     }
 
     @Override
     public void indexWorkflow(WorkflowSummary workflow) {
-        String INSERT_WORKFLOW_INDEX_SQL =
-                "INSERT INTO workflow_index (workflow_id, correlation_id, workflow_type, start_time, status, json_data)"
-                        + "VALUES (?, ?, ?, ?, ?, ?::JSONB) ON CONFLICT (workflow_id) \n"
-                        + "DO UPDATE SET correlation_id = EXCLUDED.correlation_id, workflow_type = EXCLUDED.workflow_type, "
-                        + "start_time = EXCLUDED.start_time, status = EXCLUDED.status, json_data = EXCLUDED.json_data";
-
-        TemporalAccessor ta = DateTimeFormatter.ISO_INSTANT.parse(workflow.getStartTime());
-        Timestamp startTime = Timestamp.from(Instant.from(ta));
+        IndexShard shard = shard(workflow.getWorkflowId());
+        await(shard, enqueue(shard, shard.workflows, workflow.getWorkflowId(), workflow));
+    }
 
-        queryWithTransaction(
-                INSERT_WORKFLOW_INDEX_SQL,
-                q ->
-                        q.addParameter(workflow.getWorkflowId())
-                                .addParameter(workflow.getCorrelationId())
-                                .addParameter(workflow.getWorkflowType())
-                                .addParameter(startTime)
-                                .addParameter(workflow.getStatus().toString())
-                                .addJsonParameter(workflow)
-                                .executeUpdate());
+    @Override
+    public CompletableFuture<Void> asyncIndexWorkflow(WorkflowSummary workflow) {
+        IndexShard shard = shard(workflow.getWorkflowId());
+        return enqueue(shard, shard.workflows, workflow.getWorkflowId(), workflow);
     }
 
     @Override
@@ -78,38 +141,27 @@ public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO {
                             return q.executeAndFetch(WorkflowSummary.class);
                         });
 
-        // To avoid making a second potentially expensive query to postgres say we've
-        // got enough results for another page so the pagination works
-        int totalHits = results.size() == count ? start + count + 1 : start + results.size();
+        long totalHits = totalHits(queryBuilder, start, count, results.size());
         return new SearchResult<>(totalHits, results);
     }
 
     @Override
-    public void indexTask(TaskSummary task) {
-        String INSERT_TASK_INDEX_SQL =
-                "INSERT INTO task_index (task_id, task_type, task_def_name, status, start_time, update_time, workflow_type, json_data)"
-                        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?::JSONB) ON CONFLICT (task_id) "
-                        + "DO UPDATE SET task_type = EXCLUDED.task_type, task_def_name = EXCLUDED.task_def_name, "
-                        + "status = EXCLUDED.status, update_time = EXCLUDED.update_time, json_data = EXCLUDED.json_data";
-
-        TemporalAccessor updateTa = DateTimeFormatter.ISO_INSTANT.parse(task.getUpdateTime());
-        Timestamp updateTime = Timestamp.from(Instant.from(updateTa));
+    public CursorSearchResult<WorkflowSummary> searchWorkflowSummaryAfter(
+            String query, String freeText, int count, List<String> sort, String cursor) {
+        return searchAfter(
+                "workflow_index", query, freeText, count, sort, cursor, WorkflowSummary.class);
+    }
 
-        TemporalAccessor startTa = DateTimeFormatter.ISO_INSTANT.parse(task.getStartTime());
-        Timestamp startTime = Timestamp.from(Instant.from(startTa));
+    @Override
+    public void indexTask(TaskSummary task) {
+        IndexShard shard = shard(task.getTaskId());
+        await(shard, enqueue(shard, shard.tasks, task.getTaskId(), task));
+    }
 
-        queryWithTransaction(
-                INSERT_TASK_INDEX_SQL,
-                q ->
-                        q.addParameter(task.getTaskId())
-                                .addParameter(task.getTaskType())
-                                .addParameter(task.getTaskDefName())
-                                .addParameter(task.getStatus().toString())
-                                .addParameter(startTime)
-                                .addParameter(updateTime)
-                                .addParameter(task.getWorkflowType())
-                                .addJsonParameter(task)
-                                .executeUpdate());
+    @Override
+    public CompletableFuture<Void> asyncIndexTask(TaskSummary task) {
+        IndexShard shard = shard(task.getTaskId());
+        return enqueue(shard, shard.tasks, task.getTaskId(), task);
     }
 
     @Override
@@ -126,25 +178,49 @@ public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO {
                             return q.executeAndFetch(TaskSummary.class);
                         });
 
-        // To avoid making a second potentially expensive query to postgres say we've
-        // got enough results for another page so the pagination works
-        int totalHits = results.size() == count ? start + count + 1 : start + results.size();
+        long totalHits = totalHits(queryBuilder, start, count, results.size());
         return new SearchResult<>(totalHits, results);
     }
 
+    @Override
+    public CursorSearchResult<TaskSummary> searchTaskSummaryAfter(
+            String query, String freeText, int count, List<String> sort, String cursor) {
+        return searchAfter("task_index", query, freeText, count, sort, cursor, TaskSummary.class);
+    }
+
     @Override
     public void addTaskExecutionLogs(List<TaskExecLog> logs) {
-        String INSERT_LOG =
-                "INSERT INTO task_execution_logs (task_id, created_time, log) VALUES (?, ?, ?)";
-        for (TaskExecLog log : logs) {
-            queryWithTransaction(
-                    INSERT_LOG,
-                    q ->
-                            q.addParameter(log.getTaskId())
-                                    .addParameter(new Timestamp(log.getCreatedTime()))
-                                    .addParameter(log.getLog())
-                                    .executeUpdate());
+        if (logs.isEmpty()) {
+            return;
         }
+        withTransaction(
+                "addTaskExecutionLogs",
+                tx -> {
+                    for (List<TaskExecLog> batch : Lists.partition(logs, batchSize)) {
+                        Rows rows = new Rows(3);
+                        batch.forEach(log -> addLogRow(rows, log));
+                        insertTaskExecutionLogs(tx, rows);
+                    }
+                });
+    }
+
+    @Override
+    public CompletableFuture<Void> asyncAddTaskExecutionLogs(List<TaskExecLog> logs) {
+        if (logs.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        IndexShard shard = shard(logs.get(0).getTaskId());
+        // queued in batches of rows, so that a long list is written with several statements
+        List<Pending<List<TaskExecLog>>> batches = new ArrayList<>();
+        for (List<TaskExecLog> batch : Lists.partition(logs, batchSize)) {
+            batches.add(new Pending<>(new ArrayList<>(batch)));
+        }
+        synchronized (shard) {
+            shard.logs.addAll(batches);
+        }
+        reserve(shard, logs.size());
+        return CompletableFuture.allOf(
+                batches.stream().map(p -> p.future).toArray(CompletableFuture[]::new));
     }
 
     @Override
@@ -171,18 +247,6 @@ public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO {
     @Override
     public void setup() {}
 
-    @Override
-    public CompletableFuture<Void> asyncIndexWorkflow(WorkflowSummary workflow) {
-        logger.info("asyncIndexWorkflow is not supported for postgres indexing");
-        return CompletableFuture.completedFuture(null);
-    }
-
-    @Override
-    public CompletableFuture<Void> asyncIndexTask(TaskSummary task) {
-        logger.info("asyncIndexTask is not supported for postgres indexing");
-        return CompletableFuture.completedFuture(null);
-    }
-
     @Override
     public SearchResult<String> searchWorkflows(
             String query, String freeText, int start, int count, List<String> sort) {
@@ -249,12 +313,6 @@ public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO {
         return null;
     }
 
-    @Override
-    public CompletableFuture<Void> asyncAddTaskExecutionLogs(List<TaskExecLog> logs) {
-        logger.info("asyncAddTaskExecutionLogs is not supported for postgres indexing");
-        return CompletableFuture.completedFuture(null);
-    }
-
     @Override
     public void addEventExecution(EventExecution eventExecution) {
         logger.info("addEventExecution is not supported for postgres indexing");
@@ -296,7 +354,439 @@ public class PostgresIndexDAO extends PostgresBaseDAO implements IndexDAO {
     }
 
     public long getWorkflowCount(String query, String freeText) {
-        logger.info("getWorkflowCount is not supported for postgres indexing");
-        return 0;
+        PostgresIndexQueryBuilder queryBuilder =
+                new PostgresIndexQueryBuilder(
+                        "workflow_index", query, freeText, 0, 0, Collections.emptyList());
+        return countHits(queryBuilder);
+    }
+
+    /**
+     * The documents waiting to be written by one indexing worker. A workflow or task id always maps
+     * to the same shard, and a shard is written by one thread at a time, so the updates of a
+     * document are written in order.
+     */
+    private static class IndexShard {
+
+        // guarded by the shard itself
+        private final Map<String, Pending<WorkflowSummary>> workflows = new LinkedHashMap<>();
+        private final Map<String, Pending<TaskSummary>> tasks = new LinkedHashMap<>();
+        private final List<Pending<List<TaskExecLog>>> logs = new ArrayList<>();
+
+        private final Object writeLock = new Object();
+    }
+
+    /** The latest version of a document and the future completed once it has been written. */
+    private static class Pending<T> {
+
+        private T document;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Pending(T document) {
+            this.document = document;
+        }
+    }
+
+    /** Rows to be written with one statement, kept column by column to be passed as arrays. */
+    private static class Rows {
+
+        private final List<List<String>> columns = new ArrayList<>();
+
+        private Rows(int columns) {
+            for (int i = 0; i < columns; i++) {
+                this.columns.add(new ArrayList<>());
+            }
+        }
+
+        private void add(String... row) {
+            for (int i = 0; i < row.length; i++) {
+                columns.get(i).add(row[i]);
+            }
+        }
+
+        private boolean isEmpty() {
+            return columns.get(0).isEmpty();
+        }
+
+        private Query addParameters(Query q) throws SQLException {
+            for (List<String> column : columns) {
+                q.addArrayParameter("text", column);
+            }
+            return q;
+        }
+    }
+
+    /**
+     * Reads the page after the row whose sort values the cursor holds. The cursor of the next page
+     * holds the sort values of the last row of this one, and the hits counted for the first page,
+     * so that only the first page pays for the count.
+     */
+    private <T> CursorSearchResult<T> searchAfter(
+            String table,
+            String query,
+            String freeText,
+            int count,
+            List<String> sort,
+            String cursor,
+            Class<T> type) {
+        SearchCursor state =
+                cursor == null
+                        ? new SearchCursor()
+                        : CursorSearchResult.decodeCursor(objectMapper, cursor, SearchCursor.class);
+        PostgresIndexQueryBuilder queryBuilder =
+                new PostgresIndexQueryBuilder(
+                        table, query, freeText, count, sort, state.searchAfter);
+
+        List<String> lastSortValues = new ArrayList<>();
+        List<T> results =
+                queryWithTransaction(
+                        queryBuilder.getQuery(),
+                        q -> {
+                            queryBuilder.addParameters(q);
+                            return q.executeAndFetch(
+                                    rs -> {
+                                        List<T> page = new ArrayList<>();
+                                        while (rs.next()) {
+                                            page.add(readValue(rs.getString(1), type));
+                                            lastSortValues.clear();
+                                            for (int i = 0; i < queryBuilder.getKeysetSize(); i++) {
+                                                lastSortValues.add(rs.getString(i + 2));
+                                            }
+                                        }
+                                        return page;
+                                    });
+                        });
+
+        if (cursor == null) {
+            state.totalHits = totalHits(queryBuilder, 0, count, results.size());
+        }
+        String nextCursor = null;
+        if (count > 0 && results.size() == count) {
+            state.searchAfter = lastSortValues;
+            nextCursor = CursorSearchResult.encodeCursor(objectMapper, state);
+        }
+        return new CursorSearchResult<>(state.totalHits, results, nextCursor);
+    }
+
+    /** The state of a search paged by cursor. */
+    static class SearchCursor {
+
+        /** The sort values of the last row of the previous page */
+        public List<String> searchAfter;
+
+        /** The hits counted for the first page */
+        public long totalHits;
+    }
+
+    /**
+     * A page that is not full is the last one, so the total follows from it. Only full pages, and
+     * empty pages past the start, need the hits counted.
+     */
+    private long totalHits(
+            PostgresIndexQueryBuilder queryBuilder, int start, int count, int results) {
+        if (results < count && (results > 0 || start == 0)) {
+            return start + results;
+        }
+        return countHits(queryBuilder);
+    }
+
+    /**
+     * Counts the rows matched by {@literal queryBuilder}. Up to the exact count limit they are
+     * counted, beyond it the planner's estimate is taken. Counts are cached for repeated queries.
+     */
+    private long countHits(PostgresIndexQueryBuilder queryBuilder) {
+        String key = queryBuilder.getCountKey();
+        Long hits = hitCounts.getIfPresent(key);
+        if (hits != null) {
+            Monitors.recordCounter("postgres_index_count", 1, "result", "cached");
+            return hits;
+        }
+        hits =
+                getWithRetriedTransactions(
+                        tx -> {
+                            if (exactCountLimit > 0) {
+                                long exact =
+                                        query(
+                                                tx,
+                                                queryBuilder.getCountQuery(),
+                                                q -> {
+                                                    queryBuilder.addCountParameters(
+                                                            q, exactCountLimit + 1);
+                                                    return q.executeScalar(Long.class);
+                                                });
+                                if (exact <= exactCountLimit) {
+                                    Monitors.recordCounter(
+                                            "postgres_index_count", 1, "result", "exact");
+                                    return exact;
+                                }
+                            }
+                            String plan =
+                                    query(
+                                            tx,
+                                            queryBuilder.getEstimateQuery(),
+                                            q -> {
+                                                queryBuilder.addConditionParameters(q);
+                                                return q.executeScalar(String.class);
+                                            });
+                            Monitors.recordCounter("postgres_index_count", 1, "result", "estimate");
+                            // the exact count already told there are more than the limit
+                            return Math.max(
+                                    estimatedRows(plan),
+                                    exactCountLimit > 0 ? exactCountLimit + 1 : 0);
+                        });
+        hitCounts.put(key, hits);
+        return hits;
+    }
+
+    private long estimatedRows(String plan) {
+        try {
+            return objectMapper.readTree(plan).path(0).path("Plan").path("Plan Rows").asLong();
+        } catch (IOException e) {
+            throw new NonTransientException("Could not read the query plan: " + plan, e);
+        }
+    }
+
+    private IndexShard shard(String id) {
+        return shards[Math.floorMod(id.hashCode(), shards.length)];
+    }
+
+    /**
+     * Queues {@literal document} for writing, replacing a queued version of the same document.
+     *
+     * @return A future completed once the document, or a later version of it, has been written.
+     */
+    private <T> CompletableFuture<Void> enqueue(
+            IndexShard shard, Map<String, Pending<T>> documents, String id, T document) {
+        Pending<T> pending;
+        boolean added;
+        synchronized (shard) {
+            pending = documents.get(id);
+            added = pending == null;
+            if (added) {
+                pending = new Pending<>(document);
+                documents.put(id, pending);
+            } else {
+                pending.document = document;
+            }
+        }
+        if (added) {
+            reserve(shard, 1);
+        } else {
+            Monitors.recordCounter("postgres_index_coalesced", 1);
+        }
+        return pending.future;
+    }
+
+    /**
+     * Accounts for {@literal count} newly queued rows. Once more than the queue size are waiting,
+     * the caller writes a batch of its shard itself instead of leaving it to the workers.
+     */
+    private void reserve(IndexShard shard, int count) {
+        if (queued.addAndGet(count) > queueSize) {
+            Monitors.recordCounter("postgres_index_backpressure", 1);
+            flushBatch(shard);
+        }
+    }
+
+    /** Writes batches of {@literal shard} until {@literal future} is done. */
+    private void await(IndexShard shard, CompletableFuture<Void> future) {
+        while (!future.isDone()) {
+            flushBatch(shard);
+        }
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /** Writes batches of {@literal shard} until it has no more than a partial batch left. */
+    private void flush(IndexShard shard) {
+        try {
+            while (flushBatch(shard)) {
+                // keep going while there are full batches
+            }
+        } catch (Exception e) {
+            logger.error("Failed to flush the index queue", e);
+        }
+    }
+
+    /**
+     * Takes up to a batch of each kind of document queued in {@literal shard} and writes them in
+     * one transaction, with one multi-row statement per table. Logs are taken by rows rather than
+     * by call.
+     *
+     * @return Whether a full batch of any kind was taken, so more are likely waiting.
+     */
+    private boolean flushBatch(IndexShard shard) {
+        synchronized (shard.writeLock) {
+            List<Pending<WorkflowSummary>> workflows;
+            List<Pending<TaskSummary>> tasks;
+            List<Pending<List<TaskExecLog>>> logs;
+            boolean moreLogs;
+            synchronized (shard) {
+                workflows = take(shard.workflows.values());
+                tasks = take(shard.tasks.values());
+                logs = takeLogs(shard.logs);
+                moreLogs = !shard.logs.isEmpty();
+            }
+            int count =
+                    workflows.size()
+                            + tasks.size()
+                            + logs.stream().mapToInt(p -> p.document.size()).sum();
+            if (count == 0) {
+                return false;
+            }
+            queued.addAndGet(-count);
+
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            Rows workflowRows = toRows(workflows, 6, this::addWorkflowRow, futures);
+            Rows taskRows = toRows(tasks, 8, this::addTaskRow, futures);
+            Rows logRows =
+                    toRows(logs, 3, (rows, list) -> list.forEach(l -> addLogRow(rows, l)), futures);
+            try {
+                withTransaction(
+                        "flushIndex",
+                        tx -> {
+                            if (!workflowRows.isEmpty()) {
+                                upsertWorkflowIndex(tx, workflowRows);
+                            }
+                            if (!taskRows.isEmpty()) {
+                                upsertTaskIndex(tx, taskRows);
+                            }
+                            if (!logRows.isEmpty()) {
+                                insertTaskExecutionLogs(tx, logRows);
+                            }
+                        });
+                futures.forEach(future -> future.complete(null));
+            } catch (Exception e) {
+                Monitors.error(className, "flushIndex");
+                logger.error("Failed to index {} documents", futures.size(), e);
+                futures.forEach(future -> future.completeExceptionally(e));
+            }
+            Monitors.recordWorkerQueueSize(INDEX_QUEUE, queued.get());
+            return workflows.size() == batchSize || tasks.size() == batchSize || moreLogs;
+        }
+    }
+
+    /**
+     * Takes queued lists of logs up to a batch of rows in total. Each list holds at most a batch,
+     * see {@link #asyncAddTaskExecutionLogs(List)}.
+     */
+    private List<Pending<List<TaskExecLog>>> takeLogs(List<Pending<List<TaskExecLog>>> pending) {
+        int count = 0;
+        int rows = 0;
+        while (count < pending.size() && rows + pending.get(count).document.size() <= batchSize) {
+            rows += pending.get(count++).document.size();
+        }
+        List<Pending<List<TaskExecLog>>> taken = new ArrayList<>(pending.subList(0, count));
+        pending.subList(0, count).clear();
+        return taken;
+    }
+
+    private <T> List<T> take(Collection<T> pending) {
+        List<T> taken = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<T> iterator = pending.iterator();
+        while (iterator.hasNext() && taken.size() < batchSize) {
+            taken.add(iterator.next());
+            iterator.remove();
+        }
+        return taken;
+    }
+
+    /**
+     * Converts the documents to rows. A document that cannot be converted fails its own future
+     * rather than the whole batch.
+     */
+    private <T> Rows toRows(
+            List<Pending<T>> pending,
+            int columns,
+            BiConsumer<Rows, T> rowMapper,
+            List<CompletableFuture<Void>> futures) {
+        Rows rows = new Rows(columns);
+        for (Pending<T> p : pending) {
+            try {
+                rowMapper.accept(rows, p.document);
+                futures.add(p.future);
+            } catch (Exception e) {
+                Monitors.error(className, "flushIndex");
+                logger.error("Failed to index {}", p.document, e);
+                p.future.completeExceptionally(e);
+            }
+        }
+        return rows;
+    }
+
+    private void addWorkflowRow(Rows rows, WorkflowSummary workflow) {
+        rows.add(
+                workflow.getWorkflowId(),
+                workflow.getCorrelationId(),
+                workflow.getWorkflowType(),
+                toTimestamp(workflow.getStartTime()),
+                workflow.getStatus().toString(),
+                toJson(workflow));
+    }
+
+    private void addTaskRow(Rows rows, TaskSummary task) {
+        rows.add(
+                task.getTaskId(),
+                task.getTaskType(),
+                task.getTaskDefName(),
+                task.getStatus().toString(),
+                toTimestamp(task.getStartTime()),
+                toTimestamp(task.getUpdateTime()),
+                task.getWorkflowType(),
+                toJson(task));
+    }
+
+    private void addLogRow(Rows rows, TaskExecLog log) {
+        rows.add(
+                log.getTaskId(),
+                Instant.ofEpochMilli(log.getCreatedTime()).toString(),
+                log.getLog());
+    }
+
+    /** Validates an ISO-8601 instant and returns it in the form Postgres casts to a timestamp. */
+    private static String toTimestamp(String isoInstant) {
+        TemporalAccessor ta = DateTimeFormatter.ISO_INSTANT.parse(isoInstant);
+        return Instant.from(ta).toString();
+    }
+
+    private void upsertWorkflowIndex(Connection tx, Rows rows) {
+        String UPSERT_WORKFLOW_INDEX_SQL =
+                "INSERT INTO workflow_index (workflow_id, correlation_id, workflow_type, start_time, status, json_data) "
+                        + "SELECT workflow_id, correlation_id, workflow_type, start_time::TIMESTAMPTZ, status, json_data::JSONB "
+                        + "FROM unnest(?::TEXT[], ?::TEXT[], ?::TEXT[], ?::TEXT[], ?::TEXT[], ?::TEXT[]) "
+                        + "AS d (workflow_id, correlation_id, workflow_type, start_time, status, json_data) "
+                        + "ON CONFLICT (workflow_id) "
+                        + "DO UPDATE SET correlation_id = EXCLUDED.correlation_id, workflow_type = EXCLUDED.workflow_type, "
+                        + "start_time = EXCLUDED.start_time, status = EXCLUDED.status, json_data = EXCLUDED.json_data";
+
+        execute(tx, UPSERT_WORKFLOW_INDEX_SQL, q -> rows.addParameters(q).executeUpdate());
+    }
+
+    private void upsertTaskIndex(Connection tx, Rows rows) {
+        String UPSERT_TASK_INDEX_SQL =
+                "INSERT INTO task_index (task_id, task_type, task_def_name, status, start_time, update_time, workflow_type, json_data) "
+                        + "SELECT task_id, task_type, task_def_name, status, start_time::TIMESTAMPTZ, update_time::TIMESTAMPTZ, "
+                        + "workflow_type, json_data::JSONB "
+                        + "FROM unnest(?::TEXT[], ?::TEXT[], ?::TEXT[], ?::TEXT[], ?::TEXT[], ?::TEXT[], ?::TEXT[], ?::TEXT[]) "
+                        + "AS d (task_id, task_type, task_def_name, status, start_time, update_time, workflow_type, json_data) "
+                        + "ON CONFLICT (task_id) "
+                        + "DO UPDATE SET task_type = EXCLUDED.task_type, task_def_name = EXCLUDED.task_def_name, "
+                        + "status = EXCLUDED.status, update_time = EXCLUDED.update_time, json_data = EXCLUDED.json_data";
+
+        execute(tx, UPSERT_TASK_INDEX_SQL, q -> rows.addParameters(q).executeUpdate());
+    }
+
+    private void insertTaskExecutionLogs(Connection tx, Rows rows) {
+        String INSERT_LOGS_SQL =
+                "INSERT INTO task_execution_logs (task_id, created_time, log) "
+                        + "SELECT task_id, created_time::TIMESTAMPTZ, log "
+                        + "FROM unnest(?::TEXT[], ?::TEXT[], ?::TEXT[]) AS d (task_id, created_time, log)";
+
+        execute(tx, INSERT_LOGS_SQL, q -> rows.addParameters(q).executeUpdate());
     }
 }
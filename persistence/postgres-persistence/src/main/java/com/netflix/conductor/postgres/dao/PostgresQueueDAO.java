@@ -13,9 +13,11 @@ package com.netflix.conductor.postgres.dao;
 
 import java.sql.Connection;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.annotation.PreDestroy;
@@ -25,10 +27,14 @@ import org.springframework.retry.support.RetryTemplate;
 
 import com.netflix.conductor.core.events.queue.Message;
 import com.netflix.conductor.dao.QueueDAO;
+import com.netflix.conductor.metrics.Monitors;
+import com.netflix.conductor.postgres.config.PostgresProperties;
 import com.netflix.conductor.postgres.util.ExecutorsUtil;
+import com.netflix.conductor.postgres.util.PostgresQueueListener;
 import com.netflix.conductor.postgres.util.Query;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.Uninterruptibles;
@@ -37,12 +43,46 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
 
     private static final Long UNACK_SCHEDULE_MS = 60_000L;
 
+    /** Visibility timeout of a popped message until {@link #setUnackTimeout} changes it */
+    private static final long DEFAULT_UNACK_TIMEOUT_MS = 60_000L;
+
+    /** Number of expired messages un-popped per statement by {@link #processAllUnacks()} */
+    private static final int UNACK_PAGE_SIZE = 1000;
+
+    /** Applied to the transactions that move a queue to its own partition of queue_message */
+    private static final String PARTITION_LOCK_TIMEOUT = "SET LOCAL lock_timeout = '1s'";
+
     private final ScheduledExecutorService scheduledExecutorService;
 
+    private final boolean queueNotifyEnabled;
+    private final long queueNotifyMaxWaitMs;
+    private final PostgresQueueListener queueListener;
+    private final boolean queuePartitioningEnabled;
+
+    /** Queues known to exist in the {@code queue} table, so pushes can skip the existence check */
+    private final Set<String> knownQueues = ConcurrentHashMap.newKeySet();
+
+    private final boolean queueSizeExact;
+
+    /**
+     * Approximate per-queue message counts, adjusted by the operations of this node and recounted
+     * every {@link PostgresProperties#getQueueSizeReconcileInterval()}
+     */
+    private final ConcurrentHashMap<String, QueueCounts> queueCounts = new ConcurrentHashMap<>();
+
     public PostgresQueueDAO(
-            RetryTemplate retryTemplate, ObjectMapper objectMapper, DataSource dataSource) {
+            RetryTemplate retryTemplate,
+            ObjectMapper objectMapper,
+            DataSource dataSource,
+            PostgresProperties properties) {
         super(retryTemplate, objectMapper, dataSource);
 
+        this.queueNotifyEnabled = properties.isQueueNotifyEnabled();
+        this.queueNotifyMaxWaitMs = properties.getQueueNotifyMaxWait().toMillis();
+        this.queueListener = queueNotifyEnabled ? new PostgresQueueListener(dataSource) : null;
+        this.queuePartitioningEnabled = properties.isQueuePartitioningEnabled();
+        this.queueSizeExact = properties.isQueueSizeExact();
+
         this.scheduledExecutorService =
                 Executors.newSingleThreadScheduledExecutor(
                         ExecutorsUtil.newNamedThreadFactory("postgres-queue-"));
@@ -51,11 +91,30 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
                 UNACK_SCHEDULE_MS,
                 UNACK_SCHEDULE_MS,
                 TimeUnit.MILLISECONDS);
+        if (!queueSizeExact) {
+            long reconcileIntervalMs = properties.getQueueSizeReconcileInterval().toMillis();
+            this.scheduledExecutorService.scheduleAtFixedRate(
+                    this::reconcileQueueCounts,
+                    reconcileIntervalMs,
+                    reconcileIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+        if (queuePartitioningEnabled) {
+            long partitionIntervalMs = properties.getQueuePartitionInterval().toMillis();
+            this.scheduledExecutorService.scheduleWithFixedDelay(
+                    this::addQueuePartitions,
+                    partitionIntervalMs,
+                    partitionIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
         logger.debug("{} is ready to serve", PostgresQueueDAO.class.getName());
     }
 
     @PreDestroy
     public void destroy() {
+        if (queueListener != null) {
+            queueListener.close();
+        }
         try {
             this.scheduledExecutorService.shutdown();
             if (scheduledExecutorService.awaitTermination(30, TimeUnit.SECONDS)) {
@@ -80,23 +139,28 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
 
     @Override
     public void push(String queueName, String messageId, int priority, long offsetTimeInSecond) {
-        withTransaction(
-                tx -> pushMessage(tx, queueName, messageId, null, priority, offsetTimeInSecond));
+        boolean inserted =
+                getWithRetriedTransactions(
+                        tx ->
+                                pushMessage(
+                                        tx,
+                                        queueName,
+                                        messageId,
+                                        null,
+                                        priority,
+                                        offsetTimeInSecond));
+        if (inserted) {
+            adjustQueueCounts(queueName, 1, 0);
+        }
     }
 
     @Override
     public void push(String queueName, List<Message> messages) {
-        withTransaction(
-                tx ->
-                        messages.forEach(
-                                message ->
-                                        pushMessage(
-                                                tx,
-                                                queueName,
-                                                message.getId(),
-                                                message.getPayload(),
-                                                message.getPriority(),
-                                                0)));
+        if (messages.isEmpty()) {
+            return;
+        }
+        int inserted = getWithRetriedTransactions(tx -> pushMessages(tx, queueName, messages));
+        adjustQueueCounts(queueName, inserted, 0);
     }
 
     @Override
@@ -107,14 +171,21 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
     @Override
     public boolean pushIfNotExists(
             String queueName, String messageId, int priority, long offsetTimeInSecond) {
-        return getWithRetriedTransactions(
-                tx -> {
-                    if (!existsMessage(tx, queueName, messageId)) {
-                        pushMessage(tx, queueName, messageId, null, priority, offsetTimeInSecond);
-                        return true;
-                    }
-                    return false;
-                });
+        boolean inserted =
+                getWithRetriedTransactions(
+                        tx ->
+                                !existsMessage(tx, queueName, messageId)
+                                        && pushMessage(
+                                                tx,
+                                                queueName,
+                                                messageId,
+                                                null,
+                                                priority,
+                                                offsetTimeInSecond));
+        if (inserted) {
+            adjustQueueCounts(queueName, 1, 0);
+        }
+        return inserted;
     }
 
     @Override
@@ -133,13 +204,27 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
             if (messages == null) {
                 return new ArrayList<>();
             }
+            adjustQueueCounts(queueName, -messages.size(), messages.size());
             return messages;
         }
 
+        if (queueListener == null) {
+            return pollMessagesUntilTimeout(queueName, count, timeout);
+        }
+        queueListener.subscribe(queueName);
+        try {
+            return pollMessagesUntilTimeout(queueName, count, timeout);
+        } finally {
+            queueListener.unsubscribe(queueName);
+        }
+    }
+
+    private List<Message> pollMessagesUntilTimeout(String queueName, int count, int timeout) {
         long start = System.currentTimeMillis();
         final List<Message> messages = new ArrayList<>();
 
         while (true) {
+            long signalVersion = queueListener != null ? queueListener.version(queueName) : 0;
             List<Message> messagesSlice =
                     getWithTransactionWithOutErrorPropagation(
                             tx -> popMessages(tx, queueName, count - messages.size(), timeout));
@@ -153,29 +238,52 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
                 return messages;
             }
 
+            adjustQueueCounts(queueName, -messagesSlice.size(), messagesSlice.size());
             messages.addAll(messagesSlice);
-            if (messages.size() >= count || ((System.currentTimeMillis() - start) > timeout)) {
+            long elapsed = System.currentTimeMillis() - start;
+            if (messages.size() >= count || elapsed > timeout) {
                 return messages;
             }
-            Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+            if (queueListener != null) {
+                queueListener.await(
+                        queueName,
+                        signalVersion,
+                        Math.min(timeout - elapsed, queueNotifyMaxWaitMs));
+            } else {
+                Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+            }
         }
     }
 
     @Override
     public void remove(String queueName, String messageId) {
-        withTransaction(tx -> removeMessage(tx, queueName, messageId));
+        ack(queueName, messageId);
     }
 
     @Override
     public int getSize(String queueName) {
-        final String GET_QUEUE_SIZE = "SELECT COUNT(*) FROM queue_message WHERE queue_name = ?";
-        return queryWithTransaction(
-                GET_QUEUE_SIZE, q -> ((Long) q.addParameter(queueName).executeCount()).intValue());
+        if (queueSizeExact) {
+            final String GET_QUEUE_SIZE = "SELECT COUNT(*) FROM queue_message WHERE queue_name = ?";
+            return queryWithTransaction(
+                    GET_QUEUE_SIZE,
+                    q -> ((Long) q.addParameter(queueName).executeCount()).intValue());
+        }
+        QueueCounts counts = getQueueCounts(queueName);
+        return (int) (counts.size() + counts.unacked());
     }
 
     @Override
     public boolean ack(String queueName, String messageId) {
-        return getWithRetriedTransactions(tx -> removeMessage(tx, queueName, messageId));
+        Boolean popped = getWithRetriedTransactions(tx -> removeMessage(tx, queueName, messageId));
+        if (popped == null) {
+            return false;
+        }
+        if (popped) {
+            adjustQueueCounts(queueName, 0, -1);
+        } else {
+            adjustQueueCounts(queueName, -1, 0);
+        }
+        return true;
     }
 
     @Override
@@ -183,13 +291,14 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
         long updatedOffsetTimeInSecond = unackTimeout / 1000;
 
         final String UPDATE_UNACK_TIMEOUT =
-                "UPDATE queue_message SET offset_time_seconds = ?, deliver_on = (current_timestamp + (? ||' seconds')::interval) WHERE queue_name = ? AND message_id = ?";
+                "UPDATE queue_message SET offset_time_seconds = ?, deliver_on = (current_timestamp + (? ||' seconds')::interval), unack_deadline = (current_timestamp + (? ||' milliseconds')::interval) WHERE queue_name = ? AND message_id = ?";
 
         return queryWithTransaction(
                         UPDATE_UNACK_TIMEOUT,
                         q ->
                                 q.addParameter(updatedOffsetTimeInSecond)
                                         .addParameter(updatedOffsetTimeInSecond)
+                                        .addParameter(unackTimeout)
                                         .addParameter(queueName)
                                         .addParameter(messageId)
                                         .executeUpdate())
@@ -200,10 +309,19 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
     public void flush(String queueName) {
         final String FLUSH_QUEUE = "DELETE FROM queue_message WHERE queue_name = ?";
         executeWithTransaction(FLUSH_QUEUE, q -> q.addParameter(queueName).executeDelete());
+        knownQueues.remove(queueName);
+        queueCounts.computeIfPresent(queueName, (name, counts) -> new QueueCounts(0, 0));
     }
 
     @Override
     public Map<String, Long> queuesDetail() {
+        if (!queueSizeExact) {
+            Map<String, Long> detail = Maps.newHashMap();
+            getAllQueueCounts()
+                    .forEach((queueName, counts) -> detail.put(queueName, counts.size()));
+            return detail;
+        }
+
         final String GET_QUEUES_DETAIL =
                 "SELECT queue_name, (SELECT count(*) FROM queue_message WHERE popped = false AND queue_name = q.queue_name) AS size FROM queue q FOR SHARE SKIP LOCKED";
         return queryWithTransaction(
@@ -223,6 +341,23 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
 
     @Override
     public Map<String, Map<String, Map<String, Long>>> queuesDetailVerbose() {
+        if (!queueSizeExact) {
+            Map<String, Map<String, Map<String, Long>>> result = Maps.newHashMap();
+            getAllQueueCounts()
+                    .forEach(
+                            (queueName, counts) ->
+                                    result.put(
+                                            queueName,
+                                            ImmutableMap.of(
+                                                    "a",
+                                                    ImmutableMap.of(
+                                                            "size",
+                                                            counts.size(),
+                                                            "uacked",
+                                                            counts.unacked()))));
+            return result;
+        }
+
         // @formatter:off
         final String GET_QUEUES_DETAIL_VERBOSE =
                 "SELECT queue_name, \n"
@@ -263,86 +398,75 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
     /**
      * Un-pop all un-acknowledged messages for all queues.
      *
+     * <p>Expired messages are found through the partial index on {@code unack_deadline} and are
+     * un-popped {@link #UNACK_PAGE_SIZE} at a time, each page in its own transaction, until none
+     * are left. The backlog and the lag behind the oldest expired deadline are published as gauges
+     * before sweeping.
+     *
      * @since 1.11.6
      */
     public void processAllUnacks() {
         logger.trace("processAllUnacks started");
 
-        getWithRetriedTransactions(
-                tx -> {
-                    String LOCK_TASKS =
-                            "SELECT queue_name, message_id FROM queue_message WHERE popped = true AND (deliver_on + (60 ||' seconds')::interval)  <  current_timestamp limit 1000 FOR UPDATE SKIP LOCKED";
+        final String UNACK_BACKLOG =
+                "SELECT count(*) AS backlog, COALESCE(EXTRACT(EPOCH FROM current_timestamp - min(unack_deadline)) * 1000, 0) AS lag FROM queue_message WHERE popped = true AND unack_deadline < current_timestamp";
+        queryWithTransaction(
+                UNACK_BACKLOG,
+                q ->
+                        q.executeAndFetch(
+                                rs -> {
+                                    if (rs.next()) {
+                                        Monitors.recordGauge(
+                                                "queue_unack_backlog", rs.getLong("backlog"));
+                                        Monitors.recordGauge(
+                                                "queue_unack_lag_ms", rs.getLong("lag"));
+                                    }
+                                    return null;
+                                }));
 
-                    List<QueueMessage> messages =
-                            query(
-                                    tx,
-                                    LOCK_TASKS,
-                                    p ->
-                                            p.executeAndFetch(
+        final String UNACK_PAGE =
+                "WITH unacked AS (UPDATE queue_message SET popped = false, unack_deadline = NULL WHERE (queue_name, message_id) IN ("
+                        + "SELECT queue_name, message_id FROM queue_message WHERE popped = true AND unack_deadline < current_timestamp "
+                        + "LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING queue_name) "
+                        + "SELECT queue_name, count(*) AS unacked FROM unacked GROUP BY queue_name";
+        int totalUnacked = 0;
+        int unacked;
+        do {
+            Map<String, Long> unackedByQueue =
+                    queryWithTransaction(
+                            UNACK_PAGE,
+                            q ->
+                                    q.addParameter(UNACK_PAGE_SIZE)
+                                            .executeAndFetch(
                                                     rs -> {
-                                                        List<QueueMessage> results =
-                                                                new ArrayList<QueueMessage>();
+                                                        Map<String, Long> counts = new HashMap<>();
                                                         while (rs.next()) {
-                                                            QueueMessage qm = new QueueMessage();
-                                                            qm.queueName =
-                                                                    rs.getString("queue_name");
-                                                            qm.messageId =
-                                                                    rs.getString("message_id");
-                                                            results.add(qm);
+                                                            counts.put(
+                                                                    rs.getString("queue_name"),
+                                                                    rs.getLong("unacked"));
                                                         }
-                                                        return results;
+                                                        return counts;
                                                     }));
-
-                    if (messages.size() == 0) {
-                        return 0;
-                    }
-
-                    Map<String, List<String>> queueMessageMap = new HashMap<String, List<String>>();
-                    for (QueueMessage qm : messages) {
-                        if (!queueMessageMap.containsKey(qm.queueName)) {
-                            queueMessageMap.put(qm.queueName, new ArrayList<String>());
-                        }
-                        queueMessageMap.get(qm.queueName).add(qm.messageId);
-                    }
-
-                    int totalUnacked = 0;
-                    for (String queueName : queueMessageMap.keySet()) {
-                        Integer unacked = 0;
-                        ;
-                        try {
-                            final List<String> msgIds = queueMessageMap.get(queueName);
-                            final String UPDATE_POPPED =
-                                    String.format(
-                                            "UPDATE queue_message SET popped = false WHERE queue_name = ? and message_id IN (%s)",
-                                            Query.generateInBindings(msgIds.size()));
-
-                            unacked =
-                                    query(
-                                            tx,
-                                            UPDATE_POPPED,
-                                            q ->
-                                                    q.addParameter(queueName)
-                                                            .addParameters(msgIds)
-                                                            .executeUpdate());
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                        totalUnacked += unacked;
-                        logger.debug("Unacked {} messages from all queues", unacked);
-                    }
-
-                    if (totalUnacked > 0) {
-                        logger.debug("Unacked {} messages from all queues", totalUnacked);
-                    }
-                    return totalUnacked;
-                });
+            unackedByQueue.forEach(
+                    (queueName, count) -> adjustQueueCounts(queueName, count, -count));
+            unacked = unackedByQueue.values().stream().mapToInt(Long::intValue).sum();
+            totalUnacked += unacked;
+        } while (unacked == UNACK_PAGE_SIZE);
+
+        if (totalUnacked > 0) {
+            logger.debug("Unacked {} messages from all queues", totalUnacked);
+            Monitors.recordCounter("queue_unacked", totalUnacked);
+        }
     }
 
     @Override
     public void processUnacks(String queueName) {
         final String PROCESS_UNACKS =
-                "UPDATE queue_message SET popped = false WHERE queue_name = ? AND popped = true AND (current_timestamp - (60 ||' seconds')::interval)  > deliver_on";
-        executeWithTransaction(PROCESS_UNACKS, q -> q.addParameter(queueName).executeUpdate());
+                "UPDATE queue_message SET popped = false, unack_deadline = NULL WHERE queue_name = ? AND popped = true AND unack_deadline < current_timestamp";
+        int unacked =
+                queryWithTransaction(
+                        PROCESS_UNACKS, q -> q.addParameter(queueName).executeUpdate());
+        adjustQueueCounts(queueName, unacked, -unacked);
     }
 
     @Override
@@ -352,15 +476,39 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
                 "UPDATE queue_message SET offset_time_seconds = ?, deliver_on = (current_timestamp + (? ||' seconds')::interval) \n"
                         + "WHERE queue_name = ? AND message_id = ?";
 
-        return queryWithTransaction(
-                SET_OFFSET_TIME,
-                q ->
-                        q.addParameter(offsetTimeInSecond)
-                                        .addParameter(offsetTimeInSecond)
-                                        .addParameter(queueName)
-                                        .addParameter(messageId)
-                                        .executeUpdate()
-                                == 1);
+        return getWithRetriedTransactions(
+                tx -> {
+                    boolean reset =
+                            query(
+                                    tx,
+                                    SET_OFFSET_TIME,
+                                    q ->
+                                            q.addParameter(offsetTimeInSecond)
+                                                            .addParameter(offsetTimeInSecond)
+                                                            .addParameter(queueName)
+                                                            .addParameter(messageId)
+                                                            .executeUpdate()
+                                                    == 1);
+                    if (reset) {
+                        notifyQueue(tx, queueName);
+                    }
+                    return reset;
+                });
+    }
+
+    /**
+     * Notifies pollers waiting on {@literal queueName}, on this or any other node, that messages
+     * may be available. The notification is delivered when the transaction commits.
+     */
+    private void notifyQueue(Connection connection, String queueName) {
+        if (!queueNotifyEnabled) {
+            return;
+        }
+        final String NOTIFY_QUEUE = "SELECT pg_notify(?, NULL)";
+        query(
+                connection,
+                NOTIFY_QUEUE,
+                q -> q.addParameter(PostgresQueueListener.channelName(queueName)).executeScalar());
     }
 
     private boolean existsMessage(Connection connection, String queueName, String messageId) {
@@ -372,7 +520,10 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
                 q -> q.addParameter(queueName).addParameter(messageId).exists());
     }
 
-    private void pushMessage(
+    /**
+     * @return whether a new message was inserted, rather than an existing one updated
+     */
+    private boolean pushMessage(
             Connection connection,
             String queueName,
             String messageId,
@@ -410,30 +561,108 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
                                     .addParameter(payload)
                                     .executeUpdate());
         }
+
+        if (offsetTimeInSecond <= 0) {
+            notifyQueue(connection, queueName);
+        }
+        return rowsUpdated == 0;
+    }
+
+    /**
+     * Upserts all {@literal messages} for immediate delivery with a single statement, expanding the
+     * message columns from array parameters.
+     *
+     * @return the number of new messages, as opposed to updated ones
+     */
+    private int pushMessages(Connection connection, String queueName, List<Message> messages) {
+        createQueueIfNotExists(connection, queueName);
+
+        // a row can only be upserted once per statement, so the last message with a given id wins
+        Map<String, Message> messagesById = new LinkedHashMap<>();
+        messages.forEach(message -> messagesById.put(message.getId(), message));
+
+        List<String> messageIds = new ArrayList<>(messagesById.size());
+        List<Integer> priorities = new ArrayList<>(messagesById.size());
+        List<String> payloads = new ArrayList<>(messagesById.size());
+        messagesById
+                .values()
+                .forEach(
+                        message -> {
+                            messageIds.add(message.getId());
+                            priorities.add(message.getPriority());
+                            payloads.add(message.getPayload());
+                        });
+
+        final String COUNT_EXISTING =
+                "SELECT count(*) FROM queue_message WHERE queue_name = ? AND message_id = ANY(?)";
+        long existing =
+                query(
+                        connection,
+                        COUNT_EXISTING,
+                        q ->
+                                q.addParameter(queueName)
+                                        .addArrayParameter("varchar", messageIds)
+                                        .executeCount());
+
+        final String PUSH_MESSAGES =
+                "INSERT INTO queue_message (deliver_on, queue_name, message_id, priority, offset_time_seconds, payload) "
+                        + "SELECT current_timestamp, ?, message_id, priority, 0, payload FROM unnest(?, ?, ?) AS m(message_id, priority, payload) "
+                        + "ON CONFLICT (queue_name,message_id) DO UPDATE SET payload=excluded.payload, deliver_on=excluded.deliver_on";
+        execute(
+                connection,
+                PUSH_MESSAGES,
+                q ->
+                        q.addParameter(queueName)
+                                .addArrayParameter("varchar", messageIds)
+                                .addArrayParameter("int4", priorities)
+                                .addArrayParameter("text", payloads)
+                                .executeUpdate());
+
+        notifyQueue(connection, queueName);
+        return messageIds.size() - (int) existing;
     }
 
-    private boolean removeMessage(Connection connection, String queueName, String messageId) {
+    /**
+     * @return whether the removed message was popped, or null if there was no such message
+     */
+    private Boolean removeMessage(Connection connection, String queueName, String messageId) {
         final String REMOVE_MESSAGE =
-                "DELETE FROM queue_message WHERE queue_name = ? AND message_id = ?";
+                "DELETE FROM queue_message WHERE queue_name = ? AND message_id = ? RETURNING popped";
         return query(
                 connection,
                 REMOVE_MESSAGE,
-                q -> q.addParameter(queueName).addParameter(messageId).executeDelete());
+                q ->
+                        q.addParameter(queueName)
+                                .addParameter(messageId)
+                                .executeAndFetch(rs -> rs.next() ? rs.getBoolean("popped") : null));
     }
 
-    private List<Message> peekMessages(Connection connection, String queueName, int count) {
+    /**
+     * Claims up to {@literal count} deliverable messages and marks them as popped using a single
+     * {@code UPDATE ... RETURNING} statement. Rows locked by concurrent pollers are skipped, and
+     * the claimed batch is returned in the same priority/deliver_on/created_on order that the inner
+     * select used to pick it.
+     */
+    private List<Message> popMessages(
+            Connection connection, String queueName, int count, int timeout) {
         if (count < 1) {
             return Collections.emptyList();
         }
 
-        final String PEEK_MESSAGES =
-                "SELECT message_id, priority, payload FROM queue_message WHERE queue_name = ? AND popped = false AND deliver_on <= (current_timestamp + (1000 ||' microseconds')::interval) ORDER BY priority DESC, deliver_on, created_on LIMIT ? FOR UPDATE SKIP LOCKED";
+        final String POP_MESSAGES =
+                "WITH popped AS (UPDATE queue_message SET popped = true, unack_deadline = (current_timestamp + (? ||' milliseconds')::interval) WHERE queue_name = ? AND message_id IN ("
+                        + "SELECT message_id FROM queue_message WHERE queue_name = ? AND popped = false AND deliver_on <= (current_timestamp + (1000 ||' microseconds')::interval) "
+                        + "ORDER BY priority DESC, deliver_on, created_on LIMIT ? FOR UPDATE SKIP LOCKED) "
+                        + "RETURNING message_id, priority, payload, deliver_on, created_on) "
+                        + "SELECT message_id, priority, payload FROM popped ORDER BY priority DESC, deliver_on, created_on";
 
         return query(
                 connection,
-                PEEK_MESSAGES,
+                POP_MESSAGES,
                 p ->
-                        p.addParameter(queueName)
+                        p.addParameter(DEFAULT_UNACK_TIMEOUT_MS)
+                                .addParameter(queueName)
+                                .addParameter(queueName)
                                 .addParameter(count)
                                 .executeAndFetch(
                                         rs -> {
@@ -449,53 +678,181 @@ public class PostgresQueueDAO extends PostgresBaseDAO implements QueueDAO {
                                         }));
     }
 
-    private List<Message> popMessages(
-            Connection connection, String queueName, int count, int timeout) {
-        List<Message> messages = peekMessages(connection, queueName, count);
+    @Override
+    public boolean containsMessage(String queueName, String messageId) {
+        return getWithRetriedTransactions(tx -> existsMessage(tx, queueName, messageId));
+    }
 
-        if (messages.isEmpty()) {
-            return messages;
-        }
+    /**
+     * Forgets all known queues and queue counts, e.g. after the tables were dropped underneath this
+     * DAO.
+     */
+    @VisibleForTesting
+    void clearCaches() {
+        knownQueues.clear();
+        queueCounts.clear();
+    }
 
-        List<Message> poppedMessages = new ArrayList<>();
-        for (Message message : messages) {
-            final String POP_MESSAGE =
-                    "UPDATE queue_message SET popped = true WHERE queue_name = ? AND message_id = ? AND popped = false";
-            int result =
-                    query(
-                            connection,
-                            POP_MESSAGE,
+    /**
+     * Recounts the messages of all queues with a single aggregate over {@code queue_message}, which
+     * folds in the changes made by other nodes and corrects the drift of the in-process counters.
+     */
+    @VisibleForTesting
+    void reconcileQueueCounts() {
+        final String COUNT_ALL_QUEUES =
+                "SELECT q.queue_name, count(m.message_id) FILTER (WHERE m.popped = false) AS size, count(m.message_id) FILTER (WHERE m.popped = true) AS uacked "
+                        + "FROM queue q LEFT JOIN queue_message m ON m.queue_name = q.queue_name GROUP BY q.queue_name";
+        try {
+            Map<String, QueueCounts> counts =
+                    queryWithTransaction(
+                            COUNT_ALL_QUEUES,
                             q ->
-                                    q.addParameter(queueName)
-                                            .addParameter(message.getId())
-                                            .executeUpdate());
+                                    q.executeAndFetch(
+                                            rs -> {
+                                                Map<String, QueueCounts> result = new HashMap<>();
+                                                while (rs.next()) {
+                                                    result.put(
+                                                            rs.getString("queue_name"),
+                                                            new QueueCounts(
+                                                                    rs.getLong("size"),
+                                                                    rs.getLong("uacked")));
+                                                }
+                                                return result;
+                                            }));
+            queueCounts.putAll(counts);
+            queueCounts.keySet().retainAll(counts.keySet());
+        } catch (Exception e) {
+            logger.warn("Unable to reconcile queue counts", e);
+        }
+    }
 
-            if (result == 1) {
-                poppedMessages.add(message);
+    /**
+     * Gives every queue that is still in the default partition of {@code queue_message} its own
+     * partition. Attaching a partition locks all of queue_message, so each queue is moved in a
+     * short transaction of its own that gives up after {@link #PARTITION_LOCK_TIMEOUT} rather than
+     * hold up every poll and push behind a long running transaction; it is retried in the next run.
+     */
+    @VisibleForTesting
+    void addQueuePartitions() {
+        final String GET_UNPARTITIONED_QUEUES =
+                "SELECT q.queue_name FROM queue q WHERE NOT EXISTS (SELECT 1 FROM pg_class c "
+                        + "WHERE c.relname = 'queue_message_' || md5(q.queue_name) AND pg_table_is_visible(c.oid))";
+        try {
+            List<String> queueNames =
+                    queryWithTransaction(
+                            GET_UNPARTITIONED_QUEUES, q -> q.executeScalarList(String.class));
+            for (String queueName : queueNames) {
+                withTransaction(
+                        tx -> {
+                            execute(tx, PARTITION_LOCK_TIMEOUT, Query::executeUpdate);
+                            query(
+                                    tx,
+                                    "SELECT queue_message_add_partition(?)",
+                                    q -> q.addParameter(queueName).executeScalar());
+                        });
             }
+        } catch (Exception e) {
+            logger.warn("Unable to add queue partitions, retrying in the next run", e);
         }
-        return poppedMessages;
     }
 
-    @Override
-    public boolean containsMessage(String queueName, String messageId) {
-        return getWithRetriedTransactions(tx -> existsMessage(tx, queueName, messageId));
+    /** Counts of all queues in the {@code queue} table, counting the queues not seen before. */
+    private Map<String, QueueCounts> getAllQueueCounts() {
+        if (queueCounts.isEmpty()) {
+            reconcileQueueCounts();
+        }
+        final String GET_QUEUES = "SELECT queue_name FROM queue";
+        List<String> queueNames =
+                queryWithTransaction(GET_QUEUES, q -> q.executeScalarList(String.class));
+        Map<String, QueueCounts> counts = new HashMap<>();
+        queueNames.forEach(queueName -> counts.put(queueName, getQueueCounts(queueName)));
+        return counts;
     }
 
+    private QueueCounts getQueueCounts(String queueName) {
+        QueueCounts counts = queueCounts.get(queueName);
+        if (counts != null) {
+            return counts;
+        }
+        final String COUNT_QUEUE =
+                "SELECT count(*) FILTER (WHERE popped = false) AS size, count(*) FILTER (WHERE popped = true) AS uacked FROM queue_message WHERE queue_name = ?";
+        counts =
+                queryWithTransaction(
+                        COUNT_QUEUE,
+                        q ->
+                                q.addParameter(queueName)
+                                        .executeAndFetch(
+                                                rs -> {
+                                                    rs.next();
+                                                    return new QueueCounts(
+                                                            rs.getLong("size"),
+                                                            rs.getLong("uacked"));
+                                                }));
+        QueueCounts previous = queueCounts.putIfAbsent(queueName, counts);
+        return previous != null ? previous : counts;
+    }
+
+    /**
+     * Applies the effect of a committed operation to the counts of {@literal queueName}. Queues
+     * that have not been counted yet are skipped, they are counted from the table on first use.
+     */
+    private void adjustQueueCounts(String queueName, long sizeDelta, long unackedDelta) {
+        if (queueSizeExact || (sizeDelta == 0 && unackedDelta == 0)) {
+            return;
+        }
+        QueueCounts counts = queueCounts.get(queueName);
+        if (counts != null) {
+            counts.add(sizeDelta, unackedDelta);
+        }
+    }
+
+    /**
+     * Only queues that were found in the table are remembered: a queue inserted here is not cached
+     * until a later check sees it committed, so a rolled back insert is never cached.
+     */
     private void createQueueIfNotExists(Connection connection, String queueName) {
+        if (knownQueues.contains(queueName)) {
+            Monitors.recordCounter("known_queue_cache", 1, "result", "hit");
+            return;
+        }
+        Monitors.recordCounter("known_queue_cache", 1, "result", "miss");
+
         logger.trace("Creating new queue '{}'", queueName);
         final String EXISTS_QUEUE =
                 "SELECT EXISTS(SELECT 1 FROM queue WHERE queue_name = ?) FOR SHARE";
         boolean exists = query(connection, EXISTS_QUEUE, q -> q.addParameter(queueName).exists());
-        if (!exists) {
+        if (exists) {
+            knownQueues.add(queueName);
+        } else {
             final String CREATE_QUEUE =
                     "INSERT INTO queue (queue_name) VALUES (?) ON CONFLICT (queue_name) DO NOTHING";
+            // with partitioning, the messages of a new queue go to the default partition until
+            // addQueuePartitions moves them, so that pushes never lock queue_message as a whole
             execute(connection, CREATE_QUEUE, q -> q.addParameter(queueName).executeUpdate());
         }
     }
 
-    private class QueueMessage {
-        public String queueName;
-        public String messageId;
+    private static class QueueCounts {
+
+        private final AtomicLong size;
+        private final AtomicLong unacked;
+
+        QueueCounts(long size, long unacked) {
+            this.size = new AtomicLong(size);
+            this.unacked = new AtomicLong(unacked);
+        }
+
+        long size() {
+            return Math.max(0, size.get());
+        }
+
+        long unacked() {
+            return Math.max(0, unacked.get());
+        }
+
+        void add(long sizeDelta, long unackedDelta) {
+            size.addAndGet(sizeDelta);
+            unacked.addAndGet(unackedDelta);
+        }
     }
 }
@@ -12,13 +12,7 @@
 package com.netflix.conductor.postgres.util;
 
 import java.sql.SQLException;
-import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
@@ -30,7 +24,10 @@ public class PostgresIndexQueryBuilder {
     private final int start;
     private final int count;
     private final List<String> sort;
-    private final List<Condition> conditions = new ArrayList<>();
+    private final List<String> predicates = new ArrayList<>();
+    private final List<Object> parameters = new ArrayList<>();
+    private final List<String> searchAfter;
+    private final List<String[]> keysetColumns;
 
     private static final String[] VALID_FIELDS = {
         "workflow_id",
@@ -42,155 +39,269 @@ public class PostgresIndexQueryBuilder {
         "task_type",
         "task_def_name",
         "update_time",
-        "json_data",
-        "to_tsvector(json_data::text)"
+        "json_data"
     };
 
     private static final String[] VALID_SORT_ORDER = {"ASC", "DESC"};
 
-    private static class Condition {
-        private String attribute;
-        private String operator;
-        private List<String> values;
-        private final String CONDITION_REGEX = "([a-zA-Z]+)\\s?(=|>|<|IN)\\s?(.*)";
-
-        public Condition() {}
-
-        public Condition(String query) {
-            Pattern conditionRegex = Pattern.compile(CONDITION_REGEX);
-            Matcher conditionMatcher = conditionRegex.matcher(query);
-            if (conditionMatcher.find()) {
-                String[] valueArr = conditionMatcher.group(3).replaceAll("[\"()]", "").split(",");
-                ArrayList<String> values = new ArrayList<>(Arrays.asList(valueArr));
-                this.attribute = camelToSnake(conditionMatcher.group(1));
-                this.values = values;
-                this.operator = getOperator(conditionMatcher.group(2));
-                if (this.attribute.endsWith("_time")) {
-                    values.set(0, millisToUtc(values.get(0)));
-                }
-            }
+    public PostgresIndexQueryBuilder(
+            String table, String query, String freeText, int start, int count, List<String> sort) {
+        this.table = table;
+        this.freeText = freeText;
+        this.start = start;
+        this.count = count;
+        this.sort = sort;
+        this.searchAfter = null;
+        this.keysetColumns = null;
+        this.parseQuery(query);
+        this.parseFreeText(freeText);
+    }
+
+    /**
+     * Builds a keyset paginated query, which returns the page after the row whose sort values are
+     * {@literal searchAfter} rather than skipping rows. The sort is completed with the id of the
+     * table so that rows are in a total order, and the query also selects the sort values to pass
+     * on to the next page.
+     *
+     * @param searchAfter The sort values of the last row of the previous page, or null for the
+     *     first page.
+     * @throws IllegalArgumentException If {@literal searchAfter} does not match the sort.
+     */
+    public PostgresIndexQueryBuilder(
+            String table,
+            String query,
+            String freeText,
+            int count,
+            List<String> sort,
+            List<String> searchAfter) {
+        this.table = table;
+        this.freeText = freeText;
+        this.start = 0;
+        this.count = count;
+        this.sort = sort;
+        this.searchAfter = searchAfter;
+        this.keysetColumns = getKeysetColumns();
+        if (searchAfter != null && searchAfter.size() != keysetColumns.size()) {
+            throw new IllegalArgumentException("The search cursor does not match the sort " + sort);
         }
+        this.parseQuery(query);
+        this.parseFreeText(freeText);
+    }
 
-        public String getQueryFragment() {
-            if (operator.equals("IN")) {
-                return attribute + " = ANY(?)";
-            } else if (operator.equals("@@")) {
-                return attribute + " @@ to_tsquery(?)";
-            } else if (operator.equals("@>")) {
-                return attribute + " @> ?::JSONB";
-            } else {
-                if (attribute.endsWith("_time")) {
-                    return attribute + " " + operator + " ?::TIMESTAMPTZ";
-                } else {
-                    return attribute + " " + operator + " ?";
-                }
+    public String getQuery() {
+        if (keysetColumns != null) {
+            List<String> predicates = new ArrayList<>(this.predicates);
+            if (searchAfter != null) {
+                predicates.add(getKeysetPredicate());
             }
+            return "SELECT json_data::TEXT, "
+                    + keysetColumns.stream()
+                            .map(c -> c[0] + "::TEXT")
+                            .collect(Collectors.joining(", "))
+                    + " FROM "
+                    + table
+                    + (predicates.isEmpty() ? "" : " WHERE " + String.join(" AND ", predicates))
+                    + " ORDER BY "
+                    + keysetColumns.stream()
+                            .map(c -> c[0] + " " + c[1])
+                            .collect(Collectors.joining(", "))
+                    + " LIMIT ?";
         }
+        return "SELECT json_data::TEXT FROM "
+                + table
+                + getWhereClause()
+                + getSort()
+                + " LIMIT ? OFFSET ?";
+    }
 
-        private String getOperator(String op) {
-            if (op.equals("IN") && values.size() == 1) {
-                return "=";
-            }
-            return op;
+    /**
+     * @return The number of sort values selected after json_data by a keyset paginated query.
+     */
+    public int getKeysetSize() {
+        return keysetColumns == null ? 0 : keysetColumns.size();
+    }
+
+    /**
+     * @return A query counting the matching rows, but no more than the limit taken as its last
+     *     parameter, see {@link #addCountParameters(Query, int)}.
+     */
+    public String getCountQuery() {
+        return "SELECT count(*) FROM (SELECT 1 FROM "
+                + table
+                + getWhereClause()
+                + " LIMIT ?) AS hits";
+    }
+
+    /**
+     * @return An EXPLAIN of the matching rows, whose JSON plan holds the planner's estimate of
+     *     their number.
+     */
+    public String getEstimateQuery() {
+        return "EXPLAIN (FORMAT JSON) SELECT 1 FROM " + table + getWhereClause();
+    }
+
+    /**
+     * @return A key identifying the rows matched by this query, regardless of sorting and paging.
+     */
+    public String getCountKey() {
+        StringBuilder key = new StringBuilder(table).append(getWhereClause());
+        for (Object parameter : parameters) {
+            key.append('\0').append(parameter);
         }
+        return key.toString();
+    }
 
-        public void addParameter(Query q) throws SQLException {
-            if (values.size() > 1) {
-                q.addParameter(values);
-            } else {
-                q.addParameter(values.get(0));
+    public void addParameters(Query q) throws SQLException {
+        addConditionParameters(q);
+        if (keysetColumns != null) {
+            if (searchAfter != null) {
+                for (int column : getKeysetParameterColumns()) {
+                    q.addParameter(searchAfter.get(column));
+                }
             }
+            q.addParameter(count);
+            return;
         }
+        q.addParameter(count);
+        q.addParameter(start);
+    }
 
-        private String millisToUtc(String millis) {
-            Long startTimeMilli = Long.parseLong(millis);
-            ZonedDateTime startDate =
-                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(startTimeMilli), ZoneOffset.UTC);
-            return DateTimeFormatter.ISO_DATE_TIME.format(startDate);
-        }
+    public void addCountParameters(Query q, int limit) throws SQLException {
+        addConditionParameters(q);
+        q.addParameter(limit);
+    }
 
-        private boolean isValid() {
-            return Arrays.asList(VALID_FIELDS).contains(attribute);
+    @SuppressWarnings("unchecked")
+    public void addConditionParameters(Query q) throws SQLException {
+        for (Object parameter : parameters) {
+            if (parameter instanceof List) {
+                q.addParameter((List<String>) parameter);
+            } else {
+                q.addParameter((String) parameter);
+            }
         }
+    }
 
-        public void setAttribute(String attribute) {
-            this.attribute = attribute;
+    private String getWhereClause() {
+        if (predicates.size() > 0) {
+            return " WHERE " + String.join(" AND ", predicates);
         }
+        return "";
+    }
 
-        public void setOperator(String operator) {
-            this.operator = operator;
+    /**
+     * A row comparison when all columns are sorted the same way, which an index on the columns can
+     * serve. Otherwise, one alternative per column: the columns before it are equal and it is past
+     * the last value.
+     */
+    private String getKeysetPredicate() {
+        if (isUniformSort()) {
+            String operator = keysetColumns.get(0)[1].equals("ASC") ? " > " : " < ";
+            return "("
+                    + keysetColumns.stream().map(c -> c[0]).collect(Collectors.joining(", "))
+                    + ")"
+                    + operator
+                    + "("
+                    + keysetColumns.stream()
+                            .map(c -> getKeysetPlaceholder(c[0]))
+                            .collect(Collectors.joining(", "))
+                    + ")";
+        }
+        List<String> alternatives = new ArrayList<>();
+        for (int k = 0; k < keysetColumns.size(); k++) {
+            List<String> terms = new ArrayList<>();
+            for (int i = 0; i < k; i++) {
+                String column = keysetColumns.get(i)[0];
+                terms.add(column + " = " + getKeysetPlaceholder(column));
+            }
+            String[] column = keysetColumns.get(k);
+            String operator = column[1].equals("ASC") ? " > " : " < ";
+            terms.add(column[0] + operator + getKeysetPlaceholder(column[0]));
+            alternatives.add("(" + String.join(" AND ", terms) + ")");
         }
+        return "(" + String.join(" OR ", alternatives) + ")";
+    }
 
-        public void setValues(List<String> values) {
-            this.values = values;
+    /** The index of the sort value bound to each placeholder of the keyset predicate. */
+    private List<Integer> getKeysetParameterColumns() {
+        List<Integer> columns = new ArrayList<>();
+        if (isUniformSort()) {
+            for (int i = 0; i < keysetColumns.size(); i++) {
+                columns.add(i);
+            }
+        } else {
+            for (int k = 0; k < keysetColumns.size(); k++) {
+                for (int i = 0; i <= k; i++) {
+                    columns.add(i);
+                }
+            }
         }
+        return columns;
     }
 
-    public PostgresIndexQueryBuilder(
-            String table, String query, String freeText, int start, int count, List<String> sort) {
-        this.table = table;
-        this.freeText = freeText;
-        this.start = start;
-        this.count = count;
-        this.sort = sort;
-        this.parseQuery(query);
-        this.parseFreeText(freeText);
+    private boolean isUniformSort() {
+        return keysetColumns.stream().allMatch(c -> c[1].equals(keysetColumns.get(0)[1]));
     }
 
-    public String getQuery() {
-        String queryString = "";
-        List<Condition> validConditions =
-                conditions.stream().filter(c -> c.isValid()).collect(Collectors.toList());
-        if (validConditions.size() > 0) {
-            queryString =
-                    " WHERE "
-                            + String.join(
-                                    " AND ",
-                                    validConditions.stream()
-                                            .map(c -> c.getQueryFragment())
-                                            .collect(Collectors.toList()));
-        }
-        return "SELECT json_data::TEXT FROM "
-                + table
-                + queryString
-                + getSort()
-                + " LIMIT ? OFFSET ?";
+    private static String getKeysetPlaceholder(String column) {
+        return column.endsWith("_time") ? "?::TIMESTAMPTZ" : "?";
     }
 
-    public void addParameters(Query q) throws SQLException {
-        for (Condition condition : conditions) {
-            condition.addParameter(q);
+    /**
+     * The valid sort columns, other than json_data, and their order, followed by the id of the
+     * table unless it is sorted on already. correlation_id may be null, which would drop rows from
+     * the comparisons, so it is sorted as an empty string instead.
+     */
+    private List<String[]> getKeysetColumns() {
+        String idColumn = table.startsWith("task") ? "task_id" : "workflow_id";
+        List<String[]> columns = new ArrayList<>();
+        boolean hasId = false;
+        for (String s : sort) {
+            String[] splitCond = s.split(":");
+            if (splitCond.length == 2) {
+                String attribute = PostgresIndexQueryCompiler.camelToSnake(splitCond[0]);
+                String order = splitCond[1].toUpperCase();
+                if (Arrays.asList(VALID_FIELDS).contains(attribute)
+                        && !attribute.equals("json_data")
+                        && Arrays.asList(VALID_SORT_ORDER).contains(order)) {
+                    hasId |= attribute.equals(idColumn);
+                    if (attribute.equals("correlation_id")) {
+                        attribute = "COALESCE(correlation_id, '')";
+                    }
+                    columns.add(new String[] {attribute, order});
+                }
+            }
         }
-        q.addParameter(count);
-        q.addParameter(start);
+        if (!hasId) {
+            columns.add(new String[] {idColumn, "ASC"});
+        }
+        return columns;
     }
 
+    /**
+     * @throws IllegalArgumentException If the query is not valid, see {@link
+     *     PostgresIndexQueryCompiler}.
+     */
     private void parseQuery(String query) {
         if (!StringUtils.isEmpty(query)) {
-            for (String s : query.split(" AND ")) {
-                conditions.add(new Condition(s));
-            }
-            Collections.sort(conditions, Comparator.comparing(Condition::getQueryFragment));
+            PostgresIndexQueryCompiler.Compiled compiled =
+                    PostgresIndexQueryCompiler.compile(query);
+            predicates.addAll(compiled.getPredicates());
+            parameters.addAll(compiled.getParameters());
         }
     }
 
     private void parseFreeText(String freeText) {
         if (!StringUtils.isEmpty(freeText) && !freeText.equals("*")) {
             if (freeText.startsWith("{") && freeText.endsWith("}")) {
-                Condition cond = new Condition();
-                cond.setAttribute("json_data");
-                cond.setOperator("@>");
-                String[] values = {freeText};
-                cond.setValues(Arrays.asList(values));
-                conditions.add(cond);
+                predicates.add("json_data @> ?::JSONB");
             } else {
-                Condition cond = new Condition();
-                cond.setAttribute("to_tsvector(json_data::text)");
-                cond.setOperator("@@");
-                String[] values = {freeText};
-                cond.setValues(Arrays.asList(values));
-                conditions.add(cond);
+                // the same configuration as the index on json_data, which only serves this
+                // expression
+                predicates.add(
+                        "to_tsvector('english', json_data::text) @@ to_tsquery('english', ?)");
             }
+            parameters.add(freeText);
         }
     }
 
@@ -199,7 +310,7 @@ public class PostgresIndexQueryBuilder {
         for (String s : sort) {
             String[] splitCond = s.split(":");
             if (splitCond.length == 2) {
-                String attribute = camelToSnake(splitCond[0]);
+                String attribute = PostgresIndexQueryCompiler.camelToSnake(splitCond[0]);
                 String order = splitCond[1].toUpperCase();
                 if (Arrays.asList(VALID_FIELDS).contains(attribute)
                         && Arrays.asList(VALID_SORT_ORDER).contains(order)) {
@@ -213,8 +324,4 @@ public class PostgresIndexQueryBuilder {
         }
         return "";
     }
-
-    private static String camelToSnake(String camel) {
-        return camel.replaceAll("\\B([A-Z])", "_$1").toLowerCase();
-    }
 }
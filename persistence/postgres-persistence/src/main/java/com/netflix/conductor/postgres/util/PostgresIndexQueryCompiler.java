@@ -0,0 +1,569 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.util;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Compiles search queries to parameterized SQL predicates on the index tables. Queries use the
+ * expression language of the Elasticsearch indexer:
+ *
+ * <pre>
+ * expression := term [ (AND | OR) expression ]
+ * term       := '(' expression ')' | name operator value
+ * operator   := '=' | '!=' | '<' | '>' | IN (v1,v2,...) | IS [not] null
+ *             | BETWEEN v1 AND v2 | STARTS_WITH
+ * </pre>
+ *
+ * <p>As there, AND and OR bind equally and group to the right, so {@code a AND b OR c} is {@code a
+ * AND (b OR c)}. Values may be quoted with {@code "} or {@code '}, and {@code *Time} values are
+ * epoch milliseconds.
+ *
+ * <p>A query is first split into tokens, which gives its shape: the query with each value replaced
+ * by a placeholder. The SQL compiled for a shape is cached, so repeated queries only differ in the
+ * values bound to it.
+ */
+class PostgresIndexQueryCompiler {
+
+    private static final int CACHE_SIZE = 1000;
+
+    private static final Set<String> FIELDS =
+            Set.of(
+                    "workflow_id",
+                    "correlation_id",
+                    "workflow_type",
+                    "start_time",
+                    "status",
+                    "task_id",
+                    "task_type",
+                    "task_def_name",
+                    "update_time");
+
+    private static final Cache<String, List<Fragment>> TEMPLATES =
+            CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    /** The compiled predicates of a query and the values to bind to them, in order. */
+    static class Compiled {
+        private final List<String> predicates = new ArrayList<>();
+        private final List<Object> parameters = new ArrayList<>();
+
+        /**
+         * @return The predicates, all of which must hold for a row to match.
+         */
+        List<String> getPredicates() {
+            return predicates;
+        }
+
+        /**
+         * @return The values bound to the predicates, a {@link String} or a {@link List} of them
+         *     for each placeholder.
+         */
+        List<Object> getParameters() {
+            return parameters;
+        }
+    }
+
+    /**
+     * @param query The search query.
+     * @return The query compiled to SQL.
+     * @throws IllegalArgumentException If the query is not valid or uses an unknown field.
+     */
+    static Compiled compile(String query) {
+        Tokens tokens = new Tokens(query);
+        List<Fragment> template = TEMPLATES.getIfPresent(tokens.shape);
+        if (template == null) {
+            template = new Parser(query, tokens.list).parse();
+            TEMPLATES.put(tokens.shape, template);
+        }
+        Compiled compiled = new Compiled();
+        for (Fragment fragment : template) {
+            compiled.predicates.add(fragment.sql);
+            for (Binding binding : fragment.bindings) {
+                compiled.parameters.add(binding.bind(tokens.values.get(binding.value)));
+            }
+        }
+        return compiled;
+    }
+
+    static long cacheSize() {
+        return TEMPLATES.size();
+    }
+
+    private enum TokenType {
+        NAME,
+        OPERATOR,
+        VALUE,
+        LIST,
+        NULL,
+        NOT_NULL,
+        AND,
+        OR,
+        OPEN,
+        CLOSE
+    }
+
+    private static class Token {
+        private final TokenType type;
+        private final String text;
+        private final int value;
+
+        private Token(TokenType type, String text, int value) {
+            this.type = type;
+            this.text = text;
+            this.value = value;
+        }
+
+        /** The token as it appears in the shape of the query. */
+        private String shape() {
+            switch (type) {
+                case NAME:
+                case OPERATOR:
+                    return text;
+                case VALUE:
+                    return "?";
+                case LIST:
+                    return text.equals("1") ? "(?)" : "(?,...)";
+                default:
+                    return type.name();
+            }
+        }
+    }
+
+    /**
+     * Splits a query into tokens. Values are kept apart from the tokens, which only refer to them,
+     * so that the tokens are the same for every query of a shape.
+     */
+    private static class Tokens {
+
+        private static final String[] SYMBOLS = {"!=", "=", "<", ">"};
+
+        private final String query;
+        private final List<Token> list = new ArrayList<>();
+        private final List<Object> values = new ArrayList<>();
+        private final String shape;
+        private int pos;
+
+        private Tokens(String query) {
+            this.query = query;
+            int depth = 0;
+            boolean term = true;
+            while (skipWhitespace()) {
+                if (term) {
+                    if (query.charAt(pos) == '(') {
+                        pos++;
+                        depth++;
+                        add(TokenType.OPEN, "(");
+                    } else {
+                        add(TokenType.NAME, readName());
+                        readComparison();
+                        term = false;
+                    }
+                } else if (query.charAt(pos) == ')') {
+                    if (--depth < 0) {
+                        throw invalid("unbalanced ')'");
+                    }
+                    pos++;
+                    add(TokenType.CLOSE, ")");
+                } else if (readKeyword("AND")) {
+                    add(TokenType.AND, "AND");
+                    term = true;
+                } else if (readKeyword("OR")) {
+                    add(TokenType.OR, "OR");
+                    term = true;
+                } else {
+                    throw invalid("expected AND or OR");
+                }
+            }
+            if (term && !list.isEmpty()) {
+                throw invalid("expected a condition");
+            }
+            if (depth > 0) {
+                throw invalid("missing ')'");
+            }
+            this.shape = list.stream().map(Token::shape).collect(Collectors.joining(" "));
+        }
+
+        private void readComparison() {
+            skipWhitespace();
+            for (String symbol : SYMBOLS) {
+                if (readSymbol(symbol)) {
+                    add(TokenType.OPERATOR, symbol);
+                    addValue(readValue());
+                    return;
+                }
+            }
+            if (readKeyword("IN")) {
+                add(TokenType.OPERATOR, "IN");
+                List<String> items = readList();
+                // a single value is compared with =, so the shape tells it apart
+                list.add(new Token(TokenType.LIST, items.size() == 1 ? "1" : "n", values.size()));
+                values.add(items.size() == 1 ? items.get(0) : items);
+            } else if (readKeyword("IS")) {
+                add(TokenType.OPERATOR, "IS");
+                if (readKeyword("null")) {
+                    add(TokenType.NULL, "null");
+                } else if (readKeyword("not") && readKeyword("null")) {
+                    add(TokenType.NOT_NULL, "not null");
+                } else {
+                    throw invalid("expected null or not null");
+                }
+            } else if (readKeyword("BETWEEN")) {
+                add(TokenType.OPERATOR, "BETWEEN");
+                addValue(readValue());
+                if (!readKeyword("AND")) {
+                    throw invalid("expected AND");
+                }
+                addValue(readValue());
+            } else if (readKeyword("STARTS_WITH")) {
+                add(TokenType.OPERATOR, "STARTS_WITH");
+                addValue(readValue());
+            } else {
+                throw invalid("expected an operator");
+            }
+        }
+
+        private String readName() {
+            int start = pos;
+            while (pos < query.length()
+                    && (Character.isLetterOrDigit(query.charAt(pos))
+                            || query.charAt(pos) == '_'
+                            || query.charAt(pos) == '.')) {
+                pos++;
+            }
+            if (pos == start) {
+                throw invalid("expected a field name");
+            }
+            return query.substring(start, pos);
+        }
+
+        /** A quoted value, in which a backslash escapes the next character, or a bare word. */
+        private String readValue() {
+            if (!skipWhitespace()) {
+                throw invalid("expected a value");
+            }
+            char quote = query.charAt(pos);
+            if (quote == '"' || quote == '\'') {
+                StringBuilder value = new StringBuilder();
+                for (pos++; pos < query.length(); pos++) {
+                    char c = query.charAt(pos);
+                    if (c == quote) {
+                        pos++;
+                        return value.toString();
+                    }
+                    if (c == '\\' && pos + 1 < query.length()) {
+                        c = query.charAt(++pos);
+                    }
+                    value.append(c);
+                }
+                throw invalid("unterminated string");
+            }
+            int start = pos;
+            while (pos < query.length()
+                    && !Character.isWhitespace(query.charAt(pos))
+                    && query.charAt(pos) != ')') {
+                pos++;
+            }
+            if (pos == start) {
+                throw invalid("expected a value");
+            }
+            return query.substring(start, pos);
+        }
+
+        private List<String> readList() {
+            skipWhitespace();
+            if (!readSymbol("(")) {
+                throw invalid("expected '('");
+            }
+            List<String> items = new ArrayList<>();
+            while (true) {
+                skipWhitespace();
+                if (pos < query.length()
+                        && (query.charAt(pos) == '"' || query.charAt(pos) == '\'')) {
+                    items.add(readValue());
+                } else {
+                    int start = pos;
+                    while (pos < query.length()
+                            && query.charAt(pos) != ','
+                            && query.charAt(pos) != ')') {
+                        pos++;
+                    }
+                    items.add(query.substring(start, pos).trim());
+                }
+                skipWhitespace();
+                if (readSymbol(")")) {
+                    return items;
+                }
+                if (!readSymbol(",")) {
+                    throw invalid("expected ',' or ')'");
+                }
+            }
+        }
+
+        /**
+         * Reads a case insensitive keyword, which must not be followed by a letter, digit or
+         * underscore.
+         */
+        private boolean readKeyword(String keyword) {
+            skipWhitespace();
+            int end = pos + keyword.length();
+            if (query.regionMatches(true, pos, keyword, 0, keyword.length())
+                    && (end == query.length()
+                            || !(Character.isLetterOrDigit(query.charAt(end))
+                                    || query.charAt(end) == '_'))) {
+                pos = end;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean readSymbol(String symbol) {
+            if (query.startsWith(symbol, pos)) {
+                pos += symbol.length();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return Whether there is anything left after the whitespace.
+         */
+        private boolean skipWhitespace() {
+            while (pos < query.length() && Character.isWhitespace(query.charAt(pos))) {
+                pos++;
+            }
+            return pos < query.length();
+        }
+
+        private void add(TokenType type, String text) {
+            list.add(new Token(type, text, -1));
+        }
+
+        private void addValue(String value) {
+            list.add(new Token(TokenType.VALUE, value, values.size()));
+            values.add(value);
+        }
+
+        private IllegalArgumentException invalid(String reason) {
+            return new IllegalArgumentException(
+                    "Invalid search query at position " + pos + ", " + reason + ": " + query);
+        }
+    }
+
+    /** How a value of the query is bound to a placeholder. */
+    private enum Conversion {
+        TEXT,
+        TIME,
+        LIST,
+        TIME_LIST,
+        PREFIX
+    }
+
+    private static class Binding {
+        private final Conversion conversion;
+        private final int value;
+
+        private Binding(Conversion conversion, int value) {
+            this.conversion = conversion;
+            this.value = value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object bind(Object value) {
+            switch (conversion) {
+                case TIME:
+                    return millisToUtc((String) value);
+                case LIST:
+                    return new ArrayList<>((List<String>) value);
+                case TIME_LIST:
+                    return ((List<String>) value)
+                            .stream()
+                                    .map(PostgresIndexQueryCompiler::millisToUtc)
+                                    .collect(Collectors.toList());
+                case PREFIX:
+                    return ((String) value).replaceAll("([\\\\%_])", "\\\\$1") + "%";
+                default:
+                    return value;
+            }
+        }
+    }
+
+    /** A part of the compiled SQL with the bindings of its placeholders, in order. */
+    private static class Fragment {
+        private final String sql;
+        private final List<Binding> bindings;
+
+        private Fragment(String sql, List<Binding> bindings) {
+            this.sql = sql;
+            this.bindings = bindings;
+        }
+    }
+
+    /**
+     * Compiles the tokens of a query. The terms of a conjunction are sorted by their SQL, so that
+     * queries that only differ in the order of their conditions run the same statement.
+     */
+    private static class Parser {
+
+        private final String query;
+        private final List<Token> tokens;
+        private int pos;
+
+        private Parser(String query, List<Token> tokens) {
+            this.query = query;
+            this.tokens = tokens;
+        }
+
+        /**
+         * @return The predicates of the query, which are the terms of a top level conjunction.
+         */
+        private List<Fragment> parse() {
+            if (tokens.isEmpty()) {
+                return List.of();
+            }
+            List<Fragment> terms = new ArrayList<>();
+            TokenType op = expression(terms);
+            if (op == TokenType.OR) {
+                return List.of(join(terms, op));
+            }
+            terms.sort(Comparator.comparing(f -> f.sql));
+            return terms;
+        }
+
+        /**
+         * Adds the terms of an expression to {@literal terms}, nested groups of the other operator
+         * as single terms.
+         *
+         * @return The operator joining the terms, AND if there is just one.
+         */
+        private TokenType expression(List<Fragment> terms) {
+            terms.add(term());
+            if (pos == tokens.size() || tokens.get(pos).type == TokenType.CLOSE) {
+                return TokenType.AND;
+            }
+            TokenType op = tokens.get(pos++).type;
+            List<Fragment> rest = new ArrayList<>();
+            TokenType restOp = expression(rest);
+            if (restOp == op || rest.size() == 1) {
+                terms.addAll(rest);
+            } else {
+                terms.add(join(rest, restOp));
+            }
+            return op;
+        }
+
+        private Fragment term() {
+            Token token = tokens.get(pos++);
+            if (token.type == TokenType.OPEN) {
+                List<Fragment> terms = new ArrayList<>();
+                TokenType op = expression(terms);
+                pos++;
+                return terms.size() == 1 ? terms.get(0) : join(terms, op);
+            }
+            String column = camelToSnake(token.text);
+            if (!FIELDS.contains(column)) {
+                throw new IllegalArgumentException(
+                        "Unsupported search field " + token.text + ": " + query);
+            }
+            return comparison(column, tokens.get(pos++).text);
+        }
+
+        private Fragment comparison(String column, String operator) {
+            boolean time = column.endsWith("_time");
+            String placeholder = time ? "?::TIMESTAMPTZ" : "?";
+            Conversion conversion = time ? Conversion.TIME : Conversion.TEXT;
+            List<Binding> bindings = new ArrayList<>();
+            String sql;
+            switch (operator) {
+                case "IN":
+                    Token list = tokens.get(pos++);
+                    if (list.text.equals("1")) {
+                        bindings.add(new Binding(conversion, list.value));
+                        sql = column + " = " + placeholder;
+                    } else {
+                        bindings.add(
+                                new Binding(
+                                        time ? Conversion.TIME_LIST : Conversion.LIST, list.value));
+                        sql = column + (time ? " = ANY(?::TIMESTAMPTZ[])" : " = ANY(?)");
+                    }
+                    break;
+                case "IS":
+                    sql =
+                            column
+                                    + (tokens.get(pos++).type == TokenType.NULL
+                                            ? " IS NULL"
+                                            : " IS NOT NULL");
+                    break;
+                case "BETWEEN":
+                    bindings.add(new Binding(conversion, tokens.get(pos++).value));
+                    bindings.add(new Binding(conversion, tokens.get(pos++).value));
+                    sql = column + " BETWEEN " + placeholder + " AND " + placeholder;
+                    break;
+                case "STARTS_WITH":
+                    if (time) {
+                        throw new IllegalArgumentException(
+                                "STARTS_WITH is not supported on " + column + ": " + query);
+                    }
+                    bindings.add(new Binding(Conversion.PREFIX, tokens.get(pos++).value));
+                    sql = column + " LIKE ?";
+                    break;
+                case "!=":
+                    // unlike <>, also matches rows where the column is null
+                    bindings.add(new Binding(conversion, tokens.get(pos++).value));
+                    sql = column + " IS DISTINCT FROM " + placeholder;
+                    break;
+                default:
+                    bindings.add(new Binding(conversion, tokens.get(pos++).value));
+                    sql = column + " " + operator + " " + placeholder;
+            }
+            return new Fragment(sql, bindings);
+        }
+
+        private static Fragment join(List<Fragment> terms, TokenType op) {
+            if (op == TokenType.AND) {
+                terms.sort(Comparator.comparing(f -> f.sql));
+            }
+            List<Binding> bindings = new ArrayList<>();
+            List<String> sql = new ArrayList<>();
+            for (Fragment term : terms) {
+                bindings.addAll(term.bindings);
+                sql.add(term.sql);
+            }
+            return new Fragment("(" + String.join(" " + op.name() + " ", sql) + ")", bindings);
+        }
+    }
+
+    private static String millisToUtc(String millis) {
+        try {
+            ZonedDateTime time =
+                    ZonedDateTime.ofInstant(
+                            Instant.ofEpochMilli(Long.parseLong(millis)), ZoneOffset.UTC);
+            return DateTimeFormatter.ISO_DATE_TIME.format(time);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a time in epoch milliseconds: " + millis, e);
+        }
+    }
+
+    static String camelToSnake(String camel) {
+        return camel.replaceAll("\\B([A-Z])", "_$1").toLowerCase();
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.util;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Wakes up queue pollers when messages are pushed, using Postgres {@code LISTEN/NOTIFY}.
+ *
+ * <p>Every queue maps to its own notification channel (see {@link #channelName(String)}). A single
+ * dedicated connection, taken from the {@link DataSource} for the lifetime of the listener,
+ * subscribes to the channels of the queues that are being polled on this node and signals only the
+ * pollers waiting on the queue that was notified. A queue is only tracked while it has pollers, so
+ * that queues that are no longer polled do not accumulate.
+ */
+public class PostgresQueueListener implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgresQueueListener.class);
+
+    private static final String CHANNEL_PREFIX = "conductor_queue_";
+    private static final int LISTEN_TIMEOUT_MS = 250;
+    private static final long UNLISTEN_INTERVAL_MS = 60_000;
+
+    private final DataSource dataSource;
+    private final ConcurrentHashMap<String, QueueSignal> signals = new ConcurrentHashMap<>();
+    private final ExecutorService executorService;
+
+    /** Channels the current connection is subscribed to; only accessed by the listener thread. */
+    private final Set<String> listening = new HashSet<>();
+
+    private volatile boolean running = true;
+    private Connection connection;
+    private long lastUnlisten = System.currentTimeMillis();
+
+    public PostgresQueueListener(DataSource dataSource) {
+        this.dataSource = dataSource;
+        this.executorService =
+                Executors.newSingleThreadExecutor(
+                        ExecutorsUtil.newNamedThreadFactory("postgres-queue-listener-"));
+        this.executorService.submit(this::listen);
+    }
+
+    /**
+     * Channel names are derived from a hash of the queue name so that arbitrary queue names yield
+     * valid, bounded-length identifiers.
+     *
+     * @param queueName The queue name.
+     * @return The notification channel for {@literal queueName}.
+     */
+    public static String channelName(String queueName) {
+        return CHANNEL_PREFIX + Hashing.murmur3_128().hashString(queueName, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Subscribes a poller to notifications for {@literal queueName}. Every call has to be followed
+     * by a call to {@link #unsubscribe(String)} once the poller stops waiting.
+     *
+     * @param queueName The queue name.
+     */
+    public void subscribe(String queueName) {
+        signals.compute(
+                channelName(queueName),
+                (channel, signal) -> {
+                    signal = signal == null ? new QueueSignal() : signal;
+                    signal.pollers++;
+                    return signal;
+                });
+    }
+
+    /**
+     * Unsubscribes a poller from notifications for {@literal queueName}, and stops tracking the
+     * queue once it has no pollers left.
+     *
+     * @param queueName The queue name.
+     */
+    public void unsubscribe(String queueName) {
+        signals.computeIfPresent(
+                channelName(queueName), (channel, signal) -> --signal.pollers == 0 ? null : signal);
+    }
+
+    /**
+     * Returns the current signal version of {@literal queueName}, which has to be subscribed to.
+     * The version should be read <em>before</em> checking the queue, and then be passed to {@link
+     * #await(String, long, long)}, so that a push that commits in between is not missed.
+     *
+     * @param queueName The queue name.
+     * @return The current signal version of the queue.
+     */
+    public long version(String queueName) {
+        return signal(queueName).version();
+    }
+
+    /**
+     * Blocks until {@literal queueName} is notified after {@literal version}, or {@literal
+     * maxWaitMs} elapses.
+     *
+     * @param queueName The queue name.
+     * @param version The version returned by {@link #version(String)}.
+     * @param maxWaitMs The maximum time to wait in milliseconds.
+     */
+    public void await(String queueName, long version, long maxWaitMs) {
+        signal(queueName).await(version, maxWaitMs);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        executorService.shutdownNow();
+        try {
+            if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
+                LOGGER.warn("Queue listener did not stop within 5 seconds");
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        signals.values().forEach(QueueSignal::signal);
+    }
+
+    private QueueSignal signal(String queueName) {
+        QueueSignal signal = signals.get(channelName(queueName));
+        if (signal == null) {
+            throw new IllegalStateException("Queue " + queueName + " is not subscribed to");
+        }
+        return signal;
+    }
+
+    private void listen() {
+        while (running) {
+            try {
+                if (connection == null) {
+                    connect();
+                }
+                listenToSubscribed();
+                PGNotification[] notifications =
+                        connection.unwrap(PGConnection.class).getNotifications(LISTEN_TIMEOUT_MS);
+                if (notifications != null) {
+                    for (PGNotification notification : notifications) {
+                        QueueSignal signal = signals.get(notification.getName());
+                        if (signal != null) {
+                            signal.signal();
+                        }
+                    }
+                }
+            } catch (Exception ex) {
+                if (!running) {
+                    break;
+                }
+                LOGGER.warn("Queue listener connection failed, reconnecting", ex);
+                disconnect();
+                // pollers may have missed notifications while we were disconnected
+                signals.values().forEach(QueueSignal::signal);
+                Uninterruptibles.sleepUninterruptibly(1, TimeUnit.SECONDS);
+            }
+        }
+        disconnect();
+    }
+
+    private void connect() throws SQLException {
+        connection = dataSource.getConnection();
+        connection.setAutoCommit(true);
+        listening.clear();
+    }
+
+    private void listenToSubscribed() throws SQLException {
+        for (String channel : signals.keySet()) {
+            if (!listening.contains(channel)) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                listening.add(channel);
+            }
+        }
+        // stop listening to queues that are no longer polled, but not right away, as most of them
+        // are polled again shortly
+        if (System.currentTimeMillis() - lastUnlisten >= UNLISTEN_INTERVAL_MS) {
+            Iterator<String> channels = listening.iterator();
+            while (channels.hasNext()) {
+                String channel = channels.next();
+                if (!signals.containsKey(channel)) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("UNLISTEN " + channel);
+                    }
+                    channels.remove();
+                }
+            }
+            lastUnlisten = System.currentTimeMillis();
+        }
+    }
+
+    private void disconnect() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            LOGGER.debug("Error closing queue listener connection: {}", ex.getMessage());
+        }
+        connection = null;
+    }
+
+    private static class QueueSignal {
+
+        /** Number of pollers subscribed, only changed while the map entry is being computed. */
+        private int pollers;
+
+        private long version;
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized void signal() {
+            version++;
+            notifyAll();
+        }
+
+        synchronized void await(long seen, long maxWaitMs) {
+            long deadline = System.currentTimeMillis() + maxWaitMs;
+            long remaining = maxWaitMs;
+            while (version == seen && remaining > 0) {
+                try {
+                    wait(remaining);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+}
@@ -12,9 +12,11 @@
 package com.netflix.conductor.postgres.util;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.*;
 import java.sql.Date;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.math.NumberUtils;
@@ -25,6 +27,7 @@ import com.netflix.conductor.core.exception.NonTransientException;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
  * Represents a {@link PreparedStatement} that is wrapped with convenience methods and utilities.
@@ -36,6 +39,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public class Query implements AutoCloseable {
 
+    /**
+     * {@link ObjectReader}s by {@link ObjectMapper} and target type, so that the root deserializer
+     * of a type is only looked up once.
+     */
+    private static final Map<ObjectMapper, Map<Class<?>, ObjectReader>> READERS =
+            new ConcurrentHashMap<>();
+
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
     /** The {@link ObjectMapper} instance to use for serializing/deserializing JSON. */
@@ -94,6 +104,20 @@ public class Query implements AutoCloseable {
         return addParameterInternal((ps, idx) -> ps.setArray(idx, valueArray));
     }
 
+    /**
+     * Bind the given values to the PreparedStatement as a SQL array, e.g. to be expanded with
+     * {@code unnest(?)} or matched with {@code = ANY(?)}.
+     *
+     * @param typeName The SQL type name of the array elements.
+     * @param values The values to bind, in order.
+     * @return {@literal this}
+     */
+    public Query addArrayParameter(final String typeName, final Collection<?> values)
+            throws SQLException {
+        Array valueArray = this.connection.createArrayOf(typeName, values.toArray());
+        return addParameterInternal((ps, idx) -> ps.setArray(idx, valueArray));
+    }
+
     public Query addParameter(final int value) {
         return addParameterInternal((ps, idx) -> ps.setInt(idx, value));
     }
@@ -118,6 +142,10 @@ public class Query implements AutoCloseable {
         return addParameterInternal((ps, idx) -> ps.setTimestamp(idx, timestamp));
     }
 
+    public Query addParameter(final byte[] value) {
+        return addParameterInternal((ps, idx) -> ps.setBytes(idx, value));
+    }
+
     /**
      * Serializes {@literal value} to a JSON string for persistence.
      *
@@ -128,6 +156,22 @@ public class Query implements AutoCloseable {
         return addParameter(toJson(value));
     }
 
+    /**
+     * Binds {@literal value} to a {@code json_data, json_data_bin} column pair, encoded as
+     * {@literal codec} says. The other column is bound to {@code NULL}, so that an update does not
+     * leave a stale copy behind.
+     *
+     * @param codec The codec to encode with.
+     * @param value The value to encode.
+     * @return {@literal this}
+     */
+    public Query addDataParameters(JsonDataCodec codec, Object value) {
+        if (codec.isBinary()) {
+            return addParameter((String) null).addParameter(codec.encode(value));
+        }
+        return addParameter(toJson(value)).addParameter((byte[]) null);
+    }
+
     /**
      * Bind the given {@link java.util.Date} to the PreparedStatement as a {@link Date}.
      *
@@ -387,6 +431,16 @@ public class Query implements AutoCloseable {
      * @return An instance of {@literal <V>} from the result set.
      */
     public <V> V executeAndFetchFirst(Class<V> returnType) {
+        if (isJsonType(returnType)) {
+            try (ResultSet rs = executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return readJson(rs.getBinaryStream(1), returnType);
+            } catch (SQLException ex) {
+                throw new NonTransientException(ex.getMessage(), ex);
+            }
+        }
         Object o = executeScalar();
         if (null == o) {
             return null;
@@ -407,8 +461,12 @@ public class Query implements AutoCloseable {
     public <V> List<V> executeAndFetch(Class<V> returnType) {
         try (ResultSet rs = executeQuery()) {
             List<V> list = new ArrayList<>();
+            boolean json = isJsonType(returnType);
             while (rs.next()) {
-                list.add(convert(rs.getObject(1), returnType));
+                list.add(
+                        json
+                                ? readJson(rs.getBinaryStream(1), returnType)
+                                : convert(rs.getObject(1), returnType));
             }
             return list;
         } catch (SQLException ex) {
@@ -456,6 +514,72 @@ public class Query implements AutoCloseable {
         }
     }
 
+    /**
+     * Deserialize the JSON in column {@literal columnLabel} of the current row of {@literal rs}.
+     * The JSON is parsed straight from the bytes of the column, without decoding it into a {@link
+     * String} first.
+     *
+     * @param rs The {@link ResultSet}, positioned at a row.
+     * @param columnLabel The label of the column holding the JSON.
+     * @param returnType The type to deserialize to.
+     * @param <V> The type parameter.
+     * @return The deserialized value, or {@code null} if the column is {@code NULL}.
+     */
+    public <V> V readJson(ResultSet rs, String columnLabel, Class<V> returnType)
+            throws SQLException {
+        return readJson(rs.getBinaryStream(columnLabel), returnType);
+    }
+
+    /**
+     * Reads the value of the current row of {@literal rs} from its {@code json_data_bin} column if
+     * that is set, or else from its {@code json_data} column.
+     *
+     * @param rs The {@link ResultSet}, positioned at a row.
+     * @param returnType The type to deserialize to.
+     * @param <V> The type parameter.
+     * @return The deserialized value, or {@code null} if both columns are {@code NULL}.
+     * @see JsonDataCodec
+     */
+    public <V> V readData(ResultSet rs, Class<V> returnType) throws SQLException {
+        InputStream data = rs.getBinaryStream("json_data_bin");
+        if (null != data) {
+            return JsonDataCodec.decode(readerFor(returnType), data);
+        }
+        return readJson(rs, "json_data", returnType);
+    }
+
+    /**
+     * Like {@link #executeAndFetchFirst(Class)}, for queries selecting a {@code json_data,
+     * json_data_bin} column pair.
+     *
+     * @see #readData(ResultSet, Class)
+     */
+    public <V> V executeAndFetchFirstData(Class<V> returnType) {
+        try (ResultSet rs = executeQuery()) {
+            return rs.next() ? readData(rs, returnType) : null;
+        } catch (SQLException ex) {
+            throw new NonTransientException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Like {@link #executeAndFetch(Class)}, for queries selecting a {@code json_data,
+     * json_data_bin} column pair.
+     *
+     * @see #readData(ResultSet, Class)
+     */
+    public <V> List<V> executeAndFetchData(Class<V> returnType) {
+        try (ResultSet rs = executeQuery()) {
+            List<V> list = new ArrayList<>();
+            while (rs.next()) {
+                list.add(readData(rs, returnType));
+            }
+            return list;
+        } catch (SQLException ex) {
+            throw new NonTransientException(ex.getMessage(), ex);
+        }
+    }
+
     @Override
     public void close() {
         try {
@@ -618,6 +742,33 @@ public class Query implements AutoCloseable {
         }
     }
 
+    /** Types that {@link #convert(Object, Class)} reads from JSON rather than a scalar column. */
+    protected boolean isJsonType(Class<?> type) {
+        return Boolean.class != type
+                && Integer.class != type
+                && Long.class != type
+                && Double.class != type
+                && String.class != type;
+    }
+
+    protected <V> V readJson(InputStream json, Class<V> returnType) {
+        if (null == json) {
+            return null;
+        }
+
+        try (json) {
+            return readerFor(returnType).readValue(json);
+        } catch (IOException ex) {
+            throw new NonTransientException(
+                    "Could not convert JSON to " + returnType.getName(), ex);
+        }
+    }
+
+    protected ObjectReader readerFor(Class<?> type) {
+        return READERS.computeIfAbsent(objectMapper, mapper -> new ConcurrentHashMap<>())
+                .computeIfAbsent(type, objectMapper::readerFor);
+    }
+
     protected <V> V fromJson(String value, Class<V> returnType) {
         if (null == value) {
             return null;
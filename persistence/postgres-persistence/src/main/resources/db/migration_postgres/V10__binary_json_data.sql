@@ -0,0 +1,4 @@
+-- optional binary encoding of workflow and task documents, see JsonDataCodec;
+-- a row holds its document in exactly one of json_data and json_data_bin
+ALTER TABLE workflow ALTER COLUMN json_data DROP NOT NULL, ADD COLUMN json_data_bin BYTEA;
+ALTER TABLE task ALTER COLUMN json_data DROP NOT NULL, ADD COLUMN json_data_bin BYTEA;
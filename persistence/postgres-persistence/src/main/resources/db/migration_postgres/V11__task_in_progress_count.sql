@@ -0,0 +1,40 @@
+-- number of in progress tasks per task definition, maintained by the triggers below, so that the concurrency
+-- limit check reads one row instead of counting task_in_progress
+CREATE TABLE task_in_progress_count (
+  task_def_name varchar(255) NOT NULL,
+  in_progress_count integer NOT NULL DEFAULT 0,
+  PRIMARY KEY (task_def_name)
+);
+
+INSERT INTO task_in_progress_count (task_def_name, in_progress_count)
+SELECT task_def_name, count(*) FROM task_in_progress WHERE in_progress_status = true GROUP BY task_def_name;
+
+CREATE OR REPLACE FUNCTION task_in_progress_count_update() RETURNS trigger AS $$
+BEGIN
+  IF TG_OP <> 'INSERT' THEN
+    IF OLD.in_progress_status THEN
+      UPDATE task_in_progress_count SET in_progress_count = in_progress_count - 1
+      WHERE task_def_name = OLD.task_def_name;
+    END IF;
+  END IF;
+  IF TG_OP <> 'DELETE' THEN
+    IF NEW.in_progress_status THEN
+      INSERT INTO task_in_progress_count (task_def_name, in_progress_count) VALUES (NEW.task_def_name, 1)
+      ON CONFLICT (task_def_name) DO UPDATE SET in_progress_count = task_in_progress_count.in_progress_count + 1;
+    END IF;
+  END IF;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER task_in_progress_count_insert_delete
+AFTER INSERT OR DELETE ON task_in_progress
+FOR EACH ROW EXECUTE PROCEDURE task_in_progress_count_update();
+
+CREATE TRIGGER task_in_progress_count_update
+AFTER UPDATE OF in_progress_status ON task_in_progress
+FOR EACH ROW WHEN (OLD.in_progress_status IS DISTINCT FROM NEW.in_progress_status)
+EXECUTE PROCEDURE task_in_progress_count_update();
+
+-- the first tasks of a task definition in order of arrival, which are the ones admitted by its concurrency limit
+CREATE INDEX task_in_progress_arrival_idx ON task_in_progress (task_def_name, created_on, task_id);
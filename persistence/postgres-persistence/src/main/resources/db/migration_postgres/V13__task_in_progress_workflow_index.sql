@@ -0,0 +1,2 @@
+-- lets the removal of workflows delete their in progress tasks by workflow id
+CREATE INDEX IF NOT EXISTS task_in_progress_workflow_id_idx ON task_in_progress (workflow_id);
@@ -0,0 +1,5 @@
+-- expiry time of workflows removed with a TTL, see PostgresExecutionDAO.removeWorkflowWithExpiry;
+-- only the few rows with an expiry are indexed
+ALTER TABLE workflow ADD COLUMN expires_at TIMESTAMP NULL;
+
+CREATE INDEX workflow_expires_at_idx ON workflow (expires_at) WHERE expires_at IS NOT NULL;
@@ -0,0 +1,5 @@
+-- lets searches paged by cursor seek straight to the next page for the usual sorts, with the id
+-- as the tiebreaker
+CREATE INDEX IF NOT EXISTS workflow_index_start_time_workflow_id_idx ON workflow_index (start_time, workflow_id);
+CREATE INDEX IF NOT EXISTS task_index_start_time_task_id_idx ON task_index (start_time, task_id);
+CREATE INDEX IF NOT EXISTS task_index_update_time_task_id_idx ON task_index (update_time, task_id);
@@ -0,0 +1,11 @@
+-- V8 created the task_index full text indexes on workflow_index, so task searches could not use them
+DROP INDEX IF EXISTS task_index_json_data_json_idx;
+DROP INDEX IF EXISTS task_index_json_data_text_idx;
+
+-- JSON searches match documents with @>, which a jsonb_to_tsvector index cannot serve
+DROP INDEX IF EXISTS workflow_index_json_data_json_idx;
+CREATE INDEX IF NOT EXISTS workflow_index_json_data_json_idx ON workflow_index USING gin(json_data jsonb_path_ops);
+CREATE INDEX IF NOT EXISTS task_index_json_data_json_idx ON task_index USING gin(json_data jsonb_path_ops);
+
+-- workflow_index_json_data_text_idx from V8 is on the right table already
+CREATE INDEX IF NOT EXISTS task_index_json_data_text_idx ON task_index USING gin(to_tsvector('english', json_data::text));
@@ -0,0 +1,51 @@
+-- maintain task_in_progress_count once per statement instead of once per row: a batched insert or delete of
+-- task_in_progress changes each count row once, and always in the order of task_def_name, so that transactions
+-- touching the same task definitions in a different order cannot deadlock on the count rows
+DROP TRIGGER task_in_progress_count_insert_delete ON task_in_progress;
+DROP TRIGGER task_in_progress_count_update ON task_in_progress;
+DROP FUNCTION task_in_progress_count_update();
+
+CREATE OR REPLACE FUNCTION task_in_progress_count_apply() RETURNS trigger AS $$
+BEGIN
+  IF TG_OP = 'INSERT' THEN
+    INSERT INTO task_in_progress_count (task_def_name, in_progress_count)
+    SELECT task_def_name, count(*) FROM new_rows WHERE in_progress_status
+    GROUP BY task_def_name ORDER BY task_def_name
+    ON CONFLICT (task_def_name) DO UPDATE
+    SET in_progress_count = task_in_progress_count.in_progress_count + EXCLUDED.in_progress_count;
+  ELSIF TG_OP = 'DELETE' THEN
+    INSERT INTO task_in_progress_count (task_def_name, in_progress_count)
+    SELECT task_def_name, -count(*) FROM old_rows WHERE in_progress_status
+    GROUP BY task_def_name ORDER BY task_def_name
+    ON CONFLICT (task_def_name) DO UPDATE
+    SET in_progress_count = task_in_progress_count.in_progress_count + EXCLUDED.in_progress_count;
+  ELSE
+    INSERT INTO task_in_progress_count (task_def_name, in_progress_count)
+    SELECT d.task_def_name, d.delta FROM (
+      SELECT n.task_def_name, sum(CASE WHEN n.in_progress_status THEN 1 ELSE -1 END) AS delta
+      FROM new_rows n JOIN old_rows o ON o.task_def_name = n.task_def_name AND o.task_id = n.task_id
+      WHERE o.in_progress_status IS DISTINCT FROM n.in_progress_status
+      GROUP BY n.task_def_name
+    ) d WHERE d.delta <> 0 ORDER BY d.task_def_name
+    ON CONFLICT (task_def_name) DO UPDATE
+    SET in_progress_count = task_in_progress_count.in_progress_count + EXCLUDED.in_progress_count;
+  END IF;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- a trigger with transition tables can only fire on a single event, and not on a column list
+CREATE TRIGGER task_in_progress_count_insert
+AFTER INSERT ON task_in_progress
+REFERENCING NEW TABLE AS new_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE task_in_progress_count_apply();
+
+CREATE TRIGGER task_in_progress_count_delete
+AFTER DELETE ON task_in_progress
+REFERENCING OLD TABLE AS old_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE task_in_progress_count_apply();
+
+CREATE TRIGGER task_in_progress_count_update
+AFTER UPDATE ON task_in_progress
+REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+FOR EACH STATEMENT EXECUTE PROCEDURE task_in_progress_count_apply();
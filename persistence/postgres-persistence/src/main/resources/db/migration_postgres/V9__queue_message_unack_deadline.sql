@@ -0,0 +1,7 @@
+-- deadline after which a popped, un-acknowledged message is made visible again
+ALTER TABLE queue_message ADD COLUMN unack_deadline TIMESTAMP;
+
+-- messages popped before this migration keep the previous 60 seconds visibility timeout
+UPDATE queue_message SET unack_deadline = deliver_on + interval '60 seconds' WHERE popped = true;
+
+CREATE INDEX queue_message_unack_deadline_idx ON queue_message (unack_deadline) WHERE popped = true;
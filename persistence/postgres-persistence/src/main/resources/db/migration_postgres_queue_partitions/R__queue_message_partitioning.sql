@@ -0,0 +1,82 @@
+-- --------------------------------------------------------------------------------------------------------------
+-- OPTIONAL: LIST PARTITIONING OF queue_message BY queue_name
+-- Always applied, but only partitions queue_message when conductor.postgres.queuePartitioningEnabled=true, which
+-- Flyway passes in as the queuePartitioningEnabled placeholder. Runs after all versioned migrations and is
+-- idempotent, so it can be enabled on an existing database. It cannot be undone: with the setting turned off
+-- again queue_message stays partitioned, but new queues are no longer moved out of its default partition.
+-- --------------------------------------------------------------------------------------------------------------
+
+-- Gives p_queue_name its own partition of queue_message, moving its messages out of the default partition.
+-- It locks all of queue_message, so the DAO calls it from a background job rather than when a queue is created.
+-- With p_hash_partitions > 0 the queue partition is itself hash partitioned on message_id into that many
+-- sub-partitions, which is meant for very large queues; an existing plain partition is re-created that way.
+CREATE OR REPLACE FUNCTION queue_message_add_partition(p_queue_name varchar, p_hash_partitions integer DEFAULT 0)
+RETURNS void AS $$
+DECLARE
+  part_name text := 'queue_message_' || md5(p_queue_name);
+  moving_name text := 'queue_message_moving_' || md5(p_queue_name);
+  part_oid oid;
+  sub_partitions integer := 0;
+BEGIN
+  LOCK TABLE queue_message IN ACCESS EXCLUSIVE MODE;
+
+  SELECT c.oid INTO part_oid FROM pg_class c WHERE c.relname = part_name AND pg_table_is_visible(c.oid);
+  IF part_oid IS NOT NULL THEN
+    SELECT count(*) INTO sub_partitions FROM pg_inherits WHERE inhparent = part_oid;
+    IF p_hash_partitions <= 0 OR sub_partitions = p_hash_partitions THEN
+      RETURN;
+    END IF;
+  END IF;
+
+  -- the messages are kept in a temporary table of this session while the partition is re-created
+  EXECUTE format('CREATE TEMP TABLE %I ON COMMIT DROP AS SELECT * FROM queue_message WHERE queue_name = %L',
+                 moving_name, p_queue_name);
+  IF part_oid IS NOT NULL THEN
+    EXECUTE format('ALTER TABLE queue_message DETACH PARTITION %I', part_name);
+    EXECUTE format('DROP TABLE %I', part_name);
+  ELSE
+    DELETE FROM queue_message WHERE queue_name = p_queue_name;
+  END IF;
+
+  IF p_hash_partitions > 0 THEN
+    EXECUTE format('CREATE TABLE %I PARTITION OF queue_message FOR VALUES IN (%L) PARTITION BY HASH (message_id)',
+                   part_name, p_queue_name);
+    FOR i IN 0 .. p_hash_partitions - 1 LOOP
+      EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES WITH (MODULUS %s, REMAINDER %s)',
+                     part_name || '_' || i, part_name, p_hash_partitions, i);
+    END LOOP;
+  ELSE
+    EXECUTE format('CREATE TABLE %I PARTITION OF queue_message FOR VALUES IN (%L)', part_name, p_queue_name);
+  END IF;
+
+  EXECUTE format('INSERT INTO queue_message SELECT * FROM pg_temp.%I', moving_name);
+  EXECUTE format('DROP TABLE pg_temp.%I', moving_name);
+END;
+$$ LANGUAGE plpgsql;
+
+-- Re-creates queue_message as a list partitioned table with a default partition. The indexes below must
+-- mirror the ones the versioned migrations define on queue_message.
+DO $$
+DECLARE
+  q record;
+BEGIN
+  IF '${queuePartitioningEnabled}' <> 'true' THEN
+    RETURN;
+  END IF;
+
+  IF NOT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'queue_message'::regclass) THEN
+    ALTER TABLE queue_message RENAME TO queue_message_unpartitioned;
+    CREATE TABLE queue_message (LIKE queue_message_unpartitioned INCLUDING DEFAULTS) PARTITION BY LIST (queue_name);
+    CREATE TABLE queue_message_default PARTITION OF queue_message DEFAULT;
+    INSERT INTO queue_message SELECT * FROM queue_message_unpartitioned;
+    DROP TABLE queue_message_unpartitioned;
+
+    ALTER TABLE queue_message ADD PRIMARY KEY (queue_name, message_id);
+    CREATE INDEX combo_queue_message ON queue_message USING btree (queue_name, priority desc, popped, deliver_on, created_on);
+    CREATE INDEX queue_message_unack_deadline_idx ON queue_message (unack_deadline) WHERE popped = true;
+
+    FOR q IN SELECT queue_name FROM queue LOOP
+      PERFORM queue_message_add_partition(q.queue_name);
+    END LOOP;
+  END IF;
+END $$;
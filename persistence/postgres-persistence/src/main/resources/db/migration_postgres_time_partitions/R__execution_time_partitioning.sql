@@ -0,0 +1,221 @@
+-- --------------------------------------------------------------------------------------------------------------
+-- OPTIONAL: RANGE PARTITIONING OF workflow, task, workflow_to_task AND workflow_def_to_workflow BY CREATION TIME
+-- Always applied, but only partitions the tables when conductor.postgres.timePartitioningEnabled=true, which
+-- Flyway passes in as the timePartitioningEnabled placeholder. Runs after all versioned migrations and is
+-- idempotent, so it can be enabled on an existing database. It cannot be undone: with the setting turned off
+-- again the tables stay partitioned, but servers no longer create or drop partitions and new rows go to the
+-- default partitions.
+-- workflow, task and workflow_to_task are partitioned by created_on, workflow_def_to_workflow by date_str (the
+-- workflow's creation day as yyyyMMdd). Partitions are named <table>_p<first day>_<day after the last day>,
+-- e.g. workflow_p20240101_20240108. Rows that no partition covers go to <table>_default.
+-- --------------------------------------------------------------------------------------------------------------
+
+-- Creates the partitions of all four tables, p_span_days days each and aligned on the epoch, from the oldest
+-- row still in a default partition (or today) through p_until, and moves those rows into them. Ranges that
+-- overlap an existing partition, e.g. one created with another span, are skipped.
+CREATE OR REPLACE FUNCTION execution_add_partitions(p_until date, p_span_days integer)
+RETURNS integer AS $$
+DECLARE
+  oldest date;
+  day date;
+  t text;
+  part_key text;
+  part_name text;
+  lower_bound text;
+  upper_bound text;
+  created integer := 0;
+BEGIN
+  PERFORM pg_advisory_xact_lock(hashtext('execution_partitions'));
+
+  SELECT LEAST(CURRENT_DATE,
+               (SELECT min(created_on)::date FROM workflow_default),
+               (SELECT min(created_on)::date FROM task_default),
+               (SELECT min(created_on)::date FROM workflow_to_task_default),
+               (SELECT to_date(min(date_str), 'YYYYMMDD') FROM workflow_def_to_workflow_default))
+  INTO oldest;
+
+  day := date '1970-01-01' + ((oldest - date '1970-01-01') / p_span_days) * p_span_days;
+  WHILE day <= p_until LOOP
+    FOREACH t IN ARRAY ARRAY['workflow', 'task', 'workflow_to_task', 'workflow_def_to_workflow'] LOOP
+      part_name := t || '_p' || to_char(day, 'YYYYMMDD') || '_' || to_char(day + p_span_days, 'YYYYMMDD');
+      CONTINUE WHEN EXISTS (SELECT 1 FROM pg_class c WHERE c.relname = part_name AND pg_table_is_visible(c.oid));
+
+      IF t = 'workflow_def_to_workflow' THEN
+        part_key := 'date_str';
+        lower_bound := to_char(day, 'YYYYMMDD');
+        upper_bound := to_char(day + p_span_days, 'YYYYMMDD');
+      ELSE
+        part_key := 'created_on';
+        lower_bound := day::text;
+        upper_bound := (day + p_span_days)::text;
+      END IF;
+
+      BEGIN
+        EXECUTE format('CREATE TEMP TABLE execution_partition_moving AS SELECT * FROM %I WHERE %I >= %L AND %I < %L',
+                       t || '_default', part_key, lower_bound, part_key, upper_bound);
+        EXECUTE format('DELETE FROM %I WHERE %I >= %L AND %I < %L',
+                       t || '_default', part_key, lower_bound, part_key, upper_bound);
+        EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                       part_name, t, lower_bound, upper_bound);
+        EXECUTE format('INSERT INTO %I SELECT * FROM execution_partition_moving', t);
+        DROP TABLE execution_partition_moving;
+        created := created + 1;
+      EXCEPTION WHEN invalid_object_definition THEN
+        -- overlaps an existing partition, the rows stay where they were
+        NULL;
+      END;
+    END LOOP;
+    day := day + p_span_days;
+  END LOOP;
+  RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Drops the partitions of all four tables that end on or before p_before and deletes rows created before
+-- p_before from the default partitions. Rows of workflow_pending, task_scheduled and task_in_progress left
+-- pointing at dropped workflows and tasks are deleted as well. Returns the number of partitions dropped.
+CREATE OR REPLACE FUNCTION execution_drop_partitions(p_before date)
+RETURNS integer AS $$
+DECLARE
+  p record;
+  dropped integer := 0;
+BEGIN
+  PERFORM pg_advisory_xact_lock(hashtext('execution_partitions'));
+
+  FOR p IN
+    SELECT c.relname FROM pg_inherits i
+    JOIN pg_class c ON c.oid = i.inhrelid
+    JOIN pg_class parent ON parent.oid = i.inhparent
+    WHERE parent.relname IN ('workflow', 'task', 'workflow_to_task', 'workflow_def_to_workflow')
+      AND pg_table_is_visible(parent.oid)
+      AND c.relname ~ '_p\d{8}_\d{8}$'
+      AND to_date(right(c.relname, 8), 'YYYYMMDD') <= p_before
+  LOOP
+    EXECUTE format('DROP TABLE %I', p.relname);
+    dropped := dropped + 1;
+  END LOOP;
+
+  DELETE FROM workflow_default WHERE created_on < p_before;
+  DELETE FROM task_default WHERE created_on < p_before;
+  DELETE FROM workflow_to_task_default WHERE created_on < p_before;
+  DELETE FROM workflow_def_to_workflow_default WHERE date_str < to_char(p_before, 'YYYYMMDD');
+
+  IF dropped > 0 THEN
+    -- dropping a partition does not fire the triggers that remove the ids of deleted rows
+    DELETE FROM workflow_created_on c WHERE c.created_on < p_before
+      AND NOT EXISTS (SELECT 1 FROM workflow w WHERE w.workflow_id = c.workflow_id AND w.created_on = c.created_on);
+    DELETE FROM task_created_on c WHERE c.created_on < p_before
+      AND NOT EXISTS (SELECT 1 FROM task t WHERE t.task_id = c.task_id AND t.created_on = c.created_on);
+    DELETE FROM workflow_pending wp WHERE NOT EXISTS (SELECT 1 FROM workflow w WHERE w.workflow_id = wp.workflow_id);
+    DELETE FROM task_scheduled ts WHERE NOT EXISTS (SELECT 1 FROM workflow w WHERE w.workflow_id = ts.workflow_id);
+    DELETE FROM task_in_progress tip WHERE NOT EXISTS (SELECT 1 FROM task t WHERE t.task_id = tip.task_id);
+  END IF;
+  RETURN dropped;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Re-creates the four tables as range partitioned tables with a default partition, which holds all existing
+-- rows until execution_add_partitions moves them. Partitioned tables can only have unique keys that include
+-- the partition key, so workflow and task ids are kept unique by the lookup tables further below. The indexes
+-- below must mirror the ones the versioned migrations define on these tables.
+DO $$
+DECLARE
+  t text;
+BEGIN
+  IF '${timePartitioningEnabled}' <> 'true' THEN
+    RETURN;
+  END IF;
+
+  FOREACH t IN ARRAY ARRAY['workflow', 'task', 'workflow_to_task', 'workflow_def_to_workflow'] LOOP
+    CONTINUE WHEN EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = t::regclass);
+
+    EXECUTE format('ALTER TABLE %I RENAME TO %I', t, t || '_unpartitioned');
+    EXECUTE format('UPDATE %I SET created_on = COALESCE(modified_on, CURRENT_TIMESTAMP) WHERE created_on IS NULL',
+                   t || '_unpartitioned');
+    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS) PARTITION BY RANGE (%I)',
+                   t, t || '_unpartitioned', CASE WHEN t = 'workflow_def_to_workflow' THEN 'date_str' ELSE 'created_on' END);
+    EXECUTE format('CREATE TABLE %I PARTITION OF %I DEFAULT', t || '_default', t);
+    EXECUTE format('INSERT INTO %I SELECT * FROM %I', t, t || '_unpartitioned');
+    EXECUTE format('DROP TABLE %I', t || '_unpartitioned');
+
+    IF t = 'workflow' THEN
+      ALTER TABLE workflow ADD PRIMARY KEY (workflow_id, created_on);
+      CREATE INDEX workflow_corr_id_index ON workflow (correlation_id);
+      CREATE INDEX workflow_expires_at_idx ON workflow (expires_at) WHERE expires_at IS NOT NULL;
+    ELSIF t = 'task' THEN
+      ALTER TABLE task ADD PRIMARY KEY (task_id, created_on);
+    ELSIF t = 'workflow_to_task' THEN
+      ALTER TABLE workflow_to_task ADD PRIMARY KEY (workflow_id, task_id, created_on);
+      CREATE INDEX workflow_id_index ON workflow_to_task (workflow_id);
+    ELSE
+      ALTER TABLE workflow_def_to_workflow ADD PRIMARY KEY (workflow_def, date_str, workflow_id);
+    END IF;
+  END LOOP;
+END $$;
+
+-- Workflow and task ids with the creation time of their row. The ids are unique here, and the DAO takes the
+-- creation time from here when it inserts a workflow, task or workflow_to_task row, so that an upsert of an
+-- existing task conflicts with its row instead of adding another one to the current partition. Rows are
+-- removed along with the workflow or task they belong to.
+DO $$
+BEGIN
+  IF NOT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'task'::regclass) THEN
+    RETURN;
+  END IF;
+
+  IF to_regclass('workflow_created_on') IS NULL THEN
+    CREATE TABLE workflow_created_on (
+      workflow_id varchar(255) NOT NULL,
+      created_on TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+      PRIMARY KEY (workflow_id)
+    );
+    CREATE INDEX workflow_created_on_idx ON workflow_created_on (created_on);
+    -- the most recently written copy of a workflow written more than once before the lookup existed wins
+    DELETE FROM workflow w USING workflow d WHERE d.workflow_id = w.workflow_id
+      AND (d.modified_on, d.created_on) > (w.modified_on, w.created_on);
+    INSERT INTO workflow_created_on (workflow_id, created_on) SELECT workflow_id, created_on FROM workflow;
+  END IF;
+
+  IF to_regclass('task_created_on') IS NULL THEN
+    CREATE TABLE task_created_on (
+      task_id varchar(255) NOT NULL,
+      created_on TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+      PRIMARY KEY (task_id)
+    );
+    CREATE INDEX task_created_on_idx ON task_created_on (created_on);
+    DELETE FROM task t USING task d WHERE d.task_id = t.task_id
+      AND (d.modified_on, d.created_on) > (t.modified_on, t.created_on);
+    INSERT INTO task_created_on (task_id, created_on) SELECT task_id, created_on FROM task;
+    DELETE FROM workflow_to_task w USING workflow_to_task d WHERE d.workflow_id = w.workflow_id
+      AND d.task_id = w.task_id AND d.created_on < w.created_on;
+    UPDATE workflow_to_task w SET created_on = c.created_on FROM task_created_on c
+      WHERE c.task_id = w.task_id AND c.created_on <> w.created_on;
+  END IF;
+END $$;
+
+CREATE OR REPLACE FUNCTION workflow_created_on_delete() RETURNS trigger AS $$
+BEGIN
+  DELETE FROM workflow_created_on WHERE workflow_id = OLD.workflow_id AND created_on = OLD.created_on;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION task_created_on_delete() RETURNS trigger AS $$
+BEGIN
+  DELETE FROM task_created_on WHERE task_id = OLD.task_id AND created_on = OLD.created_on;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DO $$
+BEGIN
+  IF EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'task'::regclass) THEN
+    DROP TRIGGER IF EXISTS workflow_created_on_delete ON workflow;
+    CREATE TRIGGER workflow_created_on_delete AFTER DELETE ON workflow
+    FOR EACH ROW EXECUTE PROCEDURE workflow_created_on_delete();
+
+    DROP TRIGGER IF EXISTS task_created_on_delete ON task;
+    CREATE TRIGGER task_created_on_delete AFTER DELETE ON task
+    FOR EACH ROW EXECUTE PROCEDURE task_created_on_delete();
+  END IF;
+END $$;
@@ -11,30 +11,53 @@
  */
 package com.netflix.conductor.postgres.dao;
 
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
 
 import org.flywaydb.core.Flyway;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.netflix.conductor.common.config.TestObjectMapperConfiguration;
+import com.netflix.conductor.common.metadata.tasks.TaskDef;
 import com.netflix.conductor.common.metadata.workflow.WorkflowDef;
+import com.netflix.conductor.common.metadata.workflow.WorkflowTask;
 import com.netflix.conductor.dao.ExecutionDAO;
 import com.netflix.conductor.dao.ExecutionDAOTest;
+import com.netflix.conductor.model.TaskModel;
 import com.netflix.conductor.model.WorkflowModel;
 import com.netflix.conductor.postgres.config.PostgresConfiguration;
+import com.netflix.conductor.postgres.config.PostgresProperties;
+import com.netflix.conductor.postgres.util.JsonDataCodec;
+import com.netflix.conductor.postgres.util.Query;
 
-import com.google.common.collect.Iterables;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @ContextConfiguration(
         classes = {
@@ -48,6 +71,16 @@ public class PostgresExecutionDAOTest extends ExecutionDAOTest {
 
     @Autowired private PostgresExecutionDAO executionDAO;
 
+    @Autowired private ObjectMapper objectMapper;
+
+    @Qualifier("dataSource")
+    @Autowired
+    private DataSource dataSource;
+
+    @Qualifier("postgresRetryTemplate")
+    @Autowired
+    private RetryTemplate retryTemplate;
+
     @Autowired Flyway flyway;
 
     // clean the database between tests.
@@ -92,7 +125,7 @@ public class PostgresExecutionDAOTest extends ExecutionDAOTest {
     }
 
     @Test
-    public void testRemoveWorkflowWithExpiry() {
+    public void testRemoveWorkflowWithExpiry() throws InterruptedException {
         WorkflowDef def = new WorkflowDef();
         def.setName("workflow");
 
@@ -101,10 +134,498 @@ public class PostgresExecutionDAOTest extends ExecutionDAOTest {
 
         List<String> ids = generateWorkflows(workflow, 1);
 
-        final ExecutionDAO execDao = Mockito.spy(getExecutionDAO());
-        assertEquals(1, execDao.getPendingWorkflowCount("workflow"));
-        ids.forEach(wfId -> execDao.removeWorkflowWithExpiry(wfId, 1));
-        Mockito.verify(execDao, Mockito.timeout(10 * 1000)).removeWorkflow(Iterables.getLast(ids));
+        assertEquals(1, getExecutionDAO().getPendingWorkflowCount("workflow"));
+        ids.forEach(wfId -> assertTrue(getExecutionDAO().removeWorkflowWithExpiry(wfId, 1)));
+        assertFalse(getExecutionDAO().removeWorkflowWithExpiry("unknown_workflow", 1));
+
+        // removed by the background reaper once the TTL ran out
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (getExecutionDAO().getWorkflow(ids.get(0), false) != null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertNull(getExecutionDAO().getWorkflow(ids.get(0), false));
+        assertEquals(0, getExecutionDAO().getPendingWorkflowCount("workflow"));
+    }
+
+    @Test
+    public void testReapExpiredWorkflows() {
+        WorkflowDef def = new WorkflowDef();
+        def.setName("expiring_workflow");
+
+        WorkflowModel workflow = createTestWorkflow();
+        workflow.setWorkflowDefinition(def);
+        List<String> ids = generateWorkflows(workflow, 3);
+
+        executionDAO.removeWorkflowWithExpiry(ids.get(0), 0);
+        executionDAO.removeWorkflowWithExpiry(ids.get(1), 0);
+        executionDAO.removeWorkflowWithExpiry(ids.get(2), 3600);
+        // the expiry is kept when the workflow is written again
+        executionDAO.updateWorkflow(executionDAO.getWorkflow(ids.get(1), false));
+
+        // the background reaper may get to some of them first
+        executionDAO.reapExpiredWorkflows();
+        assertNull(executionDAO.getWorkflow(ids.get(0), true));
+        assertNull(executionDAO.getWorkflow(ids.get(1), true));
+        assertNotNull(executionDAO.getWorkflow(ids.get(2), true));
+        assertEquals(0, executionDAO.reapExpiredWorkflows());
+    }
+
+    @Test
+    public void testCreateTasksBatch() {
+        String workflowId = UUID.randomUUID().toString();
+        List<TaskModel> tasks = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            TaskModel task = new TaskModel();
+            task.setTaskId(workflowId + "_fork_" + i);
+            task.setReferenceTaskName("fork_" + i);
+            task.setWorkflowInstanceId(workflowId);
+            task.setTaskDefName("fork_task");
+            task.setStatus(i == 0 ? TaskModel.Status.COMPLETED : TaskModel.Status.SCHEDULED);
+            tasks.add(task);
+        }
+
+        List<TaskModel> created = getExecutionDAO().createTasks(tasks);
+        assertEquals(500, created.size());
+        assertEquals(500, getExecutionDAO().getTasksForWorkflow(workflowId).size());
+        // the completed task is not in progress
+        assertEquals(
+                499, getExecutionDAO().getPendingTasksByWorkflow("fork_task", workflowId).size());
+
+        // all task keys are scheduled already
+        assertEquals(0, getExecutionDAO().createTasks(tasks).size());
+        assertEquals(500, getExecutionDAO().getTasksForWorkflow(workflowId).size());
+    }
+
+    @Test
+    public void testUpdateTaskWritesMappingOnlyForNewTasks() {
+        String workflowId = UUID.randomUUID().toString();
+        TaskModel task = new TaskModel();
+        task.setTaskId(workflowId + "_task");
+        task.setReferenceTaskName("task");
+        task.setWorkflowInstanceId(workflowId);
+        task.setTaskDefName("task");
+        task.setStatus(TaskModel.Status.IN_PROGRESS);
+
+        // updating a task that was never created inserts it along with its mapping
+        getExecutionDAO().updateTask(task);
+        assertEquals(1, getExecutionDAO().getTasksForWorkflow(workflowId).size());
+
+        task.setStatus(TaskModel.Status.COMPLETED);
+        getExecutionDAO().updateTask(task);
+        List<TaskModel> tasks = getExecutionDAO().getTasksForWorkflow(workflowId);
+        assertEquals(1, tasks.size());
+        assertEquals(TaskModel.Status.COMPLETED, tasks.get(0).getStatus());
+    }
+
+    @Test
+    public void testMixedDataEncodings() {
+        PostgresProperties properties = new PostgresProperties();
+        properties.setDataEncoding(JsonDataCodec.Encoding.SMILE);
+        properties.setDataCompressionEnabled(true);
+        PostgresExecutionDAO binaryDAO =
+                new PostgresExecutionDAO(retryTemplate, objectMapper, dataSource, properties);
+        try {
+            WorkflowDef def = new WorkflowDef();
+            def.setName("mixed_encodings");
+            WorkflowModel workflow = createTestWorkflow();
+            workflow.setWorkflowDefinition(def);
+            workflow.setTasks(new ArrayList<>());
+            getExecutionDAO().createWorkflow(workflow);
+
+            List<TaskModel> tasks = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                TaskModel task = new TaskModel();
+                task.setTaskId(workflow.getWorkflowId() + "_" + i);
+                task.setReferenceTaskName("task_" + i);
+                task.setWorkflowInstanceId(workflow.getWorkflowId());
+                task.setTaskDefName("mixed_encodings_task");
+                task.setSeq(i);
+                task.setStatus(TaskModel.Status.SCHEDULED);
+                task.getOutputData().put("index", i);
+                tasks.add(task);
+            }
+            // text and binary rows side by side, through both write paths
+            getExecutionDAO().createTasks(tasks.subList(0, 2));
+            binaryDAO.createTasks(tasks.subList(2, 4));
+            tasks.get(0).setStatus(TaskModel.Status.COMPLETED);
+            binaryDAO.updateTask(tasks.get(0));
+            binaryDAO.updateWorkflow(workflow);
+
+            for (ExecutionDAO dao : List.of(getExecutionDAO(), binaryDAO)) {
+                WorkflowModel found = dao.getWorkflow(workflow.getWorkflowId(), true);
+                assertEquals(workflow.getWorkflowId(), found.getWorkflowId());
+                assertEquals(4, found.getTasks().size());
+                for (int i = 0; i < 4; i++) {
+                    assertEquals(i, found.getTasks().get(i).getOutputData().get("index"));
+                }
+                assertEquals(
+                        TaskModel.Status.COMPLETED,
+                        dao.getTask(tasks.get(0).getTaskId()).getStatus());
+                assertEquals(
+                        3,
+                        dao.getPendingTasksByWorkflow(
+                                        "mixed_encodings_task", workflow.getWorkflowId())
+                                .size());
+            }
+        } finally {
+            binaryDAO.destroy();
+        }
+    }
+
+    @Test
+    public void testPollDataBuffer() {
+        executionDAO.updateLastPollData("poll_buffer_task", null, "worker1");
+        executionDAO.updateLastPollData("poll_buffer_task", "domain1", "worker1");
+        // served from the buffer before it is flushed
+        assertEquals("worker1", executionDAO.getPollData("poll_buffer_task", null).getWorkerId());
+        assertEquals(2, executionDAO.getPollData("poll_buffer_task").size());
+
+        executionDAO.flushPollData();
+        executionDAO.updateLastPollData("poll_buffer_task", null, "worker2");
+        assertEquals("worker2", executionDAO.getPollData("poll_buffer_task", null).getWorkerId());
+        assertEquals(2, executionDAO.getAllPollData().size());
+
+        executionDAO.flushPollData();
+        assertEquals("worker2", executionDAO.getPollData("poll_buffer_task", null).getWorkerId());
+        assertEquals(
+                "worker1", executionDAO.getPollData("poll_buffer_task", "domain1").getWorkerId());
+        assertEquals(2, executionDAO.getPollData("poll_buffer_task").size());
+    }
+
+    @Test
+    public void testInProgressCountFollowsTaskUpdates() {
+        TaskDef taskDef = new TaskDef();
+        taskDef.setName("limited_task");
+        taskDef.setConcurrentExecLimit(2);
+        WorkflowTask workflowTask = new WorkflowTask();
+        workflowTask.setName("limited_task");
+        workflowTask.setTaskDefinition(taskDef);
+
+        String workflowId = UUID.randomUUID().toString();
+        List<TaskModel> tasks = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TaskModel task = new TaskModel();
+            task.setTaskId("limited_" + i);
+            task.setReferenceTaskName("limited_" + i);
+            task.setWorkflowInstanceId(workflowId);
+            task.setTaskDefName("limited_task");
+            task.setStatus(TaskModel.Status.SCHEDULED);
+            task.setWorkflowTask(workflowTask);
+            tasks.add(task);
+        }
+        executionDAO.createTasks(tasks);
+        assertEquals(0, executionDAO.getInProgressTaskCount("limited_task"));
+
+        tasks.get(0).setStatus(TaskModel.Status.IN_PROGRESS);
+        executionDAO.updateTask(tasks.get(0));
+        tasks.get(1).setStatus(TaskModel.Status.IN_PROGRESS);
+        executionDAO.updateTask(tasks.get(1));
+        // updating an in progress task again does not count it twice
+        executionDAO.updateTask(tasks.get(1));
+        assertEquals(2, executionDAO.getInProgressTaskCount("limited_task"));
+        assertTrue(executionDAO.exceedsLimit(tasks.get(2)));
+
+        tasks.get(0).setStatus(TaskModel.Status.COMPLETED);
+        executionDAO.updateTask(tasks.get(0));
+        assertEquals(1, executionDAO.getInProgressTaskCount("limited_task"));
+        // the remaining tasks are the first two to arrive
+        assertFalse(executionDAO.exceedsLimit(tasks.get(2)));
+
+        executionDAO.removeTask(tasks.get(1).getTaskId());
+        assertEquals(0, executionDAO.getInProgressTaskCount("limited_task"));
+    }
+
+    @Test
+    public void testRateLimitAcrossNodes() throws Exception {
+        int rateLimit = 100;
+        TaskModel task = new TaskModel();
+        task.setTaskId(UUID.randomUUID().toString());
+        task.setTaskDefName("rate_limited_task");
+        task.setRateLimitPerFrequency(rateLimit);
+        // a window long enough not to roll over while the test runs
+        task.setRateLimitFrequencyInSeconds(1_000_000);
+
+        // every node leases its own permits from the shared table
+        List<PostgresExecutionDAO> nodes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            nodes.add(
+                    new PostgresExecutionDAO(
+                            retryTemplate, objectMapper, dataSource, new PostgresProperties()));
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(16);
+        try {
+            AtomicInteger admitted = new AtomicInteger();
+            List<Callable<Void>> calls = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                PostgresExecutionDAO node = nodes.get(i % nodes.size());
+                calls.add(
+                        () -> {
+                            for (int j = 0; j < 50; j++) {
+                                if (!node.exceedsRateLimitPerFrequency(task, null)) {
+                                    admitted.incrementAndGet();
+                                }
+                            }
+                            return null;
+                        });
+            }
+            for (Future<Void> future : executorService.invokeAll(calls)) {
+                future.get();
+            }
+            // 800 attempts, of which exactly the limit gets through across all nodes
+            assertEquals(rateLimit, admitted.get());
+            assertTrue(executionDAO.exceedsRateLimitPerFrequency(task, null));
+
+            TaskDef taskDef = new TaskDef("rate_limited_task");
+            taskDef.setRateLimitPerFrequency(0);
+            assertFalse(executionDAO.exceedsRateLimitPerFrequency(task, taskDef));
+        } finally {
+            executorService.shutdownNow();
+            nodes.forEach(PostgresExecutionDAO::destroy);
+        }
+    }
+
+    @Test
+    public void testRemoveWorkflows() {
+        WorkflowDef def = new WorkflowDef();
+        def.setName("bulk_remove");
+
+        List<String> workflowIds = new ArrayList<>();
+        for (int w = 0; w < 3; w++) {
+            WorkflowModel workflow = createTestWorkflow();
+            workflow.setWorkflowId(UUID.randomUUID().toString());
+            workflow.setWorkflowDefinition(def);
+            workflow.setStatus(WorkflowModel.Status.RUNNING);
+            workflow.setTasks(new ArrayList<>());
+            executionDAO.createWorkflow(workflow);
+
+            List<TaskModel> tasks = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                TaskModel task = new TaskModel();
+                task.setTaskId(workflow.getWorkflowId() + "_" + i);
+                task.setReferenceTaskName("task_" + i);
+                task.setWorkflowInstanceId(workflow.getWorkflowId());
+                task.setTaskDefName("bulk_remove_task");
+                task.setSeq(i);
+                task.setStatus(TaskModel.Status.SCHEDULED);
+                tasks.add(task);
+            }
+            executionDAO.createTasks(tasks);
+            tasks.get(0).setStatus(TaskModel.Status.IN_PROGRESS);
+            executionDAO.updateTask(tasks.get(0));
+            workflowIds.add(workflow.getWorkflowId());
+        }
+        assertEquals(3, executionDAO.getInProgressTaskCount("bulk_remove_task"));
+
+        List<String> removed = new ArrayList<>(workflowIds.subList(0, 2));
+        removed.add("unknown_workflow");
+        assertEquals(2, executionDAO.removeWorkflows(removed));
+
+        for (String workflowId : workflowIds.subList(0, 2)) {
+            assertNull(executionDAO.getWorkflow(workflowId, true));
+            assertNull(executionDAO.getTask(workflowId + "_0"));
+            assertTrue(executionDAO.getTasksForWorkflow(workflowId).isEmpty());
+        }
+        WorkflowModel kept = executionDAO.getWorkflow(workflowIds.get(2), true);
+        assertEquals(5, kept.getTasks().size());
+        assertEquals(1, executionDAO.getInProgressTaskCount("bulk_remove_task"));
+        assertEquals(
+                List.of(workflowIds.get(2)), executionDAO.getRunningWorkflowIds("bulk_remove", 1));
+        assertEquals(
+                List.of(workflowIds.get(2)),
+                executionDAO
+                        .getWorkflowsByType(
+                                "bulk_remove", 0L, System.currentTimeMillis() + 86_400_000L)
+                        .stream()
+                        .map(WorkflowModel::getWorkflowId)
+                        .collect(Collectors.toList()));
+
+        assertTrue(executionDAO.removeWorkflow(workflowIds.get(2)));
+        assertFalse(executionDAO.removeWorkflow(workflowIds.get(2)));
+        assertEquals(0, executionDAO.getInProgressTaskCount("bulk_remove_task"));
+    }
+
+    @Test
+    public void testGetWorkflowsByTypeInBatches() {
+        PostgresProperties properties = new PostgresProperties();
+        properties.setWorkflowReadBatchSize(2);
+        properties.setWorkflowReadParallelism(2);
+        PostgresExecutionDAO batchedDAO =
+                new PostgresExecutionDAO(retryTemplate, objectMapper, dataSource, properties);
+        try {
+            WorkflowDef def = new WorkflowDef();
+            def.setName("batched_read");
+            WorkflowModel workflow = createTestWorkflow();
+            workflow.setWorkflowDefinition(def);
+            List<String> ids = generateWorkflows(workflow, 5);
+            for (String workflowId : ids) {
+                List<TaskModel> tasks = createTestWorkflow().getTasks();
+                tasks.forEach(task -> task.setWorkflowInstanceId(workflowId));
+                batchedDAO.createTasks(tasks);
+            }
+            // created before the requested range
+            workflow.setCreateTime(10L);
+            generateWorkflows(workflow, 1);
+
+            List<WorkflowModel> found = batchedDAO.getWorkflowsByType("batched_read", 50L, 100L);
+            assertEquals(
+                    ids.stream().sorted().collect(Collectors.toList()),
+                    found.stream()
+                            .map(WorkflowModel::getWorkflowId)
+                            .sorted()
+                            .collect(Collectors.toList()));
+            for (WorkflowModel loaded : found) {
+                assertEquals(3, loaded.getTasks().size());
+                assertEquals(
+                        List.of(1, 2, 3),
+                        loaded.getTasks().stream()
+                                .map(TaskModel::getSeq)
+                                .collect(Collectors.toList()));
+            }
+
+            assertTrue(
+                    batchedDAO.getWorkflowsByType("batched_read", 50L, 100L, false).stream()
+                            .allMatch(loaded -> loaded.getTasks().isEmpty()));
+            assertEquals(
+                    5,
+                    batchedDAO
+                            .streamWorkflowsByType("batched_read", 50L, 100L, true)
+                            .filter(loaded -> loaded.getTasks().size() == 3)
+                            .count());
+        } finally {
+            batchedDAO.destroy();
+        }
+    }
+
+    @Test
+    public void testTimePartitionedTables() throws Exception {
+        Flyway partitionedFlyway =
+                Flyway.configure()
+                        .locations(
+                                "classpath:db/migration_postgres",
+                                "classpath:db/migration_postgres_time_partitions")
+                        .placeholders(Map.of("timePartitioningEnabled", "true"))
+                        .dataSource(dataSource)
+                        .load();
+        partitionedFlyway.clean();
+        partitionedFlyway.migrate();
+
+        PostgresProperties properties = new PostgresProperties();
+        properties.setTimePartitioningEnabled(true);
+        properties.setTimePartitionRetention(Duration.ofDays(30));
+        PostgresExecutionDAO partitionedDAO =
+                new PostgresExecutionDAO(retryTemplate, objectMapper, dataSource, properties);
+        List<String> ids = new ArrayList<>();
+        try {
+            WorkflowDef def = new WorkflowDef();
+            def.setName("partitioned_workflow");
+            WorkflowModel workflow = createTestWorkflow();
+            workflow.setWorkflowDefinition(def);
+            workflow.setStatus(WorkflowModel.Status.RUNNING);
+            workflow.setCreateTime(System.currentTimeMillis());
+            for (int i = 0; i < 2; i++) {
+                workflow.setWorkflowId(UUID.randomUUID().toString());
+                workflow.getTasks()
+                        .forEach(
+                                task -> {
+                                    task.setTaskId(UUID.randomUUID().toString());
+                                    task.setWorkflowInstanceId(workflow.getWorkflowId());
+                                });
+                partitionedDAO.createWorkflow(workflow);
+                partitionedDAO.createTasks(workflow.getTasks());
+                ids.add(workflow.getWorkflowId());
+            }
+            partitionedDAO.maintainPartitions();
+
+            // new rows land in the range partitions, not the default ones
+            assertEquals(
+                    2,
+                    count(
+                            "SELECT COUNT(*) FROM workflow WHERE tableoid::regclass::text LIKE ?",
+                            "workflow\\_p%"));
+            assertEquals(
+                    6,
+                    count(
+                            "SELECT COUNT(*) FROM task WHERE tableoid::regclass::text LIKE ?",
+                            "task\\_p%"));
+
+            WorkflowModel found = partitionedDAO.getWorkflow(ids.get(0), true);
+            assertEquals(3, found.getTasks().size());
+            TaskModel task = found.getTasks().get(0);
+            task.setStatus(TaskModel.Status.COMPLETED);
+            partitionedDAO.updateTask(task);
+            assertEquals(
+                    TaskModel.Status.COMPLETED,
+                    partitionedDAO.getTask(task.getTaskId()).getStatus());
+
+            // a task written again in a later transaction keeps its one row and mapping
+            task.setRetryCount(task.getRetryCount() + 1);
+            partitionedDAO.createTasks(List.of(task));
+            assertEquals(1, count("SELECT COUNT(*) FROM task WHERE task_id = ?", task.getTaskId()));
+            assertEquals(
+                    1,
+                    count(
+                            "SELECT COUNT(*) FROM workflow_to_task WHERE task_id = ?",
+                            task.getTaskId()));
+            assertEquals(3, partitionedDAO.getWorkflow(ids.get(0), true).getTasks().size());
+            assertEquals(
+                    2,
+                    partitionedDAO
+                            .getWorkflowsByType(
+                                    "partitioned_workflow", 0L, System.currentTimeMillis())
+                            .size());
+
+            // age one workflow past the retention, its partitions are dropped with it
+            execute(
+                    "UPDATE workflow SET created_on = created_on - INTERVAL '60 days' WHERE workflow_id = ?",
+                    ids.get(0));
+            partitionedDAO.maintainPartitions();
+            assertNull(partitionedDAO.getWorkflow(ids.get(0), false));
+            assertNotNull(partitionedDAO.getWorkflow(ids.get(1), true));
+            assertEquals(1, partitionedDAO.getPendingWorkflowCount("partitioned_workflow"));
+        } finally {
+            partitionedDAO.destroy();
+        }
+
+        // turned off again, the tables stay partitioned and keep working
+        Flyway.configure()
+                .locations(
+                        "classpath:db/migration_postgres",
+                        "classpath:db/migration_postgres_time_partitions")
+                .placeholders(Map.of("timePartitioningEnabled", "false"))
+                .dataSource(dataSource)
+                .load()
+                .migrate();
+        PostgresExecutionDAO unpartitionedDAO =
+                new PostgresExecutionDAO(
+                        retryTemplate, objectMapper, dataSource, new PostgresProperties());
+        try {
+            TaskModel task = unpartitionedDAO.getWorkflow(ids.get(1), true).getTasks().get(0);
+            task.setRetryCount(task.getRetryCount() + 1);
+            unpartitionedDAO.createTasks(List.of(task));
+            assertEquals(1, count("SELECT COUNT(*) FROM task WHERE task_id = ?", task.getTaskId()));
+        } finally {
+            unpartitionedDAO.destroy();
+        }
+    }
+
+    private long count(String query, String parameter) throws Exception {
+        try (Connection c = dataSource.getConnection()) {
+            try (Query q = new Query(objectMapper, c, query)) {
+                long count = q.addParameter(parameter).executeCount();
+                c.commit();
+                return count;
+            }
+        }
+    }
+
+    private void execute(String query, String parameter) throws Exception {
+        try (Connection c = dataSource.getConnection()) {
+            try (Query q = new Query(objectMapper, c, query)) {
+                q.addParameter(parameter).executeUpdate();
+                c.commit();
+            }
+        }
     }
 
     @Override
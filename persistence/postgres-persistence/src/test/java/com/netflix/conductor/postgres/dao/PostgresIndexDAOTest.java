@@ -18,6 +18,7 @@ import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.TemporalAccessor;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import javax.sql.DataSource;
 
@@ -29,6 +30,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
@@ -40,7 +42,10 @@ import com.netflix.conductor.common.run.SearchResult;
 import com.netflix.conductor.common.run.TaskSummary;
 import com.netflix.conductor.common.run.Workflow;
 import com.netflix.conductor.common.run.WorkflowSummary;
+import com.netflix.conductor.dao.CursorSearchResult;
 import com.netflix.conductor.postgres.config.PostgresConfiguration;
+import com.netflix.conductor.postgres.config.PostgresProperties;
+import com.netflix.conductor.postgres.util.PostgresIndexQueryBuilder;
 import com.netflix.conductor.postgres.util.Query;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -71,6 +76,10 @@ public class PostgresIndexDAOTest {
     @Autowired
     private DataSource dataSource;
 
+    @Qualifier("postgresRetryTemplate")
+    @Autowired
+    private RetryTemplate retryTemplate;
+
     @Autowired Flyway flyway;
 
     // clean the database between tests.
@@ -144,6 +153,28 @@ public class PostgresIndexDAOTest {
         }
     }
 
+    /**
+     * @return The JSON plan of a search of {@literal table} for {@literal freeText}, with
+     *     sequential scans disabled as the planner would not bother with an index on a few rows.
+     */
+    private String explainSearch(String table, String freeText) throws SQLException {
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(table, "", freeText, 0, 15, new ArrayList<>());
+        try (Connection c = dataSource.getConnection()) {
+            c.setAutoCommit(false);
+            try (Query q = new Query(objectMapper, c, "SET LOCAL enable_seqscan = off")) {
+                q.executeUpdate();
+            }
+            try (Query q =
+                    new Query(objectMapper, c, "EXPLAIN (FORMAT JSON) " + builder.getQuery())) {
+                builder.addParameters(q);
+                return q.executeScalar(String.class);
+            } finally {
+                c.rollback();
+            }
+        }
+    }
+
     private void compareTaskSummary(TaskSummary ts) throws SQLException {
         List<Map<String, Object>> result =
                 queryDb(
@@ -235,6 +266,42 @@ public class PostgresIndexDAOTest {
         assertEquals(new Date(1675845987000L), records.get(1).get("created_time"));
     }
 
+    @Test
+    public void testAsyncIndexing() throws SQLException {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            futures.add(indexDAO.asyncIndexWorkflow(getMockWorkflowSummary("workflow-id-" + i)));
+            futures.add(indexDAO.asyncIndexTask(getMockTaskSummary("task-id-" + i)));
+        }
+        // a later update of a queued document replaces it
+        WorkflowSummary wfs = getMockWorkflowSummary("workflow-id-0");
+        wfs.setStatus(Workflow.WorkflowStatus.FAILED);
+        futures.add(indexDAO.asyncIndexWorkflow(wfs));
+        TaskSummary ts = getMockTaskSummary("task-id-0");
+        ts.setStatus(Task.Status.FAILED);
+        futures.add(indexDAO.asyncIndexTask(ts));
+        futures.add(
+                indexDAO.asyncAddTaskExecutionLogs(
+                        List.of(
+                                getMockTaskExecutionLog(1675845986000L, "Log 1"),
+                                getMockTaskExecutionLog(1675845987000L, "Log 2"))));
+        // more lines than a batch of rows are written in several batches
+        List<TaskExecLog> logs = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            logs.add(getMockTaskExecutionLog(1675845988000L + i, "Log line " + i));
+        }
+        futures.add(indexDAO.asyncAddTaskExecutionLogs(logs));
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        assertEquals(250L, queryDb("SELECT count(*) FROM workflow_index").get(0).get("count"));
+        assertEquals(250L, queryDb("SELECT count(*) FROM task_index").get(0).get("count"));
+        compareWorkflowSummary(wfs);
+        compareTaskSummary(ts);
+        compareWorkflowSummary(getMockWorkflowSummary("workflow-id-249"));
+        assertEquals(252, indexDAO.getTaskExecutionLogs("task-id").size());
+    }
+
     @Test
     public void testSearchWorkflowSummary() {
         WorkflowSummary wfs = getMockWorkflowSummary("workflow-id");
@@ -251,6 +318,44 @@ public class PostgresIndexDAOTest {
                 results.getResults().get(0).getWorkflowId());
     }
 
+    @Test
+    public void testSearchWorkflowSummaryWithExpression() {
+        for (int i = 0; i < 3; i++) {
+            WorkflowSummary wfs = getMockWorkflowSummary("workflow-id-" + i);
+            if (i == 0) {
+                wfs.setStatus(Workflow.WorkflowStatus.FAILED);
+            }
+            indexDAO.indexWorkflow(wfs);
+        }
+
+        String query =
+                "(status=\"FAILED\" OR workflowId STARTS_WITH \"workflow-id-2\") AND workflowId != \"workflow-id-1\"";
+        SearchResult<WorkflowSummary> results =
+                indexDAO.searchWorkflowSummary(query, "*", 0, 15, List.of("workflowId:ASC"));
+        assertEquals(2, results.getTotalHits());
+        assertEquals("workflow-id-0", results.getResults().get(0).getWorkflowId());
+        assertEquals("workflow-id-2", results.getResults().get(1).getWorkflowId());
+    }
+
+    @Test
+    public void testFreeTextSearchesUseIndexes() throws SQLException {
+        indexDAO.indexWorkflow(getMockWorkflowSummary("workflow-id"));
+        indexDAO.indexTask(getMockTaskSummary("task-id"));
+
+        for (String table : List.of("workflow_index", "task_index")) {
+            String plan = explainSearch(table, "correlation-id & workflow-type");
+            assertTrue(plan, plan.contains("\"" + table + "_json_data_text_idx\""));
+            plan = explainSearch(table, "{\"workflowType\":\"workflow-type\"}");
+            assertTrue(plan, plan.contains("\"" + table + "_json_data_json_idx\""));
+        }
+
+        // the task indexes are on task_index rather than workflow_index
+        List<Map<String, Object>> indexes =
+                queryDb(
+                        "SELECT indexname FROM pg_indexes WHERE tablename = 'workflow_index' AND indexname LIKE 'task_index%'");
+        assertTrue(indexes.isEmpty());
+    }
+
     @Test
     public void testFullTextSearchWorkflowSummary() {
         WorkflowSummary wfs = getMockWorkflowSummary("workflow-id");
@@ -302,7 +407,7 @@ public class PostgresIndexDAOTest {
         List<String> orderBy = Arrays.asList(new String[] {"workflowId:DESC"});
         SearchResult<WorkflowSummary> results =
                 indexDAO.searchWorkflowSummary("", "*", 0, 2, orderBy);
-        assertEquals("Wrong totalHits returned", 3, results.getTotalHits());
+        assertEquals("Wrong totalHits returned", 5, results.getTotalHits());
         assertEquals("Wrong number of results returned", 2, results.getResults().size());
         assertEquals(
                 "Results returned in wrong order",
@@ -332,6 +437,114 @@ public class PostgresIndexDAOTest {
                 results.getResults().get(0).getWorkflowId());
     }
 
+    @Test
+    public void testGetWorkflowCount() {
+        for (int i = 0; i < 5; i++) {
+            WorkflowSummary wfs = getMockWorkflowSummary("workflow-id-" + i);
+            if (i % 2 == 0) {
+                wfs.setStatus(Workflow.WorkflowStatus.FAILED);
+            }
+            indexDAO.indexWorkflow(wfs);
+        }
+
+        assertEquals(5, indexDAO.getWorkflowCount("", "*"));
+        assertEquals(3, indexDAO.getWorkflowCount("status=\"FAILED\"", "*"));
+        assertEquals(0, indexDAO.getWorkflowCount("", "notworkflow-id"));
+    }
+
+    @Test
+    public void testEstimatedTotalHits() throws SQLException {
+        PostgresProperties properties = new PostgresProperties();
+        properties.setIndexExactCountLimit(2);
+        PostgresIndexDAO estimatingIndexDAO =
+                new PostgresIndexDAO(retryTemplate, objectMapper, dataSource, properties);
+        try {
+            for (int i = 0; i < 50; i++) {
+                indexDAO.indexWorkflow(getMockWorkflowSummary("workflow-id-" + i));
+            }
+            try (Connection c = dataSource.getConnection();
+                    Query q = new Query(objectMapper, c, "ANALYZE workflow_index")) {
+                q.executeUpdate();
+            }
+            // counting stops at the limit, the rest is the planner's estimate, which has the
+            // row count of the table from the statistics
+            SearchResult<WorkflowSummary> results =
+                    estimatingIndexDAO.searchWorkflowSummary("", "*", 0, 1, new ArrayList<>());
+            assertEquals(1, results.getResults().size());
+            assertTrue(
+                    "Not estimated: " + results.getTotalHits(),
+                    results.getTotalHits() >= 45 && results.getTotalHits() <= 55);
+
+            // a partial page needs no count
+            results = estimatingIndexDAO.searchWorkflowSummary("", "*", 48, 5, new ArrayList<>());
+            assertEquals(50, results.getTotalHits());
+        } finally {
+            estimatingIndexDAO.destroy();
+        }
+    }
+
+    @Test
+    public void testSearchWorkflowSummaryAfter() {
+        for (int i = 0; i < 7; i++) {
+            WorkflowSummary wfs = getMockWorkflowSummary("workflow-id-" + i);
+            // pairs of workflows share a start time, so the id breaks the tie
+            wfs.setStartTime(Instant.parse("2023-02-07T08:42:45Z").plusSeconds(i / 2).toString());
+            indexDAO.indexWorkflow(wfs);
+        }
+
+        List<String> sort = List.of("startTime:DESC");
+        List<String> workflowIds = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorSearchResult<WorkflowSummary> page =
+                    indexDAO.searchWorkflowSummaryAfter("", "*", 3, sort, cursor);
+            assertEquals("Wrong totalHits returned", 7, page.getTotalHits());
+            page.getResults().forEach(wfs -> workflowIds.add(wfs.getWorkflowId()));
+            cursor = page.getCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(
+                List.of(
+                        "workflow-id-6",
+                        "workflow-id-4",
+                        "workflow-id-5",
+                        "workflow-id-2",
+                        "workflow-id-3",
+                        "workflow-id-0",
+                        "workflow-id-1"),
+                workflowIds);
+    }
+
+    @Test
+    public void testSearchTaskSummaryAfter() {
+        for (int i = 0; i < 4; i++) {
+            indexDAO.indexTask(getMockTaskSummary("task-id-" + i));
+        }
+
+        CursorSearchResult<TaskSummary> page =
+                indexDAO.searchTaskSummaryAfter(
+                        "taskType=\"task-type\"", "*", 2, new ArrayList<>(), null);
+        assertEquals(List.of("task-id-0", "task-id-1"), taskIds(page));
+        page =
+                indexDAO.searchTaskSummaryAfter(
+                        "taskType=\"task-type\"", "*", 2, new ArrayList<>(), page.getCursor());
+        assertEquals(List.of("task-id-2", "task-id-3"), taskIds(page));
+        page =
+                indexDAO.searchTaskSummaryAfter(
+                        "taskType=\"task-type\"", "*", 2, new ArrayList<>(), page.getCursor());
+        assertTrue(page.getResults().isEmpty());
+        assertNull(page.getCursor());
+    }
+
+    private List<String> taskIds(SearchResult<TaskSummary> page) {
+        List<String> taskIds = new ArrayList<>();
+        page.getResults().forEach(ts -> taskIds.add(ts.getTaskId()));
+        return taskIds;
+    }
+
     @Test
     public void testSearchTaskSummary() {
         TaskSummary ts = getMockTaskSummary("task-id");
@@ -355,7 +568,7 @@ public class PostgresIndexDAOTest {
 
         List<String> orderBy = Arrays.asList(new String[] {"taskId:DESC"});
         SearchResult<TaskSummary> results = indexDAO.searchTaskSummary("", "*", 0, 2, orderBy);
-        assertEquals("Wrong totalHits returned", 3, results.getTotalHits());
+        assertEquals("Wrong totalHits returned", 5, results.getTotalHits());
         assertEquals("Wrong number of results returned", 2, results.getResults().size());
         assertEquals(
                 "Results returned in wrong order",
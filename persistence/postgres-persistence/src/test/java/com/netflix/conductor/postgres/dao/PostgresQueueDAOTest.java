@@ -12,10 +12,13 @@
 package com.netflix.conductor.postgres.dao;
 
 import java.sql.Connection;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.sql.DataSource;
@@ -32,12 +35,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import com.netflix.conductor.common.config.TestObjectMapperConfiguration;
 import com.netflix.conductor.core.events.queue.Message;
 import com.netflix.conductor.postgres.config.PostgresConfiguration;
+import com.netflix.conductor.postgres.config.PostgresProperties;
 import com.netflix.conductor.postgres.util.Query;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -69,6 +74,10 @@ public class PostgresQueueDAOTest {
 
     @Autowired private ObjectMapper objectMapper;
 
+    @Qualifier("postgresRetryTemplate")
+    @Autowired
+    private RetryTemplate retryTemplate;
+
     @Rule public TestName name = new TestName();
 
     @Autowired Flyway flyway;
@@ -78,6 +87,7 @@ public class PostgresQueueDAOTest {
     public void before() {
         flyway.clean();
         flyway.migrate();
+        queueDAO.clearCaches();
     }
 
     @Test
@@ -211,6 +221,211 @@ public class PostgresQueueDAOTest {
         }
     }
 
+    @Test
+    public void partitionedQueueTest() throws Exception {
+        Flyway partitionedFlyway =
+                Flyway.configure()
+                        .locations(
+                                "classpath:db/migration_postgres",
+                                "classpath:db/migration_postgres_queue_partitions")
+                        .placeholders(Map.of("queuePartitioningEnabled", "true"))
+                        .dataSource(dataSource)
+                        .load();
+        partitionedFlyway.clean();
+        partitionedFlyway.migrate();
+
+        PostgresProperties properties = new PostgresProperties();
+        properties.setQueuePartitioningEnabled(true);
+        PostgresQueueDAO partitionedQueueDAO =
+                new PostgresQueueDAO(retryTemplate, objectMapper, dataSource, properties);
+        try {
+            final String queueName = "partitioned_queue";
+            for (int i = 0; i < 10; i++) {
+                partitionedQueueDAO.push(queueName, "msg-" + i, 0);
+            }
+            // pushes leave a new queue in the default partition
+            assertEquals(
+                    10,
+                    count(
+                            "SELECT COUNT(*) FROM queue_message WHERE tableoid::regclass::text = 'queue_message_default' AND queue_name = ?",
+                            queueName));
+
+            partitionedQueueDAO.addQueuePartitions();
+            assertEquals(
+                    10,
+                    count(
+                            "SELECT COUNT(*) FROM queue_message WHERE tableoid::regclass::text = 'queue_message_' || md5(?)",
+                            queueName));
+
+            // re-partition the queue by hash of the message id, keeping its messages
+            count("SELECT COUNT(*) FROM queue_message_add_partition(?, 4)", queueName);
+            assertEquals(
+                    4,
+                    count(
+                            "SELECT COUNT(*) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhparent WHERE c.relname = 'queue_message_' || md5(?)",
+                            queueName));
+
+            assertEquals(10, partitionedQueueDAO.getSize(queueName));
+            List<Message> polled = partitionedQueueDAO.pollMessages(queueName, 4, 1_000);
+            assertEquals(4, polled.size());
+            assertTrue(partitionedQueueDAO.ack(queueName, polled.get(0).getId()));
+            assertEquals(9, partitionedQueueDAO.getSize(queueName));
+        } finally {
+            partitionedQueueDAO.destroy();
+        }
+    }
+
+    private long count(String query, String parameter) throws Exception {
+        try (Connection c = dataSource.getConnection()) {
+            try (Query q = new Query(objectMapper, c, query)) {
+                long count = q.addParameter(parameter).executeCount();
+                c.commit();
+                return count;
+            }
+        }
+    }
+
+    @Test
+    public void knownQueueCacheInvalidatedOnFlushTest() throws Exception {
+        final String queueName = "known_queue_test";
+        queueDAO.push(queueName, "first", 0);
+        queueDAO.push(queueName, "second", 0);
+
+        // drop the queue row behind the DAO's back, the cached entry is now stale
+        try (Connection c = dataSource.getConnection()) {
+            try (Query q = new Query(objectMapper, c, "DELETE FROM queue WHERE queue_name = ?")) {
+                q.addParameter(queueName).executeDelete();
+            }
+            c.commit();
+        }
+        queueDAO.push(queueName, "third", 0);
+        assertFalse(queueDAO.queuesDetail().containsKey(queueName));
+
+        queueDAO.flush(queueName);
+        queueDAO.push(queueName, "fourth", 0);
+        assertTrue(queueDAO.queuesDetail().containsKey(queueName));
+    }
+
+    @Test
+    public void approximateQueueSizeTest() throws Exception {
+        final String queueName = "approximate_size_test";
+        for (int i = 0; i < 3; i++) {
+            queueDAO.push(queueName, "msg-" + i, 0);
+        }
+        assertEquals(3, queueDAO.getSize(queueName));
+
+        // messages pushed by another node are only seen once the counts are reconciled
+        try (Connection c = dataSource.getConnection()) {
+            try (Query q =
+                    new Query(
+                            objectMapper,
+                            c,
+                            "INSERT INTO queue_message (deliver_on, queue_name, message_id, priority, offset_time_seconds, payload) "
+                                    + "SELECT current_timestamp, ?, 'other-' || i, 0, 0, NULL FROM generate_series(1, 2) AS i")) {
+                q.addParameter(queueName).executeUpdate();
+            }
+            c.commit();
+        }
+        assertEquals(3, queueDAO.getSize(queueName));
+        assertEquals(3L, queueDAO.queuesDetail().get(queueName).longValue());
+
+        PostgresProperties properties = new PostgresProperties();
+        properties.setQueueSizeExact(true);
+        PostgresQueueDAO exactQueueDAO =
+                new PostgresQueueDAO(retryTemplate, objectMapper, dataSource, properties);
+        try {
+            assertEquals(5, exactQueueDAO.getSize(queueName));
+        } finally {
+            exactQueueDAO.destroy();
+        }
+
+        queueDAO.reconcileQueueCounts();
+        assertEquals(5, queueDAO.getSize(queueName));
+
+        assertEquals(2, queueDAO.pollMessages(queueName, 2, 1_000).size());
+        Map<String, Long> shard = queueDAO.queuesDetailVerbose().get(queueName).get("a");
+        assertEquals(3L, shard.get("size").longValue());
+        assertEquals(2L, shard.get("uacked").longValue());
+        assertEquals(5, queueDAO.getSize(queueName));
+    }
+
+    @Test
+    public void bulkPushTest() {
+        final String queueName = "bulk_push_test";
+        queueDAO.push(queueName, "existing", 0);
+
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            messages.add(new Message("bulk-" + i, "{\"i\":" + i + "}", null, i % 3));
+        }
+        messages.add(new Message("existing", "updated", null, 0));
+        messages.add(new Message("bulk-0", "duplicate", null, 0));
+        queueDAO.push(queueName, messages);
+
+        assertEquals(501, queueDAO.getSize(queueName));
+        assertEquals(1, queueDAO.queuesDetail().size());
+
+        List<Message> polled = queueDAO.pollMessages(queueName, 501, 1_000);
+        assertEquals(501, polled.size());
+        Map<String, Message> polledById =
+                polled.stream().collect(Collectors.toMap(Message::getId, m -> m));
+        assertEquals("updated", polledById.get("existing").getPayload());
+        assertEquals("duplicate", polledById.get("bulk-0").getPayload());
+        assertEquals("{\"i\":7}", polledById.get("bulk-7").getPayload());
+        assertEquals(1, polledById.get("bulk-7").getPriority());
+    }
+
+    @Test
+    public void pollMessagesPriorityOrderTest() {
+        final String queueName = "priority_order_test";
+        final List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Message m = new Message("prio-" + i, null, "");
+            m.setPriority(i);
+            messages.add(m);
+        }
+        queueDAO.push(queueName, messages);
+
+        List<Message> polled = queueDAO.pollMessages(queueName, 5, 1_000);
+        assertEquals(5, polled.size());
+        for (int i = 0; i < polled.size(); i++) {
+            assertEquals("prio-" + (9 - i), polled.get(i).getId());
+            assertEquals(9 - i, polled.get(i).getPriority());
+        }
+
+        // popped messages must not be handed out again
+        List<Message> remaining = queueDAO.pollMessages(queueName, 10, 1_000);
+        assertEquals(5, remaining.size());
+        assertEquals("prio-4", remaining.get(0).getId());
+    }
+
+    @Test
+    public void pollMessagesWithNotifyTest() throws Exception {
+        final String queueName = "notify_test";
+        PostgresProperties properties = new PostgresProperties();
+        properties.setQueueNotifyEnabled(true);
+        properties.setQueueNotifyMaxWait(Duration.ofSeconds(30));
+        PostgresQueueDAO notifyingQueueDAO =
+                new PostgresQueueDAO(retryTemplate, objectMapper, dataSource, properties);
+        try {
+            CompletableFuture<List<Message>> poll =
+                    CompletableFuture.supplyAsync(
+                            () -> notifyingQueueDAO.pollMessages(queueName, 1, 20_000));
+            Thread.sleep(1_000);
+            long pushed = System.currentTimeMillis();
+            notifyingQueueDAO.push(queueName, "notified", 0);
+
+            List<Message> polled = poll.get(10, TimeUnit.SECONDS);
+            assertEquals(1, polled.size());
+            assertEquals("notified", polled.get(0).getId());
+            assertTrue(
+                    "Poller should be woken up by the notification",
+                    System.currentTimeMillis() - pushed < 5_000);
+        } finally {
+            notifyingQueueDAO.destroy();
+        }
+    }
+
     /** Test fix for https://github.com/Netflix/conductor/issues/1892 */
     @Test
     public void containsMessageTest() {
@@ -345,6 +560,27 @@ public class PostgresQueueDAOTest {
                 "process_unacks_test");
     }
 
+    @Test
+    public void processAllUnacksHonoursUnackTimeoutTest() throws InterruptedException {
+        final String queueName = "unack_timeout_test";
+        for (int i = 0; i < 3; i++) {
+            queueDAO.push(queueName, "msg-" + i, 0);
+        }
+        assertEquals(3, queueDAO.pollMessages(queueName, 3, 1_000).size());
+
+        assertTrue(queueDAO.setUnackTimeout(queueName, "msg-0", 0));
+        assertTrue(queueDAO.setUnackTimeout(queueName, "msg-1", 3_600_000));
+        Thread.sleep(10);
+
+        queueDAO.processAllUnacks();
+
+        List<Message> redelivered = queueDAO.pollMessages(queueName, 3, 100);
+        assertEquals(1, redelivered.size());
+        assertEquals("msg-0", redelivered.get(0).getId());
+        Long uacked = queueDAO.queuesDetailVerbose().get(queueName).get("a").get("uacked");
+        assertEquals(3L, uacked.longValue());
+    }
+
     private void processUnacks(Runnable unack, String queueName) {
         // Count of messages in the queue(s)
         final int count = 10;
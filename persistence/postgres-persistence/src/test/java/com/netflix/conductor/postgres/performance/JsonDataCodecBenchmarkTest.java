@@ -0,0 +1,126 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.performance;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.common.config.ObjectMapperProvider;
+import com.netflix.conductor.model.WorkflowModel;
+import com.netflix.conductor.postgres.util.JsonDataCodec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the encoded size and the encode/decode throughput of a workflow with its tasks for every
+ * {@link JsonDataCodec} setting against text JSON. Results are only logged, so this is not part of
+ * the regular build.
+ */
+@Ignore("Benchmark, run manually")
+public class JsonDataCodecBenchmarkTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JsonDataCodecBenchmarkTest.class);
+
+    private static final int TASKS = 200;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 200;
+
+    private final ObjectMapper objectMapper = new ObjectMapperProvider().getObjectMapper();
+
+    @Test
+    public void sizeAndThroughput() throws Exception {
+        WorkflowModel workflow = createWorkflow();
+        ObjectReader reader = objectMapper.readerFor(WorkflowModel.class);
+
+        byte[] json = objectMapper.writeValueAsBytes(workflow);
+        for (int i = 0; i < WARMUP; i++) {
+            reader.readValue(objectMapper.writeValueAsBytes(workflow));
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            objectMapper.writeValueAsString(workflow);
+        }
+        long encodeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            reader.readValue(new String(json, StandardCharsets.UTF_8));
+        }
+        long decodeNanos = System.nanoTime() - start;
+        log("JSON", json.length, encodeNanos, decodeNanos);
+
+        for (JsonDataCodec.Encoding encoding : JsonDataCodec.Encoding.values()) {
+            if (encoding == JsonDataCodec.Encoding.JSON) {
+                continue;
+            }
+            for (boolean compressed : new boolean[] {false, true}) {
+                JsonDataCodec codec = new JsonDataCodec(objectMapper, encoding, compressed);
+                byte[] data = codec.encode(workflow);
+                for (int i = 0; i < WARMUP; i++) {
+                    JsonDataCodec.decode(reader, new ByteArrayInputStream(codec.encode(workflow)));
+                }
+                start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    codec.encode(workflow);
+                }
+                encodeNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    WorkflowModel decoded =
+                            JsonDataCodec.decode(reader, new ByteArrayInputStream(data));
+                    assertEquals(TASKS, decoded.getTasks().size());
+                }
+                decodeNanos = System.nanoTime() - start;
+                log(
+                        encoding + (compressed ? " + deflate" : ""),
+                        data.length,
+                        encodeNanos,
+                        decodeNanos);
+            }
+        }
+    }
+
+    private void log(String name, int size, long encodeNanos, long decodeNanos) {
+        LOGGER.info(
+                "{}: {} bytes, encode {}us, decode {}us",
+                name,
+                size,
+                encodeNanos / ITERATIONS / 1_000,
+                decodeNanos / ITERATIONS / 1_000);
+    }
+
+    /** A workflow with {@value #TASKS} tasks carrying small, repetitive inputs and outputs. */
+    private WorkflowModel createWorkflow() {
+        WorkflowModel workflow =
+                PostgresBenchmarkTest.newWorkflow(
+                        "codec_benchmark",
+                        TASKS,
+                        i -> {
+                            Map<String, Object> data = new HashMap<>();
+                            data.put("index", i);
+                            data.put("url", "https://example.com/items/" + i);
+                            data.put("status", i % 2 == 0 ? "ok" : "retry");
+                            return data;
+                        });
+        workflow.getTasks().forEach(task -> task.setInputData(task.getOutputData()));
+        return workflow;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.performance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.IntFunction;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.junit.Before;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.netflix.conductor.common.config.TestObjectMapperConfiguration;
+import com.netflix.conductor.common.metadata.workflow.WorkflowDef;
+import com.netflix.conductor.model.TaskModel;
+import com.netflix.conductor.model.WorkflowModel;
+import com.netflix.conductor.postgres.config.PostgresConfiguration;
+import com.netflix.conductor.postgres.dao.PostgresExecutionDAO;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Spring context and fixtures shared by the benchmarks against a Testcontainers Postgres instance.
+ * The database is cleaned before every benchmark.
+ */
+@ContextConfiguration(
+        classes = {
+            TestObjectMapperConfiguration.class,
+            PostgresConfiguration.class,
+            FlywayAutoConfiguration.class
+        })
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public abstract class PostgresBenchmarkTest {
+
+    @Autowired protected PostgresExecutionDAO executionDAO;
+
+    @Qualifier("dataSource")
+    @Autowired
+    protected DataSource dataSource;
+
+    @Autowired protected ObjectMapper objectMapper;
+
+    @Qualifier("postgresRetryTemplate")
+    @Autowired
+    protected RetryTemplate retryTemplate;
+
+    @Autowired protected Flyway flyway;
+
+    @Before
+    public void before() {
+        flyway.clean();
+        flyway.migrate();
+    }
+
+    /**
+     * @return A running workflow named {@literal name} with {@literal taskCount} completed tasks,
+     *     the output of task {@code i} being {@code taskOutput.apply(i)}.
+     */
+    static WorkflowModel newWorkflow(
+            String name, int taskCount, IntFunction<Map<String, Object>> taskOutput) {
+        WorkflowDef def = new WorkflowDef();
+        def.setName(name);
+
+        WorkflowModel workflow = new WorkflowModel();
+        workflow.setWorkflowId(UUID.randomUUID().toString());
+        workflow.setWorkflowDefinition(def);
+        workflow.setStatus(WorkflowModel.Status.RUNNING);
+        workflow.setCreateTime(System.currentTimeMillis());
+
+        List<TaskModel> tasks = new ArrayList<>(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            TaskModel task = new TaskModel();
+            task.setTaskId(workflow.getWorkflowId() + "_" + i);
+            task.setReferenceTaskName("task_" + i);
+            task.setWorkflowInstanceId(workflow.getWorkflowId());
+            task.setTaskDefName(name + "_task");
+            task.setSeq(i);
+            task.setStatus(TaskModel.Status.COMPLETED);
+            task.setOutputData(taskOutput.apply(i));
+            tasks.add(task);
+        }
+        workflow.setTasks(tasks);
+        return workflow;
+    }
+
+    /**
+     * Stores {@literal workflow} and its tasks.
+     *
+     * @return The id of the workflow.
+     */
+    protected String createWorkflow(WorkflowModel workflow) {
+        List<TaskModel> tasks = workflow.getTasks();
+        executionDAO.createWorkflow(workflow);
+        executionDAO.createTasks(tasks);
+        return workflow.getWorkflowId();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.performance;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.model.TaskModel;
+import com.netflix.conductor.model.WorkflowModel;
+import com.netflix.conductor.postgres.util.Query;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the heap allocated while reading {@code json_data} columns as a {@link String} and
+ * parsing that, against parsing straight from the column bytes as {@link Query} does. Allocations
+ * are taken from the current thread's allocation counter. Results are only logged, so this is not
+ * part of the regular build.
+ */
+@Ignore("Benchmark, run manually")
+public class PostgresJsonReadBenchmarkTest extends PostgresBenchmarkTest {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(PostgresJsonReadBenchmarkTest.class);
+
+    private static final int ROWS = 200;
+    private static final int ITERATIONS = 50;
+
+    @Test
+    public void allocationsPerRead() throws Exception {
+        for (int payloadKb : new int[] {1, 64, 512}) {
+            String workflowId = createWorkflow(payloadKb);
+            String workflows =
+                    "SELECT json_data FROM workflow WHERE workflow_id = '" + workflowId + "'";
+            String tasks =
+                    "SELECT t.json_data FROM workflow_to_task wt INNER JOIN task t ON t.task_id = wt.task_id WHERE wt.workflow_id = '"
+                            + workflowId
+                            + "'";
+
+            LOGGER.info(
+                    "WorkflowModel with {}KB input: string {} bytes/row, stream {} bytes/row",
+                    payloadKb,
+                    allocatedPerRow(workflows, WorkflowModel.class, false, 1),
+                    allocatedPerRow(workflows, WorkflowModel.class, true, 1));
+            LOGGER.info(
+                    "TaskModel with {}KB output: string {} bytes/row, stream {} bytes/row",
+                    payloadKb,
+                    allocatedPerRow(tasks, TaskModel.class, false, ROWS),
+                    allocatedPerRow(tasks, TaskModel.class, true, ROWS));
+        }
+    }
+
+    private long allocatedPerRow(String sql, Class<?> type, boolean stream, int rows)
+            throws Exception {
+        com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        // warm up, then measure
+        read(sql, type, stream, rows);
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            read(sql, type, stream, rows);
+        }
+        return (threadMXBean.getThreadAllocatedBytes(threadId) - before) / ITERATIONS / rows;
+    }
+
+    private void read(String sql, Class<?> type, boolean stream, int rows) throws Exception {
+        try (Connection c = dataSource.getConnection();
+                Query q = new Query(objectMapper, c, sql)) {
+            List<?> values;
+            if (stream) {
+                values = q.executeAndFetch(type);
+            } else {
+                values =
+                        q.executeAndFetch(
+                                (ResultSet rs) -> {
+                                    List<Object> result = new ArrayList<>();
+                                    while (rs.next()) {
+                                        try {
+                                            result.add(
+                                                    objectMapper.readValue(rs.getString(1), type));
+                                        } catch (Exception ex) {
+                                            throw new IllegalStateException(ex);
+                                        }
+                                    }
+                                    return result;
+                                });
+            }
+            assertEquals(rows, values.size());
+            c.commit();
+        }
+    }
+
+    private String createWorkflow(int payloadKb) {
+        Map<String, Object> payload = new HashMap<>();
+        for (int i = 0; i < payloadKb; i++) {
+            payload.put("key_" + i, "v".repeat(1_000));
+        }
+        WorkflowModel workflow = newWorkflow("json_read_benchmark", ROWS, i -> payload);
+        workflow.setInput(payload);
+        return createWorkflow(workflow);
+    }
+}
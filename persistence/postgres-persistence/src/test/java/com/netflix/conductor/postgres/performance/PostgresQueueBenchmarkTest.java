@@ -0,0 +1,174 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.performance;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.flywaydb.core.Flyway;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.netflix.conductor.core.events.queue.Message;
+import com.netflix.conductor.postgres.config.PostgresProperties;
+import com.netflix.conductor.postgres.dao.PostgresQueueDAO;
+import com.netflix.conductor.postgres.util.Query;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Throughput and latency comparisons for {@link PostgresQueueDAO} against a Testcontainers Postgres
+ * instance. Results are only logged, so these are not part of the regular build.
+ */
+@Ignore("Benchmark, run manually")
+public class PostgresQueueBenchmarkTest extends PostgresBenchmarkTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgresQueueBenchmarkTest.class);
+
+    private static final int MESSAGES = 10_000;
+    private static final int BATCH = 100;
+
+    @Autowired private PostgresQueueDAO queueDAO;
+
+    @Test
+    public void popThroughput() throws Exception {
+        fill("legacy_pop");
+        long start = System.nanoTime();
+        int popped = 0;
+        List<String> batch;
+        do {
+            batch = legacyPop("legacy_pop", BATCH);
+            popped += batch.size();
+        } while (!batch.isEmpty());
+        long legacyNanos = System.nanoTime() - start;
+        assertEquals(MESSAGES, popped);
+
+        fill("batched_pop");
+        start = System.nanoTime();
+        popped = 0;
+        List<Message> messages;
+        do {
+            messages = queueDAO.pollMessages("batched_pop", BATCH, 0);
+            popped += messages.size();
+        } while (!messages.isEmpty());
+        long batchedNanos = System.nanoTime() - start;
+        assertEquals(MESSAGES, popped);
+
+        LOGGER.info(
+                "Popped {} messages in batches of {}: select + per-row update {} msg/s, update ... returning {} msg/s",
+                MESSAGES,
+                BATCH,
+                throughput(legacyNanos),
+                throughput(batchedNanos));
+    }
+
+    @Test
+    public void pollLatencyWhileOneQueueGrows() {
+        LOGGER.info("Unpartitioned queue_message: {}", pollLatencies(queueDAO));
+
+        Flyway partitionedFlyway =
+                Flyway.configure()
+                        .locations(
+                                "classpath:db/migration_postgres",
+                                "classpath:db/migration_postgres_queue_partitions")
+                        .placeholders(Map.of("queuePartitioningEnabled", "true"))
+                        .dataSource(dataSource)
+                        .load();
+        partitionedFlyway.clean();
+        partitionedFlyway.migrate();
+
+        PostgresProperties properties = new PostgresProperties();
+        properties.setQueuePartitioningEnabled(true);
+        PostgresQueueDAO partitionedQueueDAO =
+                new PostgresQueueDAO(retryTemplate, objectMapper, dataSource, properties);
+        try {
+            LOGGER.info("Partitioned queue_message: {}", pollLatencies(partitionedQueueDAO));
+        } finally {
+            partitionedQueueDAO.destroy();
+        }
+    }
+
+    /**
+     * Grows a hot queue in steps and, after each step, measures the average latency of polling a
+     * small queue that shares the table with it.
+     *
+     * @return average poll latency in microseconds, keyed by the size of the hot queue
+     */
+    private Map<Integer, Long> pollLatencies(PostgresQueueDAO dao) {
+        Map<Integer, Long> latencies = new LinkedHashMap<>();
+        int hotQueueSize = 0;
+        for (int target : new int[] {0, 10_000, 100_000, 500_000}) {
+            while (hotQueueSize < target) {
+                List<Message> messages = new ArrayList<>(1_000);
+                for (int i = 0; i < 1_000; i++, hotQueueSize++) {
+                    messages.add(new Message("hot-" + hotQueueSize, "{}", null));
+                }
+                dao.push("hot_queue", messages);
+            }
+
+            String coldQueue = "cold_queue_" + target;
+            for (int i = 0; i < BATCH; i++) {
+                dao.push(coldQueue, "cold-" + i, 0);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < BATCH; i++) {
+                assertEquals(1, dao.pollMessages(coldQueue, 1, 0).size());
+            }
+            latencies.put(target, (System.nanoTime() - start) / BATCH / 1_000);
+        }
+        return latencies;
+    }
+
+    private void fill(String queueName) {
+        List<Message> messages = new ArrayList<>(BATCH);
+        for (int i = 0; i < MESSAGES; i++) {
+            messages.add(new Message(queueName + "-" + i, "{}", null, i % 10));
+            if (messages.size() == BATCH) {
+                queueDAO.push(queueName, messages);
+                messages.clear();
+            }
+        }
+    }
+
+    /** The pre-batching pop: lock the batch, then flip {@code popped} one row at a time. */
+    private List<String> legacyPop(String queueName, int count) throws Exception {
+        final String PEEK_MESSAGES =
+                "SELECT message_id FROM queue_message WHERE queue_name = ? AND popped = false AND deliver_on <= (current_timestamp + (1000 ||' microseconds')::interval) ORDER BY priority DESC, deliver_on, created_on LIMIT ? FOR UPDATE SKIP LOCKED";
+        final String POP_MESSAGE =
+                "UPDATE queue_message SET popped = true WHERE queue_name = ? AND message_id = ? AND popped = false";
+
+        try (Connection c = dataSource.getConnection()) {
+            c.setAutoCommit(false);
+            List<String> ids;
+            try (Query q = new Query(objectMapper, c, PEEK_MESSAGES)) {
+                ids = q.addParameter(queueName).addParameter(count).executeScalarList(String.class);
+            }
+            for (String id : ids) {
+                try (Query q = new Query(objectMapper, c, POP_MESSAGE)) {
+                    q.addParameter(queueName).addParameter(id).executeUpdate();
+                }
+            }
+            c.commit();
+            return ids;
+        }
+    }
+
+    private long throughput(long nanos) {
+        return MESSAGES * 1_000_000_000L / Math.max(nanos, 1);
+    }
+}
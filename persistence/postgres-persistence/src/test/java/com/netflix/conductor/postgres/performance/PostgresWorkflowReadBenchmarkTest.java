@@ -0,0 +1,125 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.performance;
+
+import java.sql.Connection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.netflix.conductor.model.TaskModel;
+import com.netflix.conductor.model.WorkflowModel;
+import com.netflix.conductor.postgres.dao.PostgresExecutionDAO;
+import com.netflix.conductor.postgres.util.Query;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares loading a workflow with its tasks through {@link
+ * PostgresExecutionDAO#getWorkflow(String, boolean)} against the previous three-query path. Results
+ * are only logged, so this is not part of the regular build.
+ */
+@Ignore("Benchmark, run manually")
+public class PostgresWorkflowReadBenchmarkTest extends PostgresBenchmarkTest {
+
+    private static final Logger LOGGER =
+            LoggerFactory.getLogger(PostgresWorkflowReadBenchmarkTest.class);
+
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 2_000;
+
+    @Test
+    public void getWorkflowWithTasks() throws Exception {
+        for (int taskCount : new int[] {10, 100, 500}) {
+            String workflowId =
+                    createWorkflow(
+                            newWorkflow(
+                                    "read_benchmark",
+                                    taskCount,
+                                    i -> Map.of("result", "x".repeat(256))));
+
+            for (int i = 0; i < WARMUP; i++) {
+                legacyGetWorkflow(workflowId);
+                executionDAO.getWorkflow(workflowId, true);
+            }
+
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                assertEquals(taskCount, legacyGetWorkflow(workflowId).getTasks().size());
+            }
+            long legacyNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                assertEquals(
+                        taskCount, executionDAO.getWorkflow(workflowId, true).getTasks().size());
+            }
+            long singleNanos = System.nanoTime() - start;
+
+            LOGGER.info(
+                    "Workflow with {} tasks: three queries {}us/load, single query {}us/load",
+                    taskCount,
+                    legacyNanos / ITERATIONS / 1_000,
+                    singleNanos / ITERATIONS / 1_000);
+        }
+    }
+
+    /**
+     * The previous read path: the workflow, then its task ids and then the tasks, the latter two in
+     * a transaction of their own.
+     */
+    private WorkflowModel legacyGetWorkflow(String workflowId) throws Exception {
+        WorkflowModel workflow;
+        try (Connection c = dataSource.getConnection()) {
+            c.setAutoCommit(false);
+            try (Query q =
+                    new Query(
+                            objectMapper,
+                            c,
+                            "SELECT json_data FROM workflow WHERE workflow_id = ?")) {
+                workflow = q.addParameter(workflowId).executeAndFetchFirst(WorkflowModel.class);
+            }
+            c.commit();
+        }
+
+        try (Connection c = dataSource.getConnection()) {
+            c.setAutoCommit(false);
+            List<String> taskIds;
+            try (Query q =
+                    new Query(
+                            objectMapper,
+                            c,
+                            "SELECT task_id FROM workflow_to_task WHERE workflow_id = ? FOR SHARE")) {
+                taskIds = q.addParameter(workflowId).executeScalarList(String.class);
+            }
+            List<TaskModel> tasks;
+            try (Query q =
+                    new Query(
+                            objectMapper,
+                            c,
+                            "SELECT json_data FROM task WHERE task_id IN ("
+                                    + Query.generateInBindings(taskIds.size())
+                                    + ") AND json_data IS NOT NULL")) {
+                tasks = q.addParameters(taskIds).executeAndFetch(TaskModel.class);
+            }
+            c.commit();
+            tasks.sort(Comparator.comparingInt(TaskModel::getSeq));
+            workflow.setTasks(tasks);
+        }
+        return workflow;
+    }
+}
@@ -21,6 +21,8 @@ import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 public class PostgresIndexQueryBuilderTest {
@@ -238,13 +240,155 @@ public class PostgresIndexQueryBuilderTest {
     }
 
     @Test
-    void shouldNotAllowInvalidColumns() throws SQLException {
+    void shouldNotAllowInvalidColumns() {
         String inputQuery = "sqlInjection<1675702498000";
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        new PostgresIndexQueryBuilder(
+                                "table_name", inputQuery, "", 0, 15, new ArrayList<>()));
+    }
+
+    @Test
+    void shouldGenerateQueryForOr() throws SQLException {
+        String inputQuery = "status=\"FAILED\" OR status='TIMED_OUT'";
         PostgresIndexQueryBuilder builder =
                 new PostgresIndexQueryBuilder(
                         "table_name", inputQuery, "", 0, 15, new ArrayList<>());
-        String expectedQuery = "SELECT json_data::TEXT FROM table_name LIMIT ? OFFSET ?";
-        assertEquals(expectedQuery, builder.getQuery());
+        assertEquals(
+                "SELECT json_data::TEXT FROM table_name WHERE (status = ? OR status = ?) LIMIT ? OFFSET ?",
+                builder.getQuery());
+        Query mockQuery = mock(Query.class);
+        builder.addParameters(mockQuery);
+        InOrder inOrder = Mockito.inOrder(mockQuery);
+        inOrder.verify(mockQuery).addParameter("FAILED");
+        inOrder.verify(mockQuery).addParameter("TIMED_OUT");
+        inOrder.verify(mockQuery).addParameter(15);
+        inOrder.verify(mockQuery).addParameter(0);
+        verifyNoMoreInteractions(mockQuery);
+    }
+
+    @Test
+    void shouldGroupConditionsToTheRight() throws SQLException {
+        // as in the Elasticsearch parser, this is workflowType="a" AND (status... OR startTime...)
+        String inputQuery = "workflowType=\"a\" AND status=\"FAILED\" OR startTime>1675702498000";
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "table_name", inputQuery, "", 0, 15, new ArrayList<>());
+        assertEquals(
+                "SELECT json_data::TEXT FROM table_name WHERE (status = ? OR start_time > ?::TIMESTAMPTZ) AND workflow_type = ? LIMIT ? OFFSET ?",
+                builder.getQuery());
+        Query mockQuery = mock(Query.class);
+        builder.addConditionParameters(mockQuery);
+        InOrder inOrder = Mockito.inOrder(mockQuery);
+        inOrder.verify(mockQuery).addParameter("FAILED");
+        inOrder.verify(mockQuery).addParameter("2023-02-06T16:54:58Z");
+        inOrder.verify(mockQuery).addParameter("a");
+        verifyNoMoreInteractions(mockQuery);
+    }
+
+    @Test
+    void shouldGenerateQueryForGroupedConditions() throws SQLException {
+        String inputQuery =
+                "(status=\"FAILED\" OR (status=\"COMPLETED\" AND correlationId IS not null)) AND workflowType IN (one, \"t,wo\")";
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "table_name", inputQuery, "{\"a\":1}", 0, 15, new ArrayList<>());
+        assertEquals(
+                "SELECT json_data::TEXT FROM table_name WHERE (status = ? OR (correlation_id IS NOT NULL AND status = ?)) "
+                        + "AND workflow_type = ANY(?) AND json_data @> ?::JSONB LIMIT ? OFFSET ?",
+                builder.getQuery());
+        Query mockQuery = mock(Query.class);
+        builder.addConditionParameters(mockQuery);
+        InOrder inOrder = Mockito.inOrder(mockQuery);
+        inOrder.verify(mockQuery).addParameter("FAILED");
+        inOrder.verify(mockQuery).addParameter("COMPLETED");
+        inOrder.verify(mockQuery).addParameter(new ArrayList<>(List.of("one", "t,wo")));
+        inOrder.verify(mockQuery).addParameter("{\"a\":1}");
+        verifyNoMoreInteractions(mockQuery);
+    }
+
+    @Test
+    void shouldGenerateQueryForOtherOperators() throws SQLException {
+        String inputQuery =
+                "correlationId != \"x\" AND taskDefName STARTS_WITH \"http_%\" AND updateTime BETWEEN 1675701498000 AND 1675702498000 AND correlationId IS null";
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "table_name", inputQuery, "", 0, 15, new ArrayList<>());
+        assertEquals(
+                "SELECT json_data::TEXT FROM table_name WHERE correlation_id IS DISTINCT FROM ? AND correlation_id IS NULL "
+                        + "AND task_def_name LIKE ? AND update_time BETWEEN ?::TIMESTAMPTZ AND ?::TIMESTAMPTZ LIMIT ? OFFSET ?",
+                builder.getQuery());
+        Query mockQuery = mock(Query.class);
+        builder.addConditionParameters(mockQuery);
+        InOrder inOrder = Mockito.inOrder(mockQuery);
+        inOrder.verify(mockQuery).addParameter("x");
+        inOrder.verify(mockQuery).addParameter("http\\_\\%%");
+        inOrder.verify(mockQuery).addParameter("2023-02-06T16:38:18Z");
+        inOrder.verify(mockQuery).addParameter("2023-02-06T16:54:58Z");
+        verifyNoMoreInteractions(mockQuery);
+    }
+
+    @Test
+    void shouldRejectInvalidQueries() {
+        for (String inputQuery :
+                List.of(
+                        "status=",
+                        "status=\"RUNNING\" AND",
+                        "(status=\"RUNNING\"",
+                        "status=\"RUNNING\")",
+                        "status ~ RUNNING",
+                        "status=\"RUNNING",
+                        "status IS maybe",
+                        "startTime>yesterday",
+                        "startTime STARTS_WITH 1")) {
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () ->
+                            new PostgresIndexQueryBuilder(
+                                    "table_name", inputQuery, "", 0, 15, new ArrayList<>()),
+                    inputQuery);
+        }
+    }
+
+    @Test
+    void shouldCompileQueriesOfTheSameShapeOnce() throws SQLException {
+        String inputQuery = "taskType=\"HTTP\" OR taskDefName IN (a,b)";
+        new PostgresIndexQueryBuilder("table_name", inputQuery, "", 0, 15, new ArrayList<>());
+        long cached = PostgresIndexQueryCompiler.cacheSize();
+
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "table_name",
+                        "taskType = 'SIMPLE' OR taskDefName IN (c, d, e)",
+                        "",
+                        0,
+                        15,
+                        new ArrayList<>());
+        assertEquals(cached, PostgresIndexQueryCompiler.cacheSize());
+        assertEquals(
+                "SELECT json_data::TEXT FROM table_name WHERE (task_type = ? OR task_def_name = ANY(?)) LIMIT ? OFFSET ?",
+                builder.getQuery());
+        Query mockQuery = mock(Query.class);
+        builder.addConditionParameters(mockQuery);
+        InOrder inOrder = Mockito.inOrder(mockQuery);
+        inOrder.verify(mockQuery).addParameter("SIMPLE");
+        inOrder.verify(mockQuery).addParameter(new ArrayList<>(List.of("c", "d", "e")));
+        verifyNoMoreInteractions(mockQuery);
+
+        // a single value is compared with =, so it is another shape
+        builder =
+                new PostgresIndexQueryBuilder(
+                        "table_name",
+                        "taskType=\"HTTP\" OR taskDefName IN (a)",
+                        "",
+                        0,
+                        15,
+                        new ArrayList<>());
+        assertEquals(cached + 1, PostgresIndexQueryCompiler.cacheSize());
+        assertEquals(
+                "SELECT json_data::TEXT FROM table_name WHERE (task_type = ? OR task_def_name = ?) LIMIT ? OFFSET ?",
+                builder.getQuery());
     }
 
     @Test
@@ -267,7 +411,7 @@ public class PostgresIndexQueryBuilderTest {
                 new PostgresIndexQueryBuilder(
                         "table_name", "", freeText, 0, 15, Arrays.asList(query));
         String expectedQuery =
-                "SELECT json_data::TEXT FROM table_name WHERE to_tsvector(json_data::text) @@ to_tsquery(?) LIMIT ? OFFSET ?";
+                "SELECT json_data::TEXT FROM table_name WHERE to_tsvector('english', json_data::text) @@ to_tsquery('english', ?) LIMIT ? OFFSET ?";
         assertEquals(expectedQuery, builder.getQuery());
     }
 
@@ -282,4 +426,116 @@ public class PostgresIndexQueryBuilderTest {
                 "SELECT json_data::TEXT FROM table_name WHERE json_data @> ?::JSONB LIMIT ? OFFSET ?";
         assertEquals(expectedQuery, builder.getQuery());
     }
+
+    @Test
+    void shouldGenerateCountQueries() throws SQLException {
+        String inputQuery = "workflowId=\"abc123\"";
+        String[] sort = {"workflowId:DESC"};
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "table_name", inputQuery, "", 30, 15, Arrays.asList(sort));
+        assertEquals(
+                "SELECT count(*) FROM (SELECT 1 FROM table_name WHERE workflow_id = ? LIMIT ?) AS hits",
+                builder.getCountQuery());
+        assertEquals(
+                "EXPLAIN (FORMAT JSON) SELECT 1 FROM table_name WHERE workflow_id = ?",
+                builder.getEstimateQuery());
+        Query mockQuery = mock(Query.class);
+        builder.addCountParameters(mockQuery, 1001);
+        InOrder inOrder = Mockito.inOrder(mockQuery);
+        inOrder.verify(mockQuery).addParameter("abc123");
+        inOrder.verify(mockQuery).addParameter(1001);
+        verifyNoMoreInteractions(mockQuery);
+
+        // paging and sorting do not change the count
+        PostgresIndexQueryBuilder otherPage =
+                new PostgresIndexQueryBuilder(
+                        "table_name", inputQuery, "", 0, 5, new ArrayList<>());
+        assertEquals(builder.getCountKey(), otherPage.getCountKey());
+        PostgresIndexQueryBuilder otherValue =
+                new PostgresIndexQueryBuilder(
+                        "table_name", "workflowId=\"def456\"", "", 30, 15, Arrays.asList(sort));
+        assertNotEquals(builder.getCountKey(), otherValue.getCountKey());
+    }
+
+    @Test
+    void shouldGenerateKeysetQueryForFirstPage() throws SQLException {
+        String[] sort = {"startTime:ASC"};
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "workflow_index", "status=\"RUNNING\"", "", 15, Arrays.asList(sort), null);
+        assertEquals(
+                "SELECT json_data::TEXT, start_time::TEXT, workflow_id::TEXT FROM workflow_index WHERE status = ? ORDER BY start_time ASC, workflow_id ASC LIMIT ?",
+                builder.getQuery());
+        assertEquals(2, builder.getKeysetSize());
+        Query mockQuery = mock(Query.class);
+        builder.addParameters(mockQuery);
+        InOrder inOrder = Mockito.inOrder(mockQuery);
+        inOrder.verify(mockQuery).addParameter("RUNNING");
+        inOrder.verify(mockQuery).addParameter(15);
+        verifyNoMoreInteractions(mockQuery);
+    }
+
+    @Test
+    void shouldGenerateKeysetQueryForUniformSort() throws SQLException {
+        String[] sort = {"updateTime:DESC", "taskId:DESC"};
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "task_index",
+                        "",
+                        "",
+                        15,
+                        Arrays.asList(sort),
+                        List.of("2023-02-07 08:42:45+00", "task-id"));
+        assertEquals(
+                "SELECT json_data::TEXT, update_time::TEXT, task_id::TEXT FROM task_index WHERE (update_time, task_id) < (?::TIMESTAMPTZ, ?) ORDER BY update_time DESC, task_id DESC LIMIT ?",
+                builder.getQuery());
+        Query mockQuery = mock(Query.class);
+        builder.addParameters(mockQuery);
+        InOrder inOrder = Mockito.inOrder(mockQuery);
+        inOrder.verify(mockQuery).addParameter("2023-02-07 08:42:45+00");
+        inOrder.verify(mockQuery).addParameter("task-id");
+        inOrder.verify(mockQuery).addParameter(15);
+        verifyNoMoreInteractions(mockQuery);
+    }
+
+    @Test
+    void shouldGenerateKeysetQueryForMixedSort() throws SQLException {
+        String[] sort = {"correlationId:DESC"};
+        PostgresIndexQueryBuilder builder =
+                new PostgresIndexQueryBuilder(
+                        "workflow_index",
+                        "",
+                        "",
+                        15,
+                        Arrays.asList(sort),
+                        List.of("correlation-id", "workflow-id"));
+        assertEquals(
+                "SELECT json_data::TEXT, COALESCE(correlation_id, '')::TEXT, workflow_id::TEXT FROM workflow_index "
+                        + "WHERE ((COALESCE(correlation_id, '') < ?) OR (COALESCE(correlation_id, '') = ? AND workflow_id > ?)) "
+                        + "ORDER BY COALESCE(correlation_id, '') DESC, workflow_id ASC LIMIT ?",
+                builder.getQuery());
+        Query mockQuery = mock(Query.class);
+        builder.addParameters(mockQuery);
+        InOrder inOrder = Mockito.inOrder(mockQuery);
+        inOrder.verify(mockQuery, times(2)).addParameter("correlation-id");
+        inOrder.verify(mockQuery).addParameter("workflow-id");
+        inOrder.verify(mockQuery).addParameter(15);
+        verifyNoMoreInteractions(mockQuery);
+    }
+
+    @Test
+    void shouldRejectCursorOfAnotherSort() {
+        String[] sort = {"startTime:ASC"};
+        assertThrows(
+                IllegalArgumentException.class,
+                () ->
+                        new PostgresIndexQueryBuilder(
+                                "workflow_index",
+                                "",
+                                "",
+                                15,
+                                Arrays.asList(sort),
+                                List.of("workflow-id")));
+    }
 }
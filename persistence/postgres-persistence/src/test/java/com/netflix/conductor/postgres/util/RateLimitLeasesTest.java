@@ -0,0 +1,72 @@
+/*
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package com.netflix.conductor.postgres.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RateLimitLeasesTest {
+
+    private final RateLimitLeases leases = new RateLimitLeases();
+
+    @Test
+    public void handsOutLeasedPermitsLocally() {
+        AtomicInteger available = new AtomicInteger(5);
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(
+                    leases.tryAcquire(
+                            "task",
+                            1000,
+                            window -> {
+                                calls.incrementAndGet();
+                                int granted = Math.min(2, available.get());
+                                available.addAndGet(-granted);
+                                return granted;
+                            }));
+        }
+        assertEquals(3, calls.get());
+
+        // the window is used up, which is remembered until the next one starts
+        assertFalse(leases.tryAcquire("task", 1000, window -> 0));
+        assertFalse(
+                leases.tryAcquire(
+                        "task",
+                        1000,
+                        window -> {
+                            fail("a used up window must not be leased from again");
+                            return 0;
+                        }));
+        assertTrue(leases.tryAcquire("task", 2000, window -> 1));
+    }
+
+    @Test
+    public void failedLeaseIsRetried() {
+        try {
+            leases.tryAcquire(
+                    "task",
+                    1000,
+                    window -> {
+                        throw new IllegalStateException("database unavailable");
+                    });
+            fail("the failure of the lease is expected to be thrown");
+        } catch (IllegalStateException expected) {
+        }
+        assertTrue(leases.tryAcquire("task", 1000, window -> 1));
+    }
+}